@@ -3,9 +3,11 @@ package com.example.flinkmonitorbackend;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.example.flinkmonitorbackend.mapper")
+@EnableScheduling
 public class FlinkMonitorBackendApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,75 @@
+package com.example.flinkmonitorbackend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 数据源配置类
+ * 默认数据源供MyBatis映射器和业务接口使用；自然语言查询生成的临时SQL使用独立的只读连接池，
+ * 慢查询突增时只会占满自己的连接，不影响看板和审批等接口
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${nlq.datasource.url:}")
+    private String nlqUrl;
+
+    @Value("${nlq.datasource.username:}")
+    private String nlqUsername;
+
+    @Value("${nlq.datasource.password:}")
+    private String nlqPassword;
+
+    @Value("${nlq.datasource.maximum-pool-size:4}")
+    private int nlqMaximumPoolSize;
+
+    @Value("${nlq.datasource.minimum-idle:1}")
+    private int nlqMinimumIdle;
+
+    @Value("${nlq.datasource.connection-timeout-ms:2000}")
+    private long nlqConnectionTimeoutMillis;
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    /**
+     * 默认数据源，保持spring.datasource.*配置不变
+     */
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * 自然语言查询专用的只读数据源，未单独配置地址和账号时连接默认数据库，可指向只读副本
+     * 连接池名为nlq-readonly，连接数和等待情况通过actuator的hikaricp.*指标查看
+     */
+    @Bean
+    public HikariDataSource nlqDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("nlq-readonly");
+        dataSource.setJdbcUrl(nlqUrl.isBlank() ? dataSourceProperties.determineUrl() : nlqUrl);
+        // 账号和密码成对配置，未配置账号时沿用默认数据源的账号密码
+        dataSource.setUsername(nlqUsername.isBlank() ? dataSourceProperties.determineUsername() : nlqUsername);
+        dataSource.setPassword(nlqUsername.isBlank() ? dataSourceProperties.determinePassword() : nlqPassword);
+        dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        // 连接设为只读，MySQL会拒绝任何写操作
+        dataSource.setReadOnly(true);
+        dataSource.setMaximumPoolSize(nlqMaximumPoolSize);
+        dataSource.setMinimumIdle(nlqMinimumIdle);
+        // 连接耗尽时最多排队等待的时间，超时后快速返回繁忙
+        dataSource.setConnectionTimeout(nlqConnectionTimeoutMillis);
+        return dataSource;
+    }
+}
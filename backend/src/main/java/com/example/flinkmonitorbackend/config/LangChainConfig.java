@@ -1,11 +1,79 @@
 package com.example.flinkmonitorbackend.config;
 
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 /**
  * 大模型配置类
+ * 模型客户端全局单例，每个客户端内部持有一个保持长连接的HTTP连接池，所有服务共享
  */
 @Configuration
 public class LangChainConfig {
-    // 暂时移除对langchain4j的依赖，使用自定义实现
+
+    @Value("${llm.ollama.base-url:http://localhost:11434}")
+    private String ollamaBaseUrl;
+
+    @Value("${llm.ollama.model-name:llama3.2:latest}")
+    private String ollamaModelName;
+
+    @Value("${llm.deepseek.base-url:https://api.deepseek.com/v1}")
+    private String deepSeekBaseUrl;
+
+    @Value("${llm.deepseek.api-key:your-deepseek-api-key}")
+    private String deepSeekApiKey;
+
+    @Value("${llm.deepseek.model-name:deepseek-chat}")
+    private String deepSeekModelName;
+
+    @Value("${llm.temperature:0.1}")
+    private double temperature;
+
+    @Value("${llm.timeout:60s}")
+    private Duration timeout;
+
+    /**
+     * Ollama客户端，连接本地Ollama服务
+     */
+    @Bean
+    public OllamaChatModel ollamaChatModel() {
+        return OllamaChatModel.builder()
+                .baseUrl(ollamaBaseUrl)
+                .modelName(ollamaModelName)
+                .temperature(temperature) // 低温度，生成更确定性的结果
+                .timeout(timeout)
+                .build();
+    }
+
+    /**
+     * Ollama流式客户端，评估结果逐token推送给前端
+     */
+    @Bean
+    public OllamaStreamingChatModel ollamaStreamingChatModel() {
+        return OllamaStreamingChatModel.builder()
+                .baseUrl(ollamaBaseUrl)
+                .modelName(ollamaModelName)
+                .temperature(temperature)
+                .timeout(timeout)
+                .build();
+    }
+
+    /**
+     * OpenAI兼容客户端，用于连接DeepSeek API
+     */
+    @Bean
+    public OpenAiChatModel deepSeekChatModel() {
+        return OpenAiChatModel.builder()
+                .baseUrl(deepSeekBaseUrl)
+                .apiKey(deepSeekApiKey)
+                .modelName(deepSeekModelName)
+                .temperature(temperature)
+                .timeout(timeout)
+                .build();
+    }
 }
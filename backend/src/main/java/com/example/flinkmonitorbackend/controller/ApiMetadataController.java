@@ -124,14 +124,7 @@ public class ApiMetadataController {
      */
     @GetMapping("/mcp/server-info")
     public ResponseEntity<Map<String, Object>> getMcpServerInfo() {
-        Map<String, Object> serverInfo = Map.of(
-            "name", "Flink Monitor API MCP Server",
-            "version", "1.0",
-            "description", "Flink Monitor项目的MCP Server，用于为大模型提供API调用服务",
-            "baseUrl", "/api",
-            "apiCount", apiMetadataService.getAllApis().size(),
-            "supports", List.of("api_discovery", "api_invocation", "semantic_analysis")
-        );
+        Map<String, Object> serverInfo = apiMetadataService.getMcpServerInfo();
         return new ResponseEntity<>(serverInfo, HttpStatus.OK);
     }
 }
@@ -1,6 +1,7 @@
 package com.example.flinkmonitorbackend.controller;
 
 import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,6 +19,9 @@ public class DatabaseMetadataController {
     @Autowired
     private DatabaseMetadataService databaseMetadataService;
 
+    @Autowired
+    private SchemaVersionService schemaVersionService;
+
     /**
      * 获取所有表的基本信息
      */
@@ -67,4 +71,13 @@ public class DatabaseMetadataController {
                 "relationships", relationships
         ));
     }
+
+    /**
+     * 立即重新加载数据库结构，并刷新提示词、白名单和翻译等所有由结构派生的缓存
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Void> refreshSchemaCache() {
+        schemaVersionService.refresh();
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -1,19 +1,31 @@
 package com.example.flinkmonitorbackend.controller;
 
+import com.example.flinkmonitorbackend.service.EvaluationStreamService;
 import com.example.flinkmonitorbackend.service.NaturalLanguageQueryService;
+import com.example.flinkmonitorbackend.utils.CacheKey;
+import com.example.flinkmonitorbackend.utils.CancellableRequestExecutor;
+import com.example.flinkmonitorbackend.utils.QueryCancelledException;
 import com.example.flinkmonitorbackend.utils.RequestGuardService;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * 自然语言查询API控制器
+ * 查询在独立线程池中异步处理，客户端断开或超时后停止正在进行的大模型调用和SQL查询
  */
 @RestController
 @RequestMapping("/natural-language-query")
@@ -25,179 +37,210 @@ public class NaturalLanguageQueryController {
     @Autowired
     private RequestGuardService requestGuardService;
 
+    @Autowired
+    private EvaluationStreamService evaluationStreamService;
+
+    @Autowired
+    private CancellableRequestExecutor cancellableRequestExecutor;
+
     private static final String SUCCESS_CODE = "SUCCESS";
     private static final String VALIDATION_ERROR = "VALIDATION_ERROR";
     private static final String RATE_LIMITED = "RATE_LIMITED";
     private static final String SERVER_ERROR = "SERVER_ERROR";
+    private static final String SERVICE_BUSY = "SERVICE_BUSY";
+    private static final String REQUEST_TIMEOUT = "REQUEST_TIMEOUT";
+    private static final String RETRY_AFTER_SECONDS = "5";
 
     /**
      * 执行自然语言查询
      */
     @PostMapping("/execute")
-    public ResponseEntity<Map<String, Object>> executeQuery(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> executeQuery(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+        String naturalLanguageQuery = request.get("query");
+        String clientKey = resolveClientKey(httpRequest);
+
+        if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空")));
+        }
+
+        if (!requestGuardService.tryAcquire(clientKey, "execute")) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试")));
+        }
+
+        CacheKey cacheKey = requestGuardService.buildCacheKey(clientKey, "execute", naturalLanguageQuery);
+        return submitQuery(cacheKey, "查询失败，请稍后重试", () -> {
+            Map<String, Object> resultsWithEvaluation = naturalLanguageQueryService.executeNaturalLanguageQueryWithEvaluation(naturalLanguageQuery);
+            return successResponse("data", resultsWithEvaluation, querySuccessMessage(resultsWithEvaluation));
+        });
+    }
+
+    /**
+     * 执行自然语言查询，查询结果立即返回，评估结果通过评估接口异步获取
+     */
+    @PostMapping("/execute-async")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> executeQueryAsync(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String naturalLanguageQuery = request.get("query");
         String clientKey = resolveClientKey(httpRequest);
 
         if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空"));
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空")));
         }
 
-        if (!requestGuardService.tryAcquire(clientKey)) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试"));
+        if (!requestGuardService.tryAcquire(clientKey, "execute-async")) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试")));
         }
 
-        String cacheKey = requestGuardService.buildCacheKey(clientKey, "execute", naturalLanguageQuery);
-        return requestGuardService.getCachedResponse(cacheKey)
-                .map(ResponseEntity::ok)
-                .orElseGet(() -> {
-                    try {
-                        Map<String, Object> resultsWithEvaluation = naturalLanguageQueryService.executeNaturalLanguageQueryWithEvaluation(naturalLanguageQuery);
-                        Map<String, Object> response = Map.of(
-                                "success", true,
-                                "code", SUCCESS_CODE,
-                                "data", resultsWithEvaluation,
-                                "message", "查询成功"
-                        );
-                        requestGuardService.cacheResponse(cacheKey, response);
-                        return ResponseEntity.ok(response);
-                    } catch (SecurityException | IllegalArgumentException e) {
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                .body(errorResponse(VALIDATION_ERROR, e.getMessage()));
-                    } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body(errorResponse(SERVER_ERROR, "查询失败，请稍后重试"));
-                    }
-                });
+        CacheKey cacheKey = requestGuardService.buildCacheKey(clientKey, "execute-async", naturalLanguageQuery);
+        return submitQuery(cacheKey, "查询失败，请稍后重试", () -> {
+            Map<String, Object> results = naturalLanguageQueryService.executeNaturalLanguageQueryWithAsyncEvaluation(naturalLanguageQuery);
+            return successResponse("data", results, querySuccessMessage(results));
+        });
+    }
+
+    /**
+     * 轮询获取异步评估的当前状态和已生成内容
+     */
+    @GetMapping("/evaluation/{evaluationId}")
+    public ResponseEntity<Map<String, Object>> getEvaluation(@PathVariable String evaluationId) {
+        return evaluationStreamService.getEvaluation(evaluationId)
+                .map(evaluation -> ResponseEntity.ok(Map.<String, Object>of(
+                        "success", true,
+                        "code", SUCCESS_CODE,
+                        "data", evaluation
+                )))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(errorResponse(VALIDATION_ERROR, "评估任务不存在或已过期")));
+    }
+
+    /**
+     * 以SSE方式逐token推送异步评估内容
+     */
+    @GetMapping(value = "/evaluation/{evaluationId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvaluation(@PathVariable String evaluationId) {
+        try {
+            return ResponseEntity.ok(evaluationStreamService.subscribe(evaluationId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     /**
      * 将自然语言转换为SQL（不执行）
      */
     @PostMapping("/translate-to-sql")
-    public ResponseEntity<Map<String, Object>> translateToSql(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> translateToSql(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String naturalLanguageQuery = request.get("query");
         String clientKey = resolveClientKey(httpRequest);
 
         if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空"));
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空")));
         }
 
-        if (!requestGuardService.tryAcquire(clientKey)) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试"));
+        if (!requestGuardService.tryAcquire(clientKey, "translate")) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试")));
         }
 
-        String cacheKey = requestGuardService.buildCacheKey(clientKey, "translate", naturalLanguageQuery);
-        return requestGuardService.getCachedResponse(cacheKey)
-                .map(ResponseEntity::ok)
-                .orElseGet(() -> {
-                    try {
-                        String sql = naturalLanguageQueryService.translateToSql(naturalLanguageQuery);
-                        Map<String, Object> response = Map.of(
-                                "success", true,
-                                "code", SUCCESS_CODE,
-                                "sql", sql,
-                                "message", "转换成功"
-                        );
-                        requestGuardService.cacheResponse(cacheKey, response);
-                        return ResponseEntity.ok(response);
-                    } catch (SecurityException | IllegalArgumentException e) {
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                .body(errorResponse(VALIDATION_ERROR, e.getMessage()));
-                    } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body(errorResponse(SERVER_ERROR, "转换失败，请稍后重试"));
-                    }
-                });
+        CacheKey cacheKey = requestGuardService.buildCacheKey(clientKey, "translate", naturalLanguageQuery);
+        return submitQuery(cacheKey, "转换失败，请稍后重试",
+                () -> successResponse("sql", naturalLanguageQueryService.translateToSql(naturalLanguageQuery), "转换成功"));
     }
     
     /**
      * 将自然语言转换为SQL并生成评估结果（不执行）
      */
     @PostMapping("/translate-to-sql-with-evaluation")
-    public ResponseEntity<Map<String, Object>> translateToSqlWithEvaluation(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> translateToSqlWithEvaluation(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String naturalLanguageQuery = request.get("query");
         String clientKey = resolveClientKey(httpRequest);
 
         if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空"));
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(errorResponse(VALIDATION_ERROR, "查询内容不能为空")));
         }
 
-        if (!requestGuardService.tryAcquire(clientKey)) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试"));
+        if (!requestGuardService.tryAcquire(clientKey, "translate-eval")) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试")));
         }
 
-        String cacheKey = requestGuardService.buildCacheKey(clientKey, "translate-eval", naturalLanguageQuery);
-        return requestGuardService.getCachedResponse(cacheKey)
-                .map(ResponseEntity::ok)
-                .orElseGet(() -> {
-                    try {
-                        Map<String, Object> result = naturalLanguageQueryService.translateToSqlWithEvaluation(naturalLanguageQuery);
-                        Map<String, Object> response = Map.of(
-                                "success", true,
-                                "code", SUCCESS_CODE,
-                                "data", result,
-                                "message", "转换和评估成功"
-                        );
-                        requestGuardService.cacheResponse(cacheKey, response);
-                        return ResponseEntity.ok(response);
-                    } catch (SecurityException | IllegalArgumentException e) {
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                .body(errorResponse(VALIDATION_ERROR, e.getMessage()));
-                    } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body(errorResponse(SERVER_ERROR, "转换和评估失败，请稍后重试"));
-                    }
-                });
+        CacheKey cacheKey = requestGuardService.buildCacheKey(clientKey, "translate-eval", naturalLanguageQuery);
+        return submitQuery(cacheKey, "转换和评估失败，请稍后重试",
+                () -> successResponse("data", naturalLanguageQueryService.translateToSqlWithEvaluation(naturalLanguageQuery), "转换和评估成功"));
     }
     
     /**
      * 执行指定的SQL查询并返回评估结果
      */
     @PostMapping("/execute-sql")
-    public ResponseEntity<Map<String, Object>> executeSql(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> executeSql(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String sql = request.get("sql");
         String originalQuery = request.get("originalQuery");
         
         if (sql == null || sql.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(errorResponse(VALIDATION_ERROR, "SQL语句不能为空"));
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(errorResponse(VALIDATION_ERROR, "SQL语句不能为空")));
         }
 
         String clientKey = resolveClientKey(httpRequest);
 
-        if (!requestGuardService.tryAcquire(clientKey)) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
-                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试"));
+        if (!requestGuardService.tryAcquire(clientKey, "execute-sql")) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorResponse(RATE_LIMITED, "请求过于频繁，请稍后重试")));
+        }
+
+        CacheKey cacheKey = requestGuardService.buildCacheKey(clientKey, "execute-sql", sql, originalQuery);
+        return submitQuery(cacheKey, "查询失败，请稍后重试", () -> {
+            Map<String, Object> resultsWithEvaluation = naturalLanguageQueryService.executeSqlWithEvaluation(sql, originalQuery);
+            return successResponse("data", resultsWithEvaluation, querySuccessMessage(resultsWithEvaluation));
+        });
+    }
+
+    /**
+     * 在可取消的线程池中处理请求：命中幂等缓存时直接返回，相同的请求合并为一次执行，成功的响应写入缓存。
+     * 请求已取消时重新抛出QueryCancelledException，由执行器按取消处理，而不是作为服务端错误返回500
+     *
+     * @param failureMessage 未预期的异常对应的提示信息
+     * @param handler 生成成功响应，在绑定了取消令牌的线程中执行
+     */
+    private DeferredResult<ResponseEntity<Map<String, Object>>> submitQuery(CacheKey cacheKey, String failureMessage,
+                                                                             Supplier<Map<String, Object>> handler) {
+        Optional<Map<String, Object>> cachedResponse = requestGuardService.getCachedResponse(cacheKey);
+        if (cachedResponse.isPresent()) {
+            return completed(ResponseEntity.ok(cachedResponse.get()));
         }
 
-        String cacheKey = requestGuardService.buildCacheKey(clientKey, "execute-sql", sql + originalQuery);
-        return requestGuardService.getCachedResponse(cacheKey)
-                .map(ResponseEntity::ok)
-                .orElseGet(() -> {
-                    try {
-                        Map<String, Object> resultsWithEvaluation = naturalLanguageQueryService.executeSqlWithEvaluation(sql, originalQuery);
-                        Map<String, Object> response = Map.of(
-                                "success", true,
-                                "code", SUCCESS_CODE,
-                                "data", resultsWithEvaluation,
-                                "message", "查询成功"
-                        );
-                        requestGuardService.cacheResponse(cacheKey, response);
-                        return ResponseEntity.ok(response);
-                    } catch (SecurityException | IllegalArgumentException e) {
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                .body(errorResponse(VALIDATION_ERROR, e.getMessage()));
-                    } catch (Exception e) {
-                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                                .body(errorResponse(SERVER_ERROR, "查询失败，请稍后重试"));
-                    }
-                });
+        return cancellableRequestExecutor.submitShared(cacheKey, () -> {
+            try {
+                Map<String, Object> response = handler.get();
+                requestGuardService.cacheResponse(cacheKey, response);
+                return ResponseEntity.ok(response);
+            } catch (QueryCancelledException e) {
+                throw e;
+            } catch (SecurityException | IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(errorResponse(VALIDATION_ERROR, e.getMessage()));
+            } catch (ServiceOverloadedException e) {
+                return busyResponse();
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(errorResponse(SERVER_ERROR, failureMessage));
+            }
+        }, this::timeoutResponse, this::busyResponse);
+    }
+
+    private static Map<String, Object> successResponse(String payloadKey, Object payload, String message) {
+        return Map.of(
+                "success", true,
+                "code", SUCCESS_CODE,
+                payloadKey, payload,
+                "message", message
+        );
     }
 
     private String resolveClientKey(HttpServletRequest request) {
@@ -214,6 +257,35 @@ public class NaturalLanguageQueryController {
         return remoteAddr == null ? "anonymous" : remoteAddr;
     }
 
+    private static DeferredResult<ResponseEntity<Map<String, Object>>> completed(ResponseEntity<Map<String, Object>> response) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferredResult = new DeferredResult<>();
+        deferredResult.setResult(response);
+        return deferredResult;
+    }
+
+    private ResponseEntity<Map<String, Object>> timeoutResponse() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(errorResponse(REQUEST_TIMEOUT, "查询超时，已停止处理，请缩小查询范围后重试"));
+    }
+
+    /**
+     * 查询线程池、连接池或大模型满载时的响应，提示客户端稍后重试
+     */
+    private ResponseEntity<Map<String, Object>> busyResponse() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(errorResponse(SERVICE_BUSY, "查询服务繁忙，请稍后重试"));
+    }
+
+    /**
+     * 代价过高的查询被改写后执行时，提示信息说明结果只覆盖了部分数据
+     */
+    private static String querySuccessMessage(Map<String, Object> data) {
+        Object rewriteMessage = data.get("rewriteMessage");
+        return rewriteMessage != null ? "查询成功，" + rewriteMessage : "查询成功";
+    }
+
     private Map<String, Object> errorResponse(String code, String message) {
         return Map.of(
                 "success", false,
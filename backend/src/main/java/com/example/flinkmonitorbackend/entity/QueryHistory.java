@@ -0,0 +1,72 @@
+package com.example.flinkmonitorbackend.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Date;
+
+public class QueryHistory {
+    @JsonProperty("id")
+    private Long id;
+    @JsonProperty("query_text")
+    private String queryText;
+    @JsonProperty("normalized_query")
+    private String normalizedQuery;
+    @JsonProperty("sql_text")
+    private String sqlText;
+    @JsonProperty("success")
+    private Boolean success;
+    @JsonProperty("hit_count")
+    private Integer hitCount;
+    @JsonProperty("created_at")
+    private Date createdAt;
+    @JsonProperty("updated_at")
+    private Date updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+    public void setId(Long id) {
+        this.id = id;
+    }
+    public String getQueryText() {
+        return queryText;
+    }
+    public void setQueryText(String queryText) {
+        this.queryText = queryText;
+    }
+    public String getNormalizedQuery() {
+        return normalizedQuery;
+    }
+    public void setNormalizedQuery(String normalizedQuery) {
+        this.normalizedQuery = normalizedQuery;
+    }
+    public String getSqlText() {
+        return sqlText;
+    }
+    public void setSqlText(String sqlText) {
+        this.sqlText = sqlText;
+    }
+    public Boolean getSuccess() {
+        return success;
+    }
+    public void setSuccess(Boolean success) {
+        this.success = success;
+    }
+    public Integer getHitCount() {
+        return hitCount;
+    }
+    public void setHitCount(Integer hitCount) {
+        this.hitCount = hitCount;
+    }
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
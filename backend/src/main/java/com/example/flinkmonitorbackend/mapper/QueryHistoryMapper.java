@@ -0,0 +1,24 @@
+package com.example.flinkmonitorbackend.mapper;
+
+import com.example.flinkmonitorbackend.entity.QueryHistory;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.List;
+
+@Mapper
+public interface QueryHistoryMapper {
+    /**
+     * 最近更新的执行成功的查询历史
+     */
+    List<QueryHistory> findRecentSuccessful(@Param("limit") int limit);
+
+    /**
+     * 写入查询历史，规范化查询文本已存在时更新SQL并累加翻译次数
+     */
+    int upsert(QueryHistory queryHistory);
+
+    /**
+     * 标记查询历史为执行失败
+     */
+    int markFailed(@Param("normalizedQuery") String normalizedQuery);
+}
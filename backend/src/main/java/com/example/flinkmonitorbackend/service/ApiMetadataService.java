@@ -57,6 +57,14 @@ public interface ApiMetadataService {
      */
     List<ApiMetadata> getApisByTag(String tag);
     
+    /**
+     * 按关键词检索API，使用随元数据刷新构建的倒排索引
+     * 
+     * @param query 查询文本，匹配API ID、URL路径段、描述和标签
+     * @return 按相关度排序的API元数据列表
+     */
+    List<ApiMetadata> searchApis(String query);
+    
     /**
      * 刷新API元数据缓存
      */
@@ -76,6 +84,13 @@ public interface ApiMetadataService {
      */
     String getApisAsMcpFormat();
     
+    /**
+     * 获取MCP Server配置信息
+     * 
+     * @return 服务名称、版本、API数量和支持的能力
+     */
+    Map<String, Object> getMcpServerInfo();
+    
     /**
      * 执行API调用
      * 
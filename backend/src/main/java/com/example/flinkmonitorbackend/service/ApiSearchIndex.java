@@ -0,0 +1,203 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.entity.ApiMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * API检索倒排索引
+ * 随API元数据快照一起构建，构建后不可修改。对API ID、URL路径段、描述和标签分词：
+ * 英文和数字按单词（拆分驼峰），中文按相邻两字；查询词按前缀匹配索引词，所有查询词都命中的API才返回，
+ * 按命中字段的权重和词的区分度排序
+ */
+public final class ApiSearchIndex {
+
+    private static final float ID_WEIGHT = 3f;
+    private static final float TAG_WEIGHT = 3f;
+    private static final float URL_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private final List<ApiMetadata> apis;
+    private final Map<String, Integer> positionById;
+    // 索引词 -> 命中的API位置（升序）及每个API上该词的最高字段权重
+    private final NavigableMap<String, Postings> postings;
+
+    public ApiSearchIndex(List<ApiMetadata> apis) {
+        this.apis = List.copyOf(apis);
+
+        Map<String, Integer> byId = new HashMap<>();
+        Map<String, Map<Integer, Float>> building = new HashMap<>();
+        for (int position = 0; position < this.apis.size(); position++) {
+            ApiMetadata api = this.apis.get(position);
+            if (api.id != null) {
+                byId.putIfAbsent(api.id, position);
+            }
+            addField(building, position, api.id, ID_WEIGHT);
+            addField(building, position, api.url, URL_WEIGHT);
+            addField(building, position, api.description, DESCRIPTION_WEIGHT);
+            if (api.tags != null) {
+                for (String tag : api.tags) {
+                    addField(building, position, tag, TAG_WEIGHT);
+                }
+            }
+        }
+        this.positionById = Collections.unmodifiableMap(byId);
+
+        NavigableMap<String, Postings> built = new TreeMap<>();
+        building.forEach((token, weights) -> built.put(token, Postings.of(weights)));
+        this.postings = Collections.unmodifiableNavigableMap(built);
+    }
+
+    public int size() {
+        return apis.size();
+    }
+
+    /**
+     * 检索API
+     * 查询与某个API ID完全相同时该API排在最前
+     *
+     * @param query 查询文本
+     * @return 按相关度从高到低排列的API，相关度相同时按注册顺序
+     */
+    public List<ApiMetadata> search(String query) {
+        if (query == null || query.isBlank() || apis.isEmpty()) {
+            return List.of();
+        }
+
+        Integer exact = positionById.get(query.trim());
+        Set<String> terms = tokenize(query);
+
+        float[] scores = new float[apis.size()];
+        int[] matchedTerms = new int[apis.size()];
+        int termCount = 0;
+        for (String term : terms) {
+            termCount++;
+            // 前缀匹配：同一查询词可能命中多个索引词，每个API取其中的最高权重
+            float[] termWeights = new float[apis.size()];
+            int documentFrequency = 0;
+            for (Postings posting : postings.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < posting.positions.length; i++) {
+                    int position = posting.positions[i];
+                    if (termWeights[position] == 0f) {
+                        documentFrequency++;
+                    }
+                    termWeights[position] = Math.max(termWeights[position], posting.weights[i]);
+                }
+            }
+            if (documentFrequency == 0) {
+                // 所有查询词都必须命中，有一个词没有命中即可结束
+                return exact == null ? List.of() : List.of(apis.get(exact));
+            }
+
+            float idf = (float) Math.log(1.0 + (double) apis.size() / documentFrequency);
+            for (int position = 0; position < termWeights.length; position++) {
+                if (termWeights[position] > 0f) {
+                    scores[position] += idf * termWeights[position];
+                    matchedTerms[position]++;
+                }
+            }
+        }
+
+        List<Integer> matched = new ArrayList<>();
+        for (int position = 0; position < scores.length; position++) {
+            if (termCount > 0 && matchedTerms[position] == termCount && (exact == null || position != exact)) {
+                matched.add(position);
+            }
+        }
+        // 稳定排序，相关度相同时保持注册顺序
+        matched.sort((left, right) -> Float.compare(scores[right], scores[left]));
+
+        List<ApiMetadata> result = new ArrayList<>(matched.size() + 1);
+        if (exact != null) {
+            result.add(apis.get(exact));
+        }
+        for (int position : matched) {
+            result.add(apis.get(position));
+        }
+        return result;
+    }
+
+    private static void addField(Map<String, Map<Integer, Float>> building, int position, String text, float weight) {
+        for (String token : tokenize(text)) {
+            building.computeIfAbsent(token, key -> new HashMap<>()).merge(position, weight, Math::max);
+        }
+    }
+
+    /**
+     * 分词：连续的字母数字按驼峰拆分为小写单词，中文按相邻两字切分（单个汉字保留本身），其余字符作为分隔符
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isIdeograph(c)) {
+                int start = i;
+                while (i < length && isIdeograph(text.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    tokens.add(text.substring(start, i));
+                }
+                for (int j = start; j + 2 <= i; j++) {
+                    tokens.add(text.substring(j, j + 2));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = i;
+                i++;
+                while (i < length && Character.isLetterOrDigit(text.charAt(i)) && !isIdeograph(text.charAt(i))
+                        && !isWordBoundary(text.charAt(i - 1), text.charAt(i), i + 1 < length ? text.charAt(i + 1) : 0)) {
+                    i++;
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    // 驼峰边界：小写或数字后接大写（employeeId），或连续大写后接大写加小写（HTTPStatus）
+    private static boolean isWordBoundary(char previous, char current, char next) {
+        if (!Character.isUpperCase(current)) {
+            return false;
+        }
+        return !Character.isUpperCase(previous) || Character.isLowerCase(next);
+    }
+
+    private static boolean isIdeograph(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 倒排表
+     *
+     * @param positions 命中的API位置，升序
+     * @param weights 与positions对应的字段权重
+     */
+    private record Postings(int[] positions, float[] weights) {
+
+        static Postings of(Map<Integer, Float> weightsByPosition) {
+            int[] positions = weightsByPosition.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] weights = new float[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                weights[i] = weightsByPosition.get(positions[i]);
+            }
+            return new Postings(positions, weights);
+        }
+    }
+}
@@ -8,6 +8,20 @@ import java.util.Map;
  */
 public interface DatabaseMetadataService {
 
+    /**
+     * 获取数据库结构模型，首次访问时从information_schema批量加载
+     *
+     * @return 不可变的数据库结构模型
+     */
+    SchemaModel getSchemaModel();
+
+    /**
+     * 重新加载数据库结构模型，加载失败时保留旧模型
+     *
+     * @return 当前的数据库结构模型
+     */
+    SchemaModel refreshSchemaModel();
+
     /**
      * 获取所有表的基本信息
      *
@@ -30,6 +44,13 @@ public interface DatabaseMetadataService {
      */
     String getDatabaseStructureDescription();
 
+    /**
+     * 获取每张表结构的自然语言描述
+     *
+     * @return 按表顺序排列的表名到描述的映射
+     */
+    Map<String, String> getTableDescriptions();
+
     /**
      * 获取表之间的关系描述
      *
@@ -0,0 +1,202 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.utils.ExpiringLruCache;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 异步评估服务
+ * 查询结果先行返回，大模型评估在后台流式生成，前端可通过SSE订阅或轮询获取
+ */
+@Service
+public class EvaluationStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationStreamService.class);
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final int MAX_TASKS = 1000;
+    private static final long TASK_TTL_MS = 10 * 60 * 1000L;
+    private static final long SSE_TIMEOUT_MS = 120_000L;
+
+    private final LlmService llmService;
+    private final ExpiringLruCache<String, EvaluationTask> tasks = new ExpiringLruCache<>(MAX_TASKS, TASK_TTL_MS);
+
+    public EvaluationStreamService(LlmService llmService) {
+        this.llmService = llmService;
+    }
+
+    /**
+     * 启动后台评估任务
+     *
+     * @param query 原始自然语言查询
+     * @param sql 执行的SQL语句或API调用描述
+     * @param results 查询结果
+     * @return 评估任务ID
+     */
+    public String startEvaluation(String query, String sql, Object results) {
+        String evaluationId = UUID.randomUUID().toString();
+        EvaluationTask task = new EvaluationTask(evaluationId);
+        tasks.put(evaluationId, task);
+
+        try {
+            llmService.evaluateSqlResultsStreaming(query, sql, results, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    task.append(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    task.complete();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (error instanceof ServiceOverloadedException) {
+                        log.warn("评估任务{}因大模型繁忙未执行: {}", evaluationId, error.getMessage());
+                        task.fail("评估服务繁忙，请稍后重试");
+                        return;
+                    }
+                    log.warn("评估任务{}失败: {}", evaluationId, error.getMessage());
+                    task.fail("评估生成失败，请稍后重试");
+                }
+            });
+        } catch (ServiceOverloadedException e) {
+            log.warn("评估任务{}因大模型繁忙被拒绝: {}", evaluationId, e.getMessage());
+            task.fail("评估服务繁忙，请稍后重试");
+        } catch (Exception e) {
+            log.warn("评估任务{}启动失败: {}", evaluationId, e.getMessage());
+            task.fail("评估生成失败，请稍后重试");
+        }
+
+        return evaluationId;
+    }
+
+    /**
+     * 获取评估任务当前状态及已生成的内容，用于轮询
+     */
+    public Optional<Map<String, Object>> getEvaluation(String evaluationId) {
+        return tasks.get(evaluationId).map(EvaluationTask::snapshot);
+    }
+
+    /**
+     * 订阅评估任务的流式输出
+     */
+    public SseEmitter subscribe(String evaluationId) {
+        EvaluationTask task = tasks.get(evaluationId)
+                .orElseThrow(() -> new IllegalArgumentException("评估任务不存在或已过期: " + evaluationId));
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        task.addSubscriber(emitter);
+        return emitter;
+    }
+
+    private static class EvaluationTask {
+        private final String evaluationId;
+        private final StringBuilder evaluation = new StringBuilder();
+        private final List<SseEmitter> subscribers = new ArrayList<>();
+        private String status = STATUS_RUNNING;
+        private String error;
+
+        EvaluationTask(String evaluationId) {
+            this.evaluationId = evaluationId;
+        }
+
+        synchronized void append(String token) {
+            evaluation.append(token);
+            // 遍历副本，发送失败时的完成回调会修改订阅列表
+            for (SseEmitter emitter : List.copyOf(subscribers)) {
+                if (!send(emitter, "token", token)) {
+                    subscribers.remove(emitter);
+                }
+            }
+        }
+
+        synchronized void complete() {
+            status = STATUS_COMPLETED;
+            finishSubscribers();
+        }
+
+        synchronized void fail(String message) {
+            status = STATUS_FAILED;
+            error = message;
+            finishSubscribers();
+        }
+
+        synchronized void addSubscriber(SseEmitter emitter) {
+            // 先补发已生成的内容，保证晚到的订阅者也能拿到完整评估
+            if (evaluation.length() > 0 && !send(emitter, "token", evaluation.toString())) {
+                return;
+            }
+
+            if (!STATUS_RUNNING.equals(status)) {
+                finish(emitter);
+                return;
+            }
+
+            subscribers.add(emitter);
+            emitter.onCompletion(() -> removeSubscriber(emitter));
+            emitter.onTimeout(() -> removeSubscriber(emitter));
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("evaluationId", evaluationId);
+            snapshot.put("status", status);
+            snapshot.put("evaluation", evaluation.toString());
+            if (error != null) {
+                snapshot.put("error", error);
+            }
+            return snapshot;
+        }
+
+        private synchronized void removeSubscriber(SseEmitter emitter) {
+            subscribers.remove(emitter);
+        }
+
+        private void finishSubscribers() {
+            List<SseEmitter> pending = List.copyOf(subscribers);
+            subscribers.clear();
+            for (SseEmitter emitter : pending) {
+                finish(emitter);
+            }
+        }
+
+        private void finish(SseEmitter emitter) {
+            boolean sent = STATUS_COMPLETED.equals(status)
+                    ? send(emitter, "complete", evaluation.toString())
+                    : send(emitter, "error", error);
+            if (sent) {
+                emitter.complete();
+            }
+        }
+
+        private boolean send(SseEmitter emitter, String eventName, String data) {
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(data));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开，丢弃该订阅
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+    }
+}
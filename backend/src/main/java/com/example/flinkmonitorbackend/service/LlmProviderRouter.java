@@ -0,0 +1,396 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.utils.ConcurrencyLimiter;
+import com.example.flinkmonitorbackend.utils.QueryCancelledException;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大模型提供商路由
+ * 记录每个提供商最近的延迟分布和错误率，每次请求优先选择健康且最快的提供商；
+ * 首选提供商超过延迟预算仍未返回时，对次选提供商发起对冲请求，取先成功的结果。
+ * 对冲请求是额外的一次提供商调用，需要从并发限制器另取许可，没有空闲许可时不对冲，继续等待首选提供商
+ */
+public class LlmProviderRouter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmProviderRouter.class);
+
+    private static final int LATENCY_WINDOW = 100;
+    private static final int OUTCOME_WINDOW = 50;
+    private static final int MIN_OUTCOMES_FOR_HEALTH = 5;
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final long UNHEALTHY_COOLDOWN_MS = 30_000L;
+
+    private final Map<String, ChatLanguageModel> models;
+    private final Map<String, ProviderStats> stats = new LinkedHashMap<>();
+    private final long hedgeDelayMillis;
+    private final ConcurrencyLimiter hedgeLimiter;
+    private final ExecutorService executor;
+
+    /**
+     * @param models 提供商名称到模型的映射，迭代顺序即同等条件下的优先顺序
+     * @param hedgeDelayMillis 发起对冲请求前等待首选提供商的时间，小于等于0时不对冲
+     */
+    public LlmProviderRouter(Map<String, ChatLanguageModel> models, long hedgeDelayMillis) {
+        this(models, hedgeDelayMillis, null);
+    }
+
+    /**
+     * @param models 提供商名称到模型的映射，迭代顺序即同等条件下的优先顺序
+     * @param hedgeDelayMillis 发起对冲请求前等待首选提供商的时间，小于等于0时不对冲
+     * @param hedgeLimiter 调用方所用的并发限制器，调用方已为本次请求持有一个许可，
+     *                     同时进行的每个额外请求都要再获取一个；为null时不限制对冲
+     */
+    public LlmProviderRouter(Map<String, ChatLanguageModel> models, long hedgeDelayMillis, ConcurrencyLimiter hedgeLimiter) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个大模型提供商");
+        }
+        this.models = new LinkedHashMap<>(models);
+        this.models.keySet().forEach(name -> stats.put(name, new ProviderStats(name)));
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.hedgeLimiter = hedgeLimiter;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-router-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 自动选择提供商生成文本
+     */
+    public String generate(String prompt) {
+        List<String> ranked = rankProviders();
+        if (ranked.size() == 1 || hedgeDelayMillis <= 0) {
+            return generateSequentially(ranked, prompt);
+        }
+        return generateHedged(ranked, prompt);
+    }
+
+    /**
+     * 使用指定的提供商生成文本，不做回退
+     */
+    public String generate(String provider, String prompt) {
+        ChatLanguageModel model = models.get(provider);
+        if (model == null) {
+            throw new IllegalArgumentException("未配置的大模型提供商: " + provider);
+        }
+        return call(provider, prompt);
+    }
+
+    /**
+     * 在后台向每个提供商发送一次请求，预先建立连接并加载模型
+     * 预热耗时包含模型加载时间，不计入延迟统计
+     */
+    public void warmUp(String prompt) {
+        models.forEach((provider, model) -> executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                model.generate(prompt);
+                log.info("大模型提供商{}预热完成，耗时{}ms", provider, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (RuntimeException e) {
+                log.warn("大模型提供商{}预热失败: {}", provider, e.getMessage());
+            }
+        }));
+    }
+
+    public boolean hasProvider(String provider) {
+        return models.containsKey(provider);
+    }
+
+    /**
+     * 按健康状态和延迟排序的提供商列表
+     * 健康的提供商在前，按p50延迟升序排列，尚无延迟数据的提供商视为最快以便获得采样；
+     * 不健康的提供商排在最后，仍可作为兜底
+     */
+    public List<String> rankProviders() {
+        long now = System.currentTimeMillis();
+        List<ProviderStats> healthy = new ArrayList<>();
+        List<ProviderStats> unhealthy = new ArrayList<>();
+        for (ProviderStats providerStats : stats.values()) {
+            if (providerStats.isHealthy(now)) {
+                healthy.add(providerStats);
+            } else {
+                unhealthy.add(providerStats);
+            }
+        }
+
+        // 排序是稳定的，延迟相同时保持配置顺序
+        healthy.sort(Comparator.comparingLong(ProviderStats::rankingLatency));
+        unhealthy.sort(Comparator.comparingDouble(ProviderStats::errorRate));
+
+        List<String> ranked = new ArrayList<>();
+        healthy.forEach(providerStats -> ranked.add(providerStats.name));
+        unhealthy.forEach(providerStats -> ranked.add(providerStats.name));
+        return ranked;
+    }
+
+    /**
+     * 各提供商当前的统计快照
+     */
+    public List<ProviderSnapshot> getStats() {
+        long now = System.currentTimeMillis();
+        return stats.values().stream().map(providerStats -> providerStats.snapshot(now)).toList();
+    }
+
+    private String generateSequentially(List<String> ranked, String prompt) {
+        RuntimeException lastError = null;
+        for (String provider : ranked) {
+            try {
+                return call(provider, prompt);
+            } catch (RuntimeException e) {
+                // 请求已取消时不再尝试其他提供商
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new QueryCancelledException("大模型请求被取消");
+                }
+                log.warn("大模型提供商{}调用失败，尝试下一个: {}", provider, e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private String generateHedged(List<String> ranked, String prompt) {
+        CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+        // 进行中的请求，对冲许可由请求自己在提供商调用返回时归还，返回后落败的请求仍占用许可直到调用真正结束
+        Map<Future<String>, HedgeCall> running = new HashMap<>();
+        Deque<String> pending = new ArrayDeque<>(ranked);
+        RuntimeException lastError = null;
+        // 调用方持有的许可覆盖一个进行中的请求，其余请求各自获取对冲许可
+        boolean callerPermitInUse = true;
+
+        start(completionService, running, new HedgeCall(pending.poll(), prompt, false));
+
+        try {
+            while (!running.isEmpty()) {
+                // 还有候选提供商时只等待延迟预算，超时即发起对冲请求
+                Future<String> done = pending.isEmpty()
+                        ? completionService.take()
+                        : completionService.poll(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+
+                if (done == null) {
+                    boolean hedgePermit = callerPermitInUse;
+                    if (hedgePermit && !tryAcquireHedgePermit()) {
+                        log.info("大模型请求超过{}ms未返回，但没有空闲的并发许可，不发起对冲请求", hedgeDelayMillis);
+                        continue;
+                    }
+                    callerPermitInUse = true;
+                    String hedge = pending.poll();
+                    log.info("大模型请求超过{}ms未返回，对冲请求提供商{}", hedgeDelayMillis, hedge);
+                    start(completionService, running, new HedgeCall(hedge, prompt, hedgePermit));
+                    continue;
+                }
+
+                if (!running.remove(done).holdsHedgePermit) {
+                    callerPermitInUse = false;
+                }
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof RuntimeException runtimeException
+                            ? runtimeException
+                            : new RuntimeException(e.getCause());
+                    // 失败后立即尝试下一个提供商，不再等待延迟预算；调用方的许可空出时直接使用
+                    boolean hedgePermit = callerPermitInUse;
+                    if (!pending.isEmpty() && (!hedgePermit || tryAcquireHedgePermit())) {
+                        callerPermitInUse = true;
+                        start(completionService, running, new HedgeCall(pending.poll(), prompt, hedgePermit));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // 请求已取消，下面会取消所有进行中的提供商调用
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("大模型请求被取消");
+        } finally {
+            running.forEach((future, hedgeCall) -> {
+                future.cancel(true);
+                hedgeCall.releaseIfNotStarted();
+            });
+        }
+
+        throw lastError;
+    }
+
+    private boolean tryAcquireHedgePermit() {
+        return hedgeLimiter == null || hedgeLimiter.tryAcquire();
+    }
+
+    private void start(CompletionService<String> completionService, Map<Future<String>, HedgeCall> running, HedgeCall hedgeCall) {
+        running.put(completionService.submit(hedgeCall), hedgeCall);
+    }
+
+    private String call(String provider, String prompt) {
+        ProviderStats providerStats = stats.get(provider);
+        long start = System.nanoTime();
+        try {
+            String response = models.get(provider).generate(prompt);
+            providerStats.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        } catch (RuntimeException e) {
+            // 对冲请求的落败方被取消时不计入错误率
+            if (!Thread.currentThread().isInterrupted()) {
+                providerStats.recordFailure();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提供商统计快照
+     *
+     * @param provider 提供商名称
+     * @param p50Millis 最近成功请求的p50延迟，无数据时为-1
+     * @param p95Millis 最近成功请求的p95延迟，无数据时为-1
+     * @param errorRate 最近请求的错误率
+     * @param samples 最近请求数
+     * @param healthy 是否健康
+     */
+    public record ProviderSnapshot(String provider, long p50Millis, long p95Millis,
+                                   double errorRate, int samples, boolean healthy) {
+    }
+
+    private static final class ProviderStats {
+        private final String name;
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private final boolean[] outcomes = new boolean[OUTCOME_WINDOW];
+        private int latencyCount;
+        private int latencyNext;
+        private int outcomeCount;
+        private int outcomeNext;
+        private int failuresInWindow;
+        private int consecutiveFailures;
+        private long lastFailureAt;
+
+        ProviderStats(String name) {
+            this.name = name;
+        }
+
+        synchronized void recordSuccess(long latencyMillis) {
+            latencies[latencyNext] = latencyMillis;
+            latencyNext = (latencyNext + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+            consecutiveFailures = 0;
+            recordOutcome(true);
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            lastFailureAt = System.currentTimeMillis();
+            recordOutcome(false);
+        }
+
+        private void recordOutcome(boolean success) {
+            if (outcomeCount == OUTCOME_WINDOW && !outcomes[outcomeNext]) {
+                failuresInWindow--;
+            }
+            outcomes[outcomeNext] = success;
+            if (!success) {
+                failuresInWindow++;
+            }
+            outcomeNext = (outcomeNext + 1) % OUTCOME_WINDOW;
+            outcomeCount = Math.min(outcomeCount + 1, OUTCOME_WINDOW);
+        }
+
+        synchronized double errorRate() {
+            return outcomeCount == 0 ? 0.0 : (double) failuresInWindow / outcomeCount;
+        }
+
+        /**
+         * 连续失败或错误率过高时视为不健康，冷却期过后放行请求探测是否恢复
+         */
+        synchronized boolean isHealthy(long now) {
+            boolean failing = consecutiveFailures >= MAX_CONSECUTIVE_FAILURES
+                    || (outcomeCount >= MIN_OUTCOMES_FOR_HEALTH && errorRate() >= MAX_ERROR_RATE);
+            return !failing || now - lastFailureAt >= UNHEALTHY_COOLDOWN_MS;
+        }
+
+        synchronized long rankingLatency() {
+            return latencyCount == 0 ? 0 : percentile(50);
+        }
+
+        synchronized long percentile(int percentile) {
+            if (latencyCount == 0) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+            return sorted[Math.max(0, index)];
+        }
+
+        synchronized ProviderSnapshot snapshot(long now) {
+            return new ProviderSnapshot(name, percentile(50), percentile(95), errorRate(), outcomeCount, isHealthy(now));
+        }
+    }
+
+    /**
+     * 一次提供商调用，持有对冲许可时在调用返回后归还；
+     * 尚未开始执行就被取消的调用由发起方归还许可，两者只有一方会归还
+     */
+    private final class HedgeCall implements Callable<String> {
+        private final String provider;
+        private final String prompt;
+        private final boolean holdsHedgePermit;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private HedgeCall(String provider, String prompt, boolean holdsHedgePermit) {
+            this.provider = provider;
+            this.prompt = prompt;
+            this.holdsHedgePermit = holdsHedgePermit;
+        }
+
+        @Override
+        public String call() {
+            if (!claimed.compareAndSet(false, true)) {
+                throw new QueryCancelledException("大模型请求被取消");
+            }
+            try {
+                return LlmProviderRouter.this.call(provider, prompt);
+            } finally {
+                releasePermit();
+            }
+        }
+
+        void releaseIfNotStarted() {
+            if (claimed.compareAndSet(false, true)) {
+                releasePermit();
+            }
+        }
+
+        private void releasePermit() {
+            if (holdsHedgePermit && hedgeLimiter != null) {
+                hedgeLimiter.release();
+            }
+        }
+    }
+}
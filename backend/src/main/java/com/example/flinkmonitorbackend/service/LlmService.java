@@ -1,55 +1,127 @@
 package com.example.flinkmonitorbackend.service;
 
+import com.example.flinkmonitorbackend.utils.CancellationToken;
+import com.example.flinkmonitorbackend.utils.ConcurrencyLimiter;
+import com.example.flinkmonitorbackend.utils.ResultSummarizer;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
+import com.example.flinkmonitorbackend.utils.SingleFlight;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.output.Response;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * LLM服务类，用于调用不同的LLM API生成SQL查询
  */
 @Service
 public class LlmService {
 
-    private final ChatLanguageModel defaultChatModel;
+    private static final String WARMUP_PROMPT = "请只回复OK";
+
     private final OllamaChatModel ollamaChatModel;
+    private final OllamaStreamingChatModel ollamaStreamingChatModel; // 用于流式输出评估结果
     private final OpenAiChatModel openAiChatModel; // 用于DeepSeek API
+    private final ResultSummarizer resultSummarizer;
+    private final SqlValidationService sqlValidationService;
+    // 按延迟和错误率在各提供商之间路由
+    private final LlmProviderRouter providerRouter;
+    // 相同提示词的并发调用只请求一次模型
+    private final SingleFlight<String, String> inFlightPrompts = new SingleFlight<>();
+    // 限制同时发往模型的请求数，超出排队上限时快速失败
+    private final ConcurrencyLimiter concurrencyLimiter;
+    // 流式评估在这里排队等待许可，不占用请求线程；线程只等待许可，流式输出由模型客户端回调
+    private final ThreadPoolExecutor evaluationExecutor;
+    private final boolean warmupEnabled;
 
     /**
-     * 初始化LLM客户端
+     * 注入共享的模型客户端，客户端由LangChainConfig统一创建
      */
-    public LlmService() {
-        // 创建Ollama客户端，连接本地Ollama服务
-        this.ollamaChatModel = OllamaChatModel.builder()
-                .baseUrl("http://localhost:11434") // Ollama默认端口
-                .modelName("llama3.2:latest") // 使用本地可用的llama3.2模型
-                .temperature(0.1) // 低温度，生成更确定性的结果
-                .timeout(java.time.Duration.ofSeconds(60)) // 设置超时时间为60秒
-                .build();
+    public LlmService(ResultSummarizer resultSummarizer,
+                      SqlValidationService sqlValidationService,
+                      OllamaChatModel ollamaChatModel,
+                      OllamaStreamingChatModel ollamaStreamingChatModel,
+                      OpenAiChatModel deepSeekChatModel,
+                      @Value("${llm.concurrency.max-concurrent:2}") int maxConcurrent,
+                      @Value("${llm.concurrency.max-queue-depth:8}") int maxQueueDepth,
+                      @Value("${llm.concurrency.max-wait-ms:30000}") long maxWaitMillis,
+                      @Value("${llm.router.providers:ollama}") List<String> routedProviders,
+                      @Value("${llm.router.hedge-delay-ms:8000}") long hedgeDelayMillis,
+                      @Value("${llm.warmup.enabled:true}") boolean warmupEnabled) {
+        this.resultSummarizer = resultSummarizer;
+        this.sqlValidationService = sqlValidationService;
+        this.ollamaChatModel = ollamaChatModel;
+        this.ollamaStreamingChatModel = ollamaStreamingChatModel;
+        this.openAiChatModel = deepSeekChatModel;
+        this.concurrencyLimiter = new ConcurrencyLimiter("大模型服务", maxConcurrent, maxQueueDepth, maxWaitMillis);
+        // 超出限制器排队上限的评估在限制器中同样会被拒绝，这里只需容纳正在执行和排队的评估
+        AtomicInteger threadCount = new AtomicInteger();
+        this.evaluationExecutor = new ThreadPoolExecutor(maxConcurrent + maxQueueDepth, maxConcurrent + maxQueueDepth,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, maxQueueDepth)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "llm-evaluation-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.evaluationExecutor.allowCoreThreadTimeOut(true);
+        this.warmupEnabled = warmupEnabled;
+
+        // 参与自动路由的提供商，配置顺序即同等条件下的优先顺序
+        Map<String, ChatLanguageModel> providers = new LinkedHashMap<>();
+        for (String provider : routedProviders) {
+            ChatLanguageModel model = getChatModelByProvider(provider.trim());
+            if (model == null) {
+                throw new IllegalArgumentException("不支持的大模型提供商: " + provider);
+            }
+            providers.put(provider.trim().toLowerCase(), model);
+        }
+        this.providerRouter = new LlmProviderRouter(providers, hedgeDelayMillis, concurrencyLimiter);
+    }
 
-        // 创建OpenAI客户端，用于连接DeepSeek API
-        // 注意：这里需要替换为实际的DeepSeek API密钥
-        this.openAiChatModel = OpenAiChatModel.builder()
-                .baseUrl("https://api.deepseek.com/v1") // DeepSeek API地址
-                .apiKey("your-deepseek-api-key") // DeepSeek API密钥
-                .modelName("deepseek-chat") // DeepSeek聊天模型
-                .temperature(0.1) // 低温度，生成更确定性的结果
-                .timeout(java.time.Duration.ofSeconds(60)) // 设置超时时间为60秒
-                .build();
+    /**
+     * 应用启动后在后台预热各提供商：建立HTTP连接并让Ollama提前加载模型，
+     * 避免第一个用户请求承担建连和模型加载的耗时
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmupEnabled) {
+            providerRouter.warmUp(WARMUP_PROMPT);
+        }
+    }
 
-        // 默认使用Ollama模型
-        this.defaultChatModel = ollamaChatModel;
+    @PreDestroy
+    public void shutdown() {
+        evaluationExecutor.shutdownNow();
+        providerRouter.close();
     }
 
     /**
-     * 生成SQL查询，使用默认模型
+     * 生成SQL查询，自动选择提供商
      *
      * @param naturalLanguageQuery 自然语言查询
      * @param databaseMetadata 数据库元数据描述
      * @return 生成的SQL查询语句
      */
     public String generateSql(String naturalLanguageQuery, String databaseMetadata) {
-        return generateSql(naturalLanguageQuery, databaseMetadata, "ollama");
+        return generateSql(naturalLanguageQuery, databaseMetadata, null);
     }
 
     /**
@@ -57,18 +129,28 @@ public class LlmService {
      *
      * @param naturalLanguageQuery 自然语言查询
      * @param databaseMetadata 数据库元数据描述
-     * @param provider 模型提供商：ollama或deepseek
+     * @param provider 模型提供商：ollama或deepseek，为null时自动选择
      * @return 生成的SQL查询语句
      */
     public String generateSql(String naturalLanguageQuery, String databaseMetadata, String provider) {
         // 构建提示词，包含数据库元数据和用户查询
-        String prompt = buildSqlGenerationPrompt(naturalLanguageQuery, databaseMetadata);
-        
-        // 根据提供商选择模型
-        ChatLanguageModel model = getChatModelByProvider(provider);
+        String prompt = buildSqlGenerationPrompt(naturalLanguageQuery, databaseMetadata, List.of());
         
         // 调用API生成SQL
-        return model.generate(prompt);
+        return generate(provider, prompt);
+    }
+
+    /**
+     * 生成SQL查询，提示词中附带相似的历史查询作为参考示例，自动选择提供商
+     *
+     * @param naturalLanguageQuery 自然语言查询
+     * @param databaseMetadata 数据库元数据描述
+     * @param examples 相似的历史查询及其SQL
+     * @return 生成的SQL查询语句
+     */
+    public String generateSqlWithExamples(String naturalLanguageQuery, String databaseMetadata, List<QueryExampleStore.Example> examples) {
+        String prompt = buildSqlGenerationPrompt(naturalLanguageQuery, databaseMetadata, examples);
+        return generate(null, prompt);
     }
 
     /**
@@ -76,11 +158,22 @@ public class LlmService {
      *
      * @param naturalLanguageQuery 自然语言查询
      * @param databaseMetadata 数据库元数据描述
+     * @param examples 参考示例，可为空
      * @return 构建好的提示词
      */
-    private String buildSqlGenerationPrompt(String naturalLanguageQuery, String databaseMetadata) {
+    private String buildSqlGenerationPrompt(String naturalLanguageQuery, String databaseMetadata, List<QueryExampleStore.Example> examples) {
+        StringBuilder exampleSection = new StringBuilder();
+        if (!examples.isEmpty()) {
+            exampleSection.append("\n参考示例（历史上执行成功的相似查询）：\n");
+            for (QueryExampleStore.Example example : examples) {
+                exampleSection.append("问题：").append(example.query()).append("\n")
+                        .append("SQL：").append(example.sql()).append("\n");
+            }
+        }
+
         return "你是一个专业的SQL生成助手，请根据以下数据库元数据和用户的自然语言查询，生成准确的SQL查询语句。\n" +
                 "\n数据库元数据：\n" + databaseMetadata + "\n" +
+                exampleSection +
                 "\n用户的自然语言查询：\n" + naturalLanguageQuery + "\n" +
                 "\n请严格遵守以下规则：\n" +
                 "1. 只生成SQL语句，不要添加任何解释或其他内容\n" +
@@ -96,55 +189,13 @@ public class LlmService {
 
     /**
      * 检查SQL是否安全
+     * 由SqlValidationService解析语法树判断：必须是单条只读SELECT语句，不含注释、写入或加锁子句及危险函数
      *
      * @param sql 要检查的SQL语句
      * @return 是否安全
      */
     public boolean isSqlSafe(String sql) {
-        if (sql == null || sql.trim().isEmpty()) {
-            return false;
-        }
-
-        // 转换为大写，便于检查
-        String upperSql = sql.toUpperCase();
-
-        // 禁止的SQL操作
-        String[] dangerousKeywords = {
-                "DROP", "ALTER", "TRUNCATE", "DELETE", "UPDATE", "INSERT", "CREATE",
-                "GRANT", "REVOKE", "EXEC", "EXECUTE", "CALL", "MERGE", "LOCK",
-                "UNLOCK", "COMMIT", "ROLLBACK", "SAVEPOINT", "RELEASE", "SET",
-                "SHOW", "USE", "LOAD", "DUMP", "BACKUP", "RESTORE"
-        };
-
-        // 检查是否包含危险关键字
-        for (String keyword : dangerousKeywords) {
-            if (upperSql.contains(" " + keyword + " ") || upperSql.startsWith(keyword + " ") || upperSql.contains(" " + keyword + ";")) {
-                return false;
-            }
-        }
-
-        // 检查是否包含注释，防止SQL注入
-        if (upperSql.contains("--") || upperSql.contains("/*")) {
-            return false;
-        }
-
-        // 检查是否包含多个语句
-        if (upperSql.contains(";;")) {
-            // 只允许单个SELECT语句，过滤掉空字符串元素
-            String[] statements = upperSql.split(";;").clone();
-            int actualStatementCount = 0;
-            for (String statement : statements) {
-                if (statement.trim().length() > 0) {
-                    actualStatementCount++;
-                }
-            }
-            if (actualStatementCount > 1) {
-                return false;
-            }
-        }
-
-        // 确保是SELECT语句
-        return upperSql.startsWith("SELECT");
+        return sqlValidationService.isSafe(sql);
     }
 
     /**
@@ -184,7 +235,7 @@ public class LlmService {
      * @return 结果评估的自然语言描述
      */
     public String evaluateSqlResults(String query, String sql, Object results) {
-        return evaluateSqlResults(query, sql, results, "ollama");
+        return evaluateSqlResults(query, sql, results, null);
     }
 
     /**
@@ -193,18 +244,104 @@ public class LlmService {
      * @param query 原始自然语言查询
      * @param sql 生成的SQL语句
      * @param results 查询结果
-     * @param provider 模型提供商：ollama或deepseek
+     * @param provider 模型提供商：ollama或deepseek，为null时自动选择
      * @return 结果评估的自然语言描述
      */
     public String evaluateSqlResults(String query, String sql, Object results, String provider) {
         // 构建评估提示词
         String prompt = buildEvaluationPrompt(query, sql, results);
         
-        // 根据提供商选择模型
-        ChatLanguageModel model = getChatModelByProvider(provider);
-        
         // 调用API生成评估
-        return model.generate(prompt);
+        return generate(provider, prompt);
+    }
+
+    /**
+     * 以流式方式评估SQL查询结果，每生成一个token即回调一次
+     * 评估在后台线程中经并发限制器排队等待许可，调用方立即返回；排队已满或等待超时时以ServiceOverloadedException回调onError
+     *
+     * @param query 原始自然语言查询
+     * @param sql 生成的SQL语句
+     * @param results 查询结果
+     * @param handler 流式输出回调
+     * @throws ServiceOverloadedException 排队的评估过多，未能提交
+     */
+    public void evaluateSqlResultsStreaming(String query, String sql, Object results, StreamingResponseHandler<AiMessage> handler) {
+        String prompt = buildEvaluationPrompt(query, sql, results);
+
+        try {
+            evaluationExecutor.execute(() -> {
+                try {
+                    concurrencyLimiter.acquire();
+                } catch (RuntimeException e) {
+                    handler.onError(e);
+                    return;
+                }
+                streamEvaluation(prompt, handler);
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ServiceOverloadedException("大模型服务繁忙，暂不生成评估");
+        }
+    }
+
+    /**
+     * 发起流式调用，调用方已持有许可；流式调用在回调中结束，许可在完成或出错时释放
+     */
+    private void streamEvaluation(String prompt, StreamingResponseHandler<AiMessage> handler) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release();
+            }
+        };
+
+        try {
+            ollamaStreamingChatModel.generate(prompt, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    release.run();
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    release.run();
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            release.run();
+            handler.onError(e);
+        }
+    }
+
+    /**
+     * 调用模型生成文本
+     * 相同提供商和提示词的并发请求合并为一次调用，实际调用受并发限制；
+     * 请求取消后不再发起调用，排队和等待中的调用被中断
+     */
+    private String generate(String provider, String prompt) {
+        String providerKey = provider == null ? "" : provider.toLowerCase();
+        CancellationToken.current().throwIfCancelled();
+        return inFlightPrompts.execute(providerKey + "\n" + prompt, () -> concurrencyLimiter.execute(() -> {
+            if (providerRouter.hasProvider(providerKey)) {
+                return providerRouter.generate(providerKey, prompt);
+            }
+            // 指定的提供商未参与路由时直接调用对应模型，未指定或不认识的提供商走自动路由
+            ChatLanguageModel model = getChatModelByProvider(providerKey);
+            return model != null ? model.generate(prompt) : providerRouter.generate(prompt);
+        }));
+    }
+
+    /**
+     * 各提供商的延迟与错误率统计
+     */
+    public List<LlmProviderRouter.ProviderSnapshot> getProviderStats() {
+        return providerRouter.getStats();
     }
 
     /**
@@ -219,7 +356,7 @@ public class LlmService {
         return "你是一个数据分析助手，请根据以下信息评估SQL查询结果：\n" +
                 "\n1. 原始自然语言查询：\n" + query + "\n" +
                 "\n2. 生成的SQL语句：\n" + sql + "\n" +
-                "\n3. 查询结果：\n" + results + "\n" +
+                "\n3. 查询结果摘要：\n" + resultSummarizer.summarize(results) + "\n" +
                 "\n请严格遵守以下规则：\n" +
                 "1. 用自然语言描述查询结果，要清晰、准确、简洁\n" +
                 "2. 分析查询结果是否符合用户的查询意图\n" +
@@ -233,17 +370,13 @@ public class LlmService {
      * 根据提供商选择聊天模型
      *
      * @param provider 模型提供商：ollama或deepseek
-     * @return 聊天模型实例
+     * @return 聊天模型实例，不支持的提供商返回null
      */
     private ChatLanguageModel getChatModelByProvider(String provider) {
-        if (provider == null) {
-            return defaultChatModel;
-        }
-
         return switch (provider.toLowerCase()) {
             case "deepseek" -> openAiChatModel;
             case "ollama" -> ollamaChatModel;
-            default -> defaultChatModel;
+            default -> null;
         };
     }
 }
\ No newline at end of file
@@ -1,35 +1,67 @@
 package com.example.flinkmonitorbackend.service;
 
+import com.example.flinkmonitorbackend.entity.ApiMetadata;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * MCP客户端
+ * 未配置mcp.server.base-url时MCP Server就是本服务，直接调用ApiMetadataService，不经过HTTP和JSON解析；
+ * 配置了远程地址时才通过HTTP访问，使用复用连接的HTTP客户端
+ */
 @Service
 public class McpClientService {
-    private final RestTemplate restTemplate;
+    private static final Logger log = LoggerFactory.getLogger(McpClientService.class);
+
+    private final ApiMetadataService apiMetadataService;
     private final ObjectMapper objectMapper;
+    // 远程MCP服务器地址，为null时使用进程内调用
     private final String mcpBaseUrl;
+    private final RestTemplate restTemplate;
     
-    public McpClientService() {
-        // 配置RestTemplate，增加超时设置
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(60000); // 60秒连接超时
-        factory.setReadTimeout(60000); // 60秒读取超时
-        this.restTemplate = new RestTemplate(factory);
+    public McpClientService(ApiMetadataService apiMetadataService,
+                            ObjectMapper objectMapper,
+                            @Value("${mcp.server.base-url:}") String mcpBaseUrl,
+                            @Value("${mcp.server.timeout-ms:60000}") long timeoutMillis) {
+        this.apiMetadataService = apiMetadataService;
+        this.objectMapper = objectMapper;
         
-        this.objectMapper = new ObjectMapper();
-        // 使用本地MCP服务器地址，实际部署时可以从配置中读取
-        this.mcpBaseUrl = "http://localhost:8082/api/api-metadata";
+        if (mcpBaseUrl == null || mcpBaseUrl.isBlank()) {
+            this.mcpBaseUrl = null;
+            this.restTemplate = null;
+        } else {
+            // JDK HttpClient在请求之间保持并复用连接，避免每次调用重新建立连接
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(timeoutMillis))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+            factory.setReadTimeout(Duration.ofMillis(timeoutMillis));
+            this.mcpBaseUrl = mcpBaseUrl.endsWith("/") ? mcpBaseUrl.substring(0, mcpBaseUrl.length() - 1) : mcpBaseUrl;
+            this.restTemplate = new RestTemplate(factory);
+        }
+    }
+    
+    /**
+     * 是否使用进程内调用
+     */
+    public boolean isLocal() {
+        return mcpBaseUrl == null;
     }
     
     /**
@@ -37,12 +69,14 @@ public class McpClientService {
      */
     public JsonNode getMcpApiMetadata() {
         try {
+            if (isLocal()) {
+                return objectMapper.readTree(apiMetadataService.getApisAsMcpFormat());
+            }
             String url = mcpBaseUrl + "/mcp";
             ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
             return objectMapper.readTree(response.getBody());
         } catch (Exception e) {
-            System.err.println("获取MCP API元数据失败: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("获取MCP API元数据失败: {}", e.getMessage(), e);
             return null;
         }
     }
@@ -52,8 +86,15 @@ public class McpClientService {
      */
     public Object executeApiCall(String apiId, Map<String, Object> params) {
         try {
-            System.out.println("开始执行MCP API调用: " + apiId);
-            System.out.println("调用参数: " + params);
+            log.info("开始执行MCP API调用: {}", apiId);
+            // 参数和返回结果可能包含业务数据，只在调试级别输出
+            log.debug("MCP API调用参数: apiId={}, params={}", apiId, params);
+            
+            if (isLocal()) {
+                Object result = unwrapResponse(apiMetadataService.executeApiCall(apiId, params));
+                log.debug("MCP API进程内调用成功: {}", apiId);
+                return result;
+            }
             
             String url = mcpBaseUrl + "/execute/" + apiId;
             HttpHeaders headers = new HttpHeaders();
@@ -63,87 +104,99 @@ public class McpClientService {
             HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(params, headers);
             ResponseEntity<Object> response = restTemplate.exchange(url, HttpMethod.POST, requestEntity, Object.class);
             
-            System.out.println("MCP API调用成功，返回状态: " + response.getStatusCode());
-            System.out.println("返回结果: " + response.getBody());
+            log.info("MCP API调用成功: apiId={}, status={}", apiId, response.getStatusCode());
+            log.debug("MCP API返回结果: apiId={}, body={}", apiId, response.getBody());
             
             return response.getBody();
         } catch (Exception e) {
-            System.err.println("MCP API调用失败: " + e.getMessage());
-            e.printStackTrace();
+            // 异常信息可能带有响应体，只在调试级别输出
+            log.warn("MCP API调用失败: apiId={}", apiId);
+            log.debug("MCP API调用失败详情: apiId={}", apiId, e);
             throw new RuntimeException("MCP API调用失败: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * 控制器方法通常返回ResponseEntity，进程内调用时按HTTP调用的语义处理：非2xx状态视为失败，成功时只返回响应体
+     */
+    private Object unwrapResponse(Object result) {
+        if (!(result instanceof ResponseEntity<?> response)) {
+            return result;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException(response.getStatusCode() + ": " + response.getBody());
+        }
+        return response.getBody();
+    }
+    
     /**
      * 获取MCP服务器信息
      */
     public Map<String, Object> getMcpServerInfo() {
         try {
+            if (isLocal()) {
+                return apiMetadataService.getMcpServerInfo();
+            }
             String url = mcpBaseUrl + "/mcp/server-info";
             ResponseEntity<? extends Map> response = restTemplate.getForEntity(url, Map.class);
             return (Map<String, Object>) response.getBody();
         } catch (Exception e) {
-            System.err.println("获取MCP服务器信息失败: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("获取MCP服务器信息失败: {}", e.getMessage(), e);
             return null;
         }
     }
     
     /**
-     * 搜索匹配的API
+     * 从远程MCP服务器获取全部API
      */
-    public List<Map<String, Object>> searchMatchingApis(String query) {
+    private List<ApiMetadata> listRemoteApis() {
+        JsonNode apiMetadata = getMcpApiMetadata();
+        if (apiMetadata == null || !apiMetadata.has("apis")) {
+            return new ArrayList<>();
+        }
+        return objectMapper.convertValue(apiMetadata.get("apis"),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, ApiMetadata.class));
+    }
+    
+    /**
+     * 检索匹配的API，按相关度排序
+     * 进程内调用时使用随元数据刷新构建的索引，远程服务器则对本次获取的元数据建立索引
+     */
+    public List<ApiMetadata> findMatchingApis(String query) {
         try {
-            // 获取所有API元数据
-            JsonNode apiMetadata = getMcpApiMetadata();
-            if (apiMetadata == null || !apiMetadata.has("apis")) {
-                return new ArrayList<>();
+            if (isLocal()) {
+                return apiMetadataService.searchApis(query);
             }
-            
-            List<Map<String, Object>> matchingApis = new ArrayList<>();
-            JsonNode apis = apiMetadata.get("apis");
-            
-            // 遍历所有API，查找匹配的API
-            for (JsonNode api : apis) {
-                String description = api.has("description") ? api.get("description").asText().toLowerCase() : "";
-                List<String> tags = new ArrayList<>();
-                if (api.has("tags")) {
-                    JsonNode apiTags = api.get("tags");
-                    if (apiTags.isArray()) {
-                        for (JsonNode tag : apiTags) {
-                            tags.add(tag.asText().toLowerCase());
-                        }
-                    }
-                }
-                
-                // 简单的关键词匹配
-                String normalizedQuery = query.toLowerCase();
-                if (description.contains(normalizedQuery) || tags.stream().anyMatch(tag -> tag.contains(normalizedQuery))) {
-                    Map<String, Object> apiMap = objectMapper.convertValue(api, Map.class);
-                    matchingApis.add(apiMap);
-                }
-            }
-            
-            return matchingApis;
+            return new ApiSearchIndex(listRemoteApis()).search(query);
         } catch (Exception e) {
-            System.err.println("搜索匹配的API失败: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("搜索匹配的API失败: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
     
+    /**
+     * 搜索匹配的API
+     */
+    public List<Map<String, Object>> searchMatchingApis(String query) {
+        List<Map<String, Object>> matchingApis = new ArrayList<>();
+        for (ApiMetadata api : findMatchingApis(query)) {
+            matchingApis.add(objectMapper.convertValue(api, Map.class));
+        }
+        return matchingApis;
+    }
+    
     /**
      * 增强的API调用，支持智能参数映射和结果处理
      */
     public Object executeEnhancedApiCall(String apiId, Map<String, Object> params) {
         try {
             // 搜索匹配的API
-            List<Map<String, Object>> matchingApis = searchMatchingApis(apiId);
+            List<ApiMetadata> matchingApis = findMatchingApis(apiId);
             if (!matchingApis.isEmpty()) {
-                // 获取第一个匹配的API
-                Map<String, Object> apiInfo = matchingApis.get(0);
-                String actualApiId = apiInfo.getOrDefault("id", apiId).toString();
-                System.out.println("使用匹配的API ID: " + actualApiId + " 替代原始API ID: " + apiId);
+                // 获取相关度最高的API
+                ApiMetadata apiInfo = matchingApis.get(0);
+                String actualApiId = apiInfo.id != null ? apiInfo.id : apiId;
+                log.debug("使用匹配的API ID: {} 替代原始API ID: {}", actualApiId, apiId);
                 
                 // 执行API调用
                 return executeApiCall(actualApiId, params);
@@ -152,8 +205,8 @@ public class McpClientService {
             // 如果没有匹配的API，尝试直接调用原始API ID
             return executeApiCall(apiId, params);
         } catch (Exception e) {
-            System.err.println("增强的API调用失败: " + e.getMessage());
-            e.printStackTrace();
+            // 调用失败已在executeApiCall中记录
+            log.debug("增强的API调用失败: apiId={}", apiId, e);
             throw new RuntimeException("增强的API调用失败: " + e.getMessage(), e);
         }
     }
@@ -24,6 +24,14 @@ public interface NaturalLanguageQueryService {
      */
     Map<String, Object> executeNaturalLanguageQueryWithEvaluation(String naturalLanguageQuery);
 
+    /**
+     * 执行自然语言查询并立即返回查询结果，评估在后台异步生成
+     *
+     * @param naturalLanguageQuery 自然语言查询
+     * @return 包含查询结果和评估任务ID的数据
+     */
+    Map<String, Object> executeNaturalLanguageQueryWithAsyncEvaluation(String naturalLanguageQuery);
+
     /**
      * 执行指定的SQL查询并返回包含评估结果的数据
      *
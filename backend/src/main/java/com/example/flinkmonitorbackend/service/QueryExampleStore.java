@@ -0,0 +1,388 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.entity.QueryHistory;
+import com.example.flinkmonitorbackend.mapper.QueryHistoryMapper;
+import com.example.flinkmonitorbackend.utils.KeywordMatcher;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SqlTranslationCache;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 查询示例库
+ * 持久化通过校验的自然语言查询与SQL，并在内存中按字符二元组建立倒排索引：
+ * 与历史查询几乎相同的查询直接复用历史SQL，其余查询取最相似的若干条作为大模型的参考示例
+ */
+@Service
+public class QueryExampleStore {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryExampleStore.class);
+
+    // 数据库不可用时间隔一段时间再尝试加载历史
+    private static final long LOAD_RETRY_INTERVAL_MS = 60_000L;
+    // 与表字段长度一致，超长的查询不作为示例
+    private static final int MAX_QUERY_LENGTH = 500;
+    private static final int MAX_NORMALIZED_LENGTH = 255;
+    // 等待写库的历史记录上限，写库跟不上时丢弃，内存中的示例不受影响
+    private static final int MAX_PENDING_WRITES = 256;
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    // 时间词和状态词，文本只差一个这样的词时含义完全不同，同义的写法映射到同一个值
+    private static final KeywordMatcher<String> QUALIFIERS = buildQualifiers();
+
+    private final QueryHistoryMapper queryHistoryMapper;
+    private final SchemaKeywordIndex schemaKeywordIndex;
+    private final int maxEntries;
+    private final int topK;
+    private final double duplicateThreshold;
+    private final double minSimilarity;
+
+    // 规范化查询文本 -> 示例
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // 字符二元组 -> 包含该二元组的规范化查询文本
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+    // 写库在单个后台线程中按提交顺序执行，不占用请求线程，同一查询的成功和失败记录不会乱序
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_WRITES),
+            runnable -> {
+                Thread thread = new Thread(runnable, "query-history-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile boolean loaded;
+    private volatile long lastLoadAttempt;
+
+    public QueryExampleStore(QueryHistoryMapper queryHistoryMapper,
+                             SchemaKeywordIndex schemaKeywordIndex,
+                             @Value("${nlq.examples.max-entries:2000}") int maxEntries,
+                             @Value("${nlq.examples.top-k:3}") int topK,
+                             @Value("${nlq.examples.duplicate-threshold:0.9}") double duplicateThreshold,
+                             @Value("${nlq.examples.min-similarity:0.3}") double minSimilarity) {
+        this.queryHistoryMapper = queryHistoryMapper;
+        this.schemaKeywordIndex = schemaKeywordIndex;
+        this.maxEntries = maxEntries;
+        this.topK = topK;
+        this.duplicateThreshold = duplicateThreshold;
+        this.minSimilarity = minSimilarity;
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 查找与历史查询几乎相同的查询对应的SQL
+     * 除文本相似度达到阈值外，还要求两个查询中的数字、时间词、状态词和提到的表、列完全一致，
+     * 避免“最近7天”复用“最近30天”、“本月”复用“上月”、“待处理”复用“已处理”的SQL
+     *
+     * @param naturalLanguageQuery 自然语言查询
+     * @return 可直接复用的历史SQL
+     */
+    public Optional<String> findNearDuplicate(String naturalLanguageQuery) {
+        String normalized = SqlTranslationCache.normalize(naturalLanguageQuery);
+        if (normalized.isEmpty()) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+
+        Entry exact = entries.get(normalized);
+        if (exact != null) {
+            return Optional.of(exact.example.sql());
+        }
+
+        List<Scored> ranked = rank(normalized);
+        if (ranked.isEmpty() || ranked.get(0).similarity < duplicateThreshold) {
+            return Optional.empty();
+        }
+
+        Entry best = ranked.get(0).entry;
+        if (!best.digits.equals(digits(normalized))
+                || !best.qualifiers.equals(qualifiers(normalized))
+                || !mentionedEntities(best.example.query()).equals(mentionedEntities(naturalLanguageQuery))) {
+            return Optional.empty();
+        }
+
+        log.debug("查询与历史查询相似度{}: {} -> {}", ranked.get(0).similarity, naturalLanguageQuery, best.example.query());
+        return Optional.of(best.example.sql());
+    }
+
+    /**
+     * 取与查询最相似的历史示例，按相似度从高到低排列
+     *
+     * @param naturalLanguageQuery 自然语言查询
+     * @return 示例列表，最多top-k条
+     */
+    public List<Example> findSimilarExamples(String naturalLanguageQuery) {
+        String normalized = SqlTranslationCache.normalize(naturalLanguageQuery);
+        if (normalized.isEmpty() || topK <= 0) {
+            return List.of();
+        }
+        ensureLoaded();
+
+        List<Example> examples = new ArrayList<>();
+        for (Scored scored : rank(normalized)) {
+            if (scored.similarity < minSimilarity || examples.size() >= topK) {
+                break;
+            }
+            examples.add(scored.entry.example);
+        }
+        return examples;
+    }
+
+    /**
+     * 记录执行成功的翻译结果，写库在后台进行，失败不影响查询
+     */
+    public void recordSuccess(String naturalLanguageQuery, String validatedSql) {
+        String normalized = SqlTranslationCache.normalize(naturalLanguageQuery);
+        if (normalized.isEmpty() || normalized.length() > MAX_NORMALIZED_LENGTH
+                || naturalLanguageQuery.length() > MAX_QUERY_LENGTH || validatedSql == null) {
+            return;
+        }
+
+        index(new Entry(new Example(naturalLanguageQuery.trim(), validatedSql), normalized, System.currentTimeMillis()), true);
+
+        QueryHistory history = new QueryHistory();
+        history.setQueryText(naturalLanguageQuery.trim());
+        history.setNormalizedQuery(normalized);
+        history.setSqlText(validatedSql);
+        history.setSuccess(true);
+        write(() -> queryHistoryMapper.upsert(history), "保存查询历史失败");
+    }
+
+    /**
+     * 记录SQL执行失败，该查询不再作为示例或被复用
+     */
+    public void recordFailure(String naturalLanguageQuery) {
+        String normalized = SqlTranslationCache.normalize(naturalLanguageQuery);
+        if (normalized.isEmpty() || normalized.length() > MAX_NORMALIZED_LENGTH) {
+            return;
+        }
+
+        remove(normalized);
+        write(() -> queryHistoryMapper.markFailed(normalized), "更新查询历史失败");
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    private void write(Runnable operation, String failureMessage) {
+        try {
+            writer.execute(() -> {
+                try {
+                    operation.run();
+                } catch (RuntimeException e) {
+                    log.warn("{}: {}", failureMessage, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("{}: 待写入的查询历史过多", failureMessage);
+        }
+    }
+
+    /**
+     * 数据库结构变更后，按旧结构生成的示例不再复用，也不再作为大模型的参考示例
+     */
+    @EventListener(SchemaChangedEvent.class)
+    public synchronized void invalidateAll() {
+        entries.clear();
+        postings.clear();
+    }
+
+    private void ensureLoaded() {
+        if (loaded || System.currentTimeMillis() - lastLoadAttempt < LOAD_RETRY_INTERVAL_MS) {
+            return;
+        }
+
+        synchronized (this) {
+            if (loaded || System.currentTimeMillis() - lastLoadAttempt < LOAD_RETRY_INTERVAL_MS) {
+                return;
+            }
+            lastLoadAttempt = System.currentTimeMillis();
+            try {
+                List<QueryHistory> histories = queryHistoryMapper.findRecentSuccessful(maxEntries);
+                for (QueryHistory history : histories) {
+                    long updatedAt = history.getUpdatedAt() != null ? history.getUpdatedAt().getTime() : 0L;
+                    Example example = new Example(history.getQueryText(), history.getSqlText());
+                    // 按当前的规则重新规范化，规则调整前保存的记录也能被精确匹配；启动后新记录的示例比库中的更新，不覆盖
+                    String normalized = SqlTranslationCache.normalize(history.getQueryText());
+                    if (!normalized.isEmpty()) {
+                        index(new Entry(example, normalized, updatedAt), false);
+                    }
+                }
+                loaded = true;
+                log.info("已加载{}条查询示例", histories.size());
+            } catch (RuntimeException e) {
+                log.warn("加载查询历史失败，暂时只使用本次运行记录的示例: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按字符二元组的Jaccard相似度对共享至少一个二元组的示例排序
+     */
+    private List<Scored> rank(String normalized) {
+        Set<String> grams = bigrams(normalized);
+        Map<String, Integer> overlaps = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> keys = postings.get(gram);
+            if (keys != null) {
+                keys.forEach(key -> overlaps.merge(key, 1, Integer::sum));
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(overlaps.size());
+        overlaps.forEach((key, overlap) -> {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                double similarity = (double) overlap / (grams.size() + entry.grams.size() - overlap);
+                ranked.add(new Scored(entry, similarity));
+            }
+        });
+        ranked.sort(Comparator.comparingDouble((Scored scored) -> scored.similarity).reversed());
+        return ranked;
+    }
+
+    private synchronized void index(Entry entry, boolean replace) {
+        Entry existing = entries.get(entry.normalized);
+        if (existing != null && !replace) {
+            return;
+        }
+        if (existing == null && entries.size() >= maxEntries) {
+            evictOldest();
+        }
+
+        entries.put(entry.normalized, entry);
+        for (String gram : entry.grams) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(entry.normalized);
+        }
+    }
+
+    private synchronized void remove(String normalized) {
+        Entry removed = entries.remove(normalized);
+        if (removed == null) {
+            return;
+        }
+        for (String gram : removed.grams) {
+            Set<String> keys = postings.get(gram);
+            if (keys != null) {
+                keys.remove(normalized);
+                if (keys.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private void evictOldest() {
+        entries.values().stream()
+                .min(Comparator.comparingLong(entry -> entry.recordedAt))
+                .ifPresent(oldest -> remove(oldest.normalized));
+    }
+
+    private Set<SchemaKeywordIndex.SchemaEntity> mentionedEntities(String query) {
+        Set<SchemaKeywordIndex.SchemaEntity> entities = new HashSet<>();
+        schemaKeywordIndex.match(query).forEach(match -> entities.add(match.value()));
+        return entities;
+    }
+
+    private static Set<String> bigrams(String normalized) {
+        Set<String> grams = new HashSet<>();
+        if (normalized.length() == 1) {
+            grams.add(normalized);
+        }
+        for (int i = 0; i + 2 <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static Set<String> qualifiers(String normalized) {
+        Set<String> qualifiers = new HashSet<>();
+        QUALIFIERS.findAll(normalized).forEach(match -> qualifiers.add(match.value()));
+        return qualifiers;
+    }
+
+    private static KeywordMatcher<String> buildQualifiers() {
+        KeywordMatcher.Builder<String> builder = KeywordMatcher.builder();
+        String[][] groups = {
+                {"今天", "今日", "当天"}, {"昨天", "昨日"}, {"前天"}, {"明天"},
+                {"本周", "这周", "本星期", "这个星期"}, {"上周", "上星期", "上个星期"}, {"下周"},
+                {"本月", "这个月", "当月"}, {"上月", "上个月"}, {"下月", "下个月"},
+                {"本季度", "这个季度"}, {"上季度", "上个季度"},
+                {"今年", "本年"}, {"去年", "上一年"}, {"前年"}, {"明年"}, {"上半年"}, {"下半年"},
+                {"月初"}, {"月底", "月末"}, {"年初"}, {"年底", "年末"},
+                {"上午"}, {"下午"}, {"晚上"}, {"夜间"}, {"周末"}, {"工作日"},
+                {"待处理", "pending"}, {"已处理", "processed"}, {"未处理"}, {"处理中"},
+                {"待审批"}, {"审批中"}, {"已批准", "已通过", "approved"}, {"已拒绝", "已驳回", "rejected"},
+                {"已撤销", "已取消"}, {"已完成"}, {"未完成"}, {"进行中"},
+                {"正常"}, {"异常"}, {"有效"}, {"无效"}, {"启用"}, {"停用", "禁用"}, {"在职"}, {"离职"}
+        };
+        for (String[] group : groups) {
+            for (String keyword : group) {
+                builder.add(keyword, group[0]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static List<String> digits(String normalized) {
+        List<String> digits = new ArrayList<>();
+        Matcher matcher = DIGITS.matcher(normalized);
+        while (matcher.find()) {
+            digits.add(matcher.group());
+        }
+        return digits;
+    }
+
+    /**
+     * 查询示例
+     *
+     * @param query 自然语言查询
+     * @param sql 通过校验的SQL
+     */
+    public record Example(String query, String sql) {
+    }
+
+    private static final class Entry {
+        private final Example example;
+        private final String normalized;
+        private final Set<String> grams;
+        private final List<String> digits;
+        private final Set<String> qualifiers;
+        private final long recordedAt;
+
+        private Entry(Example example, String normalized, long recordedAt) {
+            this.example = example;
+            this.normalized = normalized;
+            this.grams = bigrams(normalized);
+            this.digits = digits(normalized);
+            this.qualifiers = qualifiers(normalized);
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private record Scored(Entry entry, double similarity) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.flinkmonitorbackend.service;
+
+/**
+ * 数据库结构变更事件
+ * 由SchemaVersionService在结构模型重新加载之后发布，所有由数据库结构派生的缓存收到后一起失效
+ *
+ * @param version 变更后的结构版本号，从1开始递增
+ * @param fingerprint 变更后的结构指纹
+ */
+public record SchemaChangedEvent(long version, String fingerprint) {
+}
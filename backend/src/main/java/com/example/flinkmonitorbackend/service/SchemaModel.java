@@ -0,0 +1,95 @@
+package com.example.flinkmonitorbackend.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 数据库结构模型
+ * 一次从information_schema批量读取的表、列、主键和索引信息，构建后不可修改，可在线程间直接共享
+ */
+public final class SchemaModel {
+
+    // 小写表名 -> 表信息，按表名排序
+    private final Map<String, TableInfo> tables;
+    private final long loadedAt;
+
+    public SchemaModel(List<TableInfo> tables, long loadedAt) {
+        Map<String, TableInfo> byName = new LinkedHashMap<>();
+        for (TableInfo table : tables) {
+            byName.put(table.name().toLowerCase(Locale.ROOT), table);
+        }
+        this.tables = Collections.unmodifiableMap(byName);
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * 所有表，按表名排序
+     */
+    public Collection<TableInfo> tables() {
+        return tables.values();
+    }
+
+    /**
+     * 按表名查找，不区分大小写
+     */
+    public Optional<TableInfo> table(String tableName) {
+        if (tableName == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(tables.get(tableName.toLowerCase(Locale.ROOT)));
+    }
+
+    public long loadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 表信息
+     *
+     * @param name 表名
+     * @param remarks 表注释
+     * @param columns 按定义顺序排列的列
+     * @param primaryKeys 按主键顺序排列的主键列
+     * @param indexLeadingColumns 作为某个索引第一列的列（小写）
+     */
+    public record TableInfo(String name, String remarks, List<ColumnInfo> columns, List<String> primaryKeys,
+                            Set<String> indexLeadingColumns) {
+
+        public TableInfo {
+            columns = List.copyOf(columns);
+            primaryKeys = List.copyOf(primaryKeys);
+            indexLeadingColumns = Set.copyOf(indexLeadingColumns);
+        }
+
+        public Optional<ColumnInfo> column(String columnName) {
+            return columns.stream().filter(column -> column.name().equalsIgnoreCase(columnName)).findFirst();
+        }
+    }
+
+    /**
+     * 列信息
+     *
+     * @param name 列名
+     * @param jdbcType java.sql.Types中的类型
+     * @param typeName 类型名，如VARCHAR、INT UNSIGNED
+     * @param mysqlDataType information_schema中的DATA_TYPE（小写），如varchar、datetime
+     * @param columnSize 字符长度或数值精度
+     * @param decimalDigits 小数位数
+     * @param nullable 是否可空
+     * @param remarks 列注释
+     * @param defaultValue 默认值
+     */
+    public record ColumnInfo(String name, int jdbcType, String typeName, String mysqlDataType, long columnSize,
+                             int decimalDigits, boolean nullable, String remarks, String defaultValue) {
+
+        public boolean isTemporal() {
+            return "date".equals(mysqlDataType) || "datetime".equals(mysqlDataType) || "timestamp".equals(mysqlDataType);
+        }
+    }
+}
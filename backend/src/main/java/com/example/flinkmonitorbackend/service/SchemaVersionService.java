@@ -0,0 +1,124 @@
+package com.example.flinkmonitorbackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库结构版本服务
+ * 定期用一条查询计算information_schema中表、列和索引定义的指纹，指纹变化时先重新加载结构模型，
+ * 再发布SchemaChangedEvent，由各个缓存统一失效，不再各自定时刷新
+ */
+@Service
+public class SchemaVersionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaVersionService.class);
+
+    // 只包含结构定义；UPDATE_TIME随数据写入变化，不参与计算
+    private static final String FINGERPRINT_SQL =
+            "SELECT " +
+            "(SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, TABLE_COMMENT, CREATE_TIME))), 0)) " +
+            "FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_TYPE = 'BASE TABLE'), " +
+            "(SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, COLUMN_NAME, ORDINAL_POSITION, " +
+            "COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, COLUMN_COMMENT))), 0)) " +
+            "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()), " +
+            "(SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(CRC32(CONCAT_WS('|', TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME))), 0)) " +
+            "FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE())";
+
+    private final DataSource dataSource;
+    private final DatabaseMetadataService databaseMetadataService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile String fingerprint;
+
+    public SchemaVersionService(DataSource dataSource,
+                                DatabaseMetadataService databaseMetadataService,
+                                ApplicationEventPublisher eventPublisher) {
+        this.dataSource = dataSource;
+        this.databaseMetadataService = databaseMetadataService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 当前的结构版本号，启动后未检测到变更时为0
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * 检查数据库结构是否变化，首次检查只记录指纹
+     */
+    @Scheduled(fixedDelayString = "${nlq.schema-version.check-interval-ms:60000}")
+    public void checkForChanges() {
+        String current = computeFingerprintOrNull();
+        if (current == null) {
+            return;
+        }
+
+        // 与手动刷新互斥，同一次变更只发布一次事件
+        synchronized (this) {
+            if (fingerprint == null) {
+                fingerprint = current;
+                return;
+            }
+            if (!fingerprint.equals(current)) {
+                log.info("检测到数据库结构变更: {} -> {}", fingerprint, current);
+                publishChange(current);
+            }
+        }
+    }
+
+    /**
+     * 立即重新加载数据库结构并通知所有缓存，不论指纹是否变化；无法计算指纹时不做任何变更
+     */
+    public void refresh() {
+        String current = computeFingerprintOrNull();
+        if (current == null) {
+            return;
+        }
+        publishChange(current);
+    }
+
+    private synchronized void publishChange(String newFingerprint) {
+        SchemaModel before = databaseMetadataService.getSchemaModel();
+        if (databaseMetadataService.refreshSchemaModel() == before) {
+            // 重新加载失败时保留旧指纹，下次检查时重试
+            log.warn("数据库结构模型重新加载失败，稍后重试");
+            return;
+        }
+
+        fingerprint = newFingerprint;
+        long newVersion = version.incrementAndGet();
+        eventPublisher.publishEvent(new SchemaChangedEvent(newVersion, newFingerprint));
+        log.info("数据库结构版本更新为{}", newVersion);
+    }
+
+    private String computeFingerprintOrNull() {
+        try {
+            return computeFingerprint();
+        } catch (SQLException e) {
+            log.warn("计算数据库结构指纹失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String computeFingerprint() throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(FINGERPRINT_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getString(1) + "/" + rs.getString(2) + "/" + rs.getString(3);
+        }
+    }
+}
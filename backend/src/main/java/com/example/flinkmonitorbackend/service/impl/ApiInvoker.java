@@ -0,0 +1,183 @@
+package com.example.flinkmonitorbackend.service.impl;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ValueConstants;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 控制器方法调用器
+ * 刷新API元数据时为每个接口预先解析一次：绑定到控制器实例的MethodHandle，以及按@PathVariable、@RequestParam、
+ * @RequestBody注解生成的参数绑定器，执行调用时只需绑定参数并直接调用
+ */
+final class ApiInvoker {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    private final String name;
+    private final MethodHandle handle;
+    private final List<ParameterSpec> parameters;
+
+    private ApiInvoker(String name, MethodHandle handle, List<ParameterSpec> parameters) {
+        this.name = name;
+        this.handle = handle;
+        this.parameters = parameters;
+    }
+
+    /**
+     * 为控制器方法创建调用器
+     *
+     * @param controller 控制器实例
+     * @param method 处理请求的方法
+     * @param objectMapper 用于转换参数类型
+     */
+    static ApiInvoker create(Object controller, Method method, ObjectMapper objectMapper) throws IllegalAccessException {
+        String[] names = PARAMETER_NAMES.getParameterNames(method);
+        Parameter[] reflected = method.getParameters();
+        List<ParameterSpec> parameters = new ArrayList<>(reflected.length);
+        for (int i = 0; i < reflected.length; i++) {
+            String discovered = names != null ? names[i] : reflected[i].getName();
+            parameters.add(ParameterSpec.of(reflected[i], discovered, objectMapper));
+        }
+
+        // 统一为 (Object[]) -> Object，调用时用invokeExact，不再经过反射的参数检查和装箱适配
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(method)
+                .bindTo(controller)
+                .asSpreader(Object[].class, reflected.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new ApiInvoker(method.getDeclaringClass().getSimpleName() + "." + method.getName(), handle, List.copyOf(parameters));
+    }
+
+    List<ParameterSpec> parameters() {
+        return parameters;
+    }
+
+    /**
+     * 按参数名从调用参数中取值并调用控制器方法
+     *
+     * @param params 调用参数，路径变量和查询参数按名称取值，请求体取整个参数映射
+     * @return 控制器方法的返回值
+     */
+    Object invoke(Map<String, Object> params) {
+        Map<String, Object> arguments = params == null ? Map.of() : params;
+        Object[] bound = new Object[parameters.size()];
+        for (int i = 0; i < bound.length; i++) {
+            bound[i] = parameters.get(i).bind(arguments);
+        }
+
+        try {
+            return (Object) handle.invokeExact(bound);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("调用控制器方法失败: " + name, e);
+        }
+    }
+
+    /**
+     * 参数来源
+     */
+    enum Source {
+        PATH,
+        QUERY,
+        BODY,
+        // 由容器注入的请求、响应等对象，直接调用时传null
+        NONE
+    }
+
+    /**
+     * 预先解析的参数
+     *
+     * @param name 参数名
+     * @param source 参数来源
+     * @param required 是否必填
+     * @param defaultValue 未提供时的默认值，没有默认值时为null
+     * @param type 参数类型
+     * @param javaType 用于Jackson转换的类型，保留泛型信息
+     * @param objectMapper 类型转换器
+     */
+    record ParameterSpec(String name, Source source, boolean required, String defaultValue,
+                         Class<?> type, JavaType javaType, ObjectMapper objectMapper) {
+
+        static ParameterSpec of(Parameter parameter, String discoveredName, ObjectMapper objectMapper) {
+            Class<?> type = parameter.getType();
+            JavaType javaType = objectMapper.getTypeFactory().constructType(parameter.getParameterizedType());
+
+            PathVariable pathVariable = parameter.getAnnotation(PathVariable.class);
+            if (pathVariable != null) {
+                return new ParameterSpec(nameOrDefault(pathVariable.value(), pathVariable.name(), discoveredName), Source.PATH,
+                        pathVariable.required(), null, type, javaType, objectMapper);
+            }
+
+            RequestParam requestParam = parameter.getAnnotation(RequestParam.class);
+            if (requestParam != null) {
+                String defaultValue = ValueConstants.DEFAULT_NONE.equals(requestParam.defaultValue()) ? null : requestParam.defaultValue();
+                return new ParameterSpec(nameOrDefault(requestParam.value(), requestParam.name(), discoveredName), Source.QUERY,
+                        requestParam.required() && defaultValue == null, defaultValue, type, javaType, objectMapper);
+            }
+
+            RequestBody requestBody = parameter.getAnnotation(RequestBody.class);
+            if (requestBody != null) {
+                return new ParameterSpec(discoveredName, Source.BODY, requestBody.required(), null, type, javaType, objectMapper);
+            }
+
+            if (ServletRequest.class.isAssignableFrom(type) || ServletResponse.class.isAssignableFrom(type)) {
+                return new ParameterSpec(discoveredName, Source.NONE, false, null, type, javaType, objectMapper);
+            }
+
+            // 未加注解时与Spring MVC一致：简单类型按查询参数处理，其余类型由全部参数绑定
+            return BeanUtils.isSimpleProperty(type)
+                    ? new ParameterSpec(discoveredName, Source.QUERY, false, null, type, javaType, objectMapper)
+                    : new ParameterSpec(discoveredName, Source.BODY, false, null, type, javaType, objectMapper);
+        }
+
+        Object bind(Map<String, Object> params) {
+            Object value = switch (source) {
+                case PATH, QUERY -> params.containsKey(name) ? params.get(name) : defaultValue;
+                // 简单类型的请求体（如字符串）按参数名取值，其余类型由整个参数映射转换
+                case BODY -> BeanUtils.isSimpleProperty(type) ? params.get(name) : params.isEmpty() && !required ? null : params;
+                case NONE -> null;
+            };
+
+            if (value == null) {
+                if (required || type.isPrimitive()) {
+                    throw new IllegalArgumentException("缺少参数: " + name);
+                }
+                return null;
+            }
+
+            if (type.isInstance(value)) {
+                return value;
+            }
+            try {
+                return objectMapper.convertValue(value, javaType);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("参数" + name + "无法转换为" + type.getSimpleName() + ": " + value, e);
+            }
+        }
+
+        // 直接读取注解时value和name的别名关系不生效，两者都要检查
+        private static String nameOrDefault(String value, String name, String discovered) {
+            if (!value.isEmpty()) {
+                return value;
+            }
+            return name.isEmpty() ? discovered : name;
+        }
+    }
+}
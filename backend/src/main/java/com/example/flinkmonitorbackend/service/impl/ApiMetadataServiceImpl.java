@@ -2,173 +2,205 @@ package com.example.flinkmonitorbackend.service.impl;
 
 import com.example.flinkmonitorbackend.entity.ApiMetadata;
 import com.example.flinkmonitorbackend.service.ApiMetadataService;
+import com.example.flinkmonitorbackend.service.ApiSearchIndex;
+import com.example.flinkmonitorbackend.service.SchemaChangedEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
-import java.lang.reflect.Parameter;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
  * API元数据服务实现类，用于获取和管理项目中的API信息
+ * 元数据保存为不可变快照，刷新时在后台构建完整的新快照后一次性替换
  */
 @Service
 public class ApiMetadataServiceImpl implements ApiMetadataService {
     
-    @Autowired
-    private RequestMappingHandlerMapping requestMappingHandlerMapping;
+    private static final Logger log = LoggerFactory.getLogger(ApiMetadataServiceImpl.class);
     
     @Autowired
-    private ApplicationContext applicationContext;
+    private RequestMappingHandlerMapping requestMappingHandlerMapping;
     
     @Autowired
     private ObjectMapper objectMapper;
     
-    // API元数据缓存
-    private final Map<String, ApiMetadata> apiMetadataCache = new ConcurrentHashMap<>();
+    // API元数据快照，刷新时整体替换，读取方不加锁也不会看到刷新到一半的数据
+    private final AtomicReference<ApiSnapshot> snapshot = new AtomicReference<>();
     
-    // 最后刷新时间
-    private long lastRefreshTime = 0;
-    
-    // 刷新间隔（毫秒）
-    private static final long REFRESH_INTERVAL = 60 * 1000; // 1分钟
+    // 快照在单个后台线程中依次构建，先发起的刷新不会覆盖后发起的结果
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "api-metadata-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object refreshLock = new Object();
+    // 已提交但尚未开始构建的刷新，期间的刷新请求合并到这一次
+    private CompletableFuture<Void> pendingRefresh;
     
     /**
-     * 初始化API元数据缓存
+     * 应用启动完成后在后台构建第一份快照，不占用事件线程
+     * 注意：在构造函数中刷新可能会导致循环依赖问题，因此延迟到启动完成后
      */
-    public ApiMetadataServiceImpl() {
-        // 初始化时刷新一次API元数据
-        // 注意：在构造函数中调用refreshApiMetadata()可能会导致循环依赖问题
-        // 因此将刷新操作延迟到第一次使用时
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduleRefresh();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
     }
     
     @Override
     public List<ApiMetadata> getAllApis() {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return new ArrayList<>(apiMetadataCache.values());
+        return new ArrayList<>(currentSnapshot().apis());
     }
     
     @Override
     public ApiMetadata getApiById(String apiId) {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return apiMetadataCache.get(apiId);
+        return currentSnapshot().byId().get(apiId);
     }
     
     @Override
     public List<ApiMetadata> getApisByHttpMethod(String httpMethod) {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return apiMetadataCache.values().stream()
+        return currentSnapshot().apis().stream()
                 .filter(api -> httpMethod.equalsIgnoreCase(api.httpMethod))
                 .collect(Collectors.toList());
     }
     
     @Override
     public List<ApiMetadata> getApisByUrlPattern(String urlPattern) {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return apiMetadataCache.values().stream()
+        return currentSnapshot().apis().stream()
                 .filter(api -> api.url.contains(urlPattern))
                 .collect(Collectors.toList());
     }
     
     @Override
     public List<ApiMetadata> getApisByController(String controllerClassName) {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return apiMetadataCache.values().stream()
+        return currentSnapshot().apis().stream()
                 .filter(api -> controllerClassName.equals(api.controllerClassName))
                 .collect(Collectors.toList());
     }
     
     @Override
     public List<ApiMetadata> getApisByTag(String tag) {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
-        return apiMetadataCache.values().stream()
+        return currentSnapshot().apis().stream()
                 .filter(api -> api.tags != null && api.tags.contains(tag))
                 .collect(Collectors.toList());
     }
     
     @Override
-    public synchronized void refreshApiMetadata() {
-        // 清空缓存
-        apiMetadataCache.clear();
-        
-        System.out.println("=== 开始刷新API元数据 ===");
+    public List<ApiMetadata> searchApis(String query) {
+        return currentSnapshot().searchIndex().search(query);
+    }
+    
+    /**
+     * 随数据库结构变更事件统一刷新，不再按固定间隔轮询；刷新在后台进行，期间读取方继续使用旧快照
+     */
+    @EventListener(SchemaChangedEvent.class)
+    public void onSchemaChanged() {
+        scheduleRefresh();
+    }
+    
+    /**
+     * 构建新的快照并一次性替换旧快照，构建期间读取方继续使用旧快照；等待刷新完成后返回
+     */
+    @Override
+    public void refreshApiMetadata() {
+        scheduleRefresh().join();
+    }
+    
+    /**
+     * 提交一次后台刷新，已有刷新排队时直接复用
+     *
+     * @return 刷新完成时结束
+     */
+    CompletableFuture<Void> scheduleRefresh() {
+        synchronized (refreshLock) {
+            if (pendingRefresh != null) {
+                return pendingRefresh;
+            }
+            CompletableFuture<Void> refresh = new CompletableFuture<>();
+            pendingRefresh = refresh;
+            refreshExecutor.execute(() -> {
+                // 开始构建后到达的刷新请求需要再构建一次
+                synchronized (refreshLock) {
+                    pendingRefresh = null;
+                }
+                try {
+                    snapshot.set(buildSnapshot());
+                    refresh.complete(null);
+                } catch (RuntimeException e) {
+                    log.warn("刷新API元数据失败: {}", e.getMessage(), e);
+                    refresh.completeExceptionally(e);
+                }
+            });
+            return refresh;
+        }
+    }
+    
+    /**
+     * 根据当前的请求映射构建完整的快照，不修改当前快照
+     */
+    private ApiSnapshot buildSnapshot() {
+        Map<String, ApiMetadata> apis = new LinkedHashMap<>();
+        Map<String, ApiInvoker> invokers = new HashMap<>();
         
         // 获取所有请求映射
         Map<RequestMappingInfo, HandlerMethod> handlerMethods = requestMappingHandlerMapping.getHandlerMethods();
         
-        System.out.println("获取到的请求映射数量: " + handlerMethods.size());
+        log.debug("开始刷新API元数据，请求映射数量: {}", handlerMethods.size());
         
         // 遍历所有请求映射，生成API元数据
         for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : handlerMethods.entrySet()) {
             RequestMappingInfo requestMappingInfo = entry.getKey();
             HandlerMethod handlerMethod = entry.getValue();
             
-            System.out.println("处理请求映射: " + requestMappingInfo);
-            
             // 获取URL路径
             String url = "";
             try {
                 // 直接使用RequestMappingInfo的toString()方法提取路径
                 String requestMappingString = requestMappingInfo.toString();
-                System.out.println("请求映射字符串: " + requestMappingString);
                 
                 // 使用字符串处理方法提取路径模式
                 String pathStart = "[";
                 int startIndex = requestMappingString.indexOf(pathStart);
                 if (startIndex == -1) {
-                    System.out.println("无法提取路径模式，跳过该请求映射");
+                    log.debug("无法提取路径模式，跳过该请求映射: {}", requestMappingString);
                     continue;
                 }
                 int endIndex = requestMappingString.indexOf("]", startIndex);
                 if (endIndex == -1) {
-                    System.out.println("无法提取路径模式，跳过该请求映射");
+                    log.debug("无法提取路径模式，跳过该请求映射: {}", requestMappingString);
                     continue;
                 }
                 url = requestMappingString.substring(startIndex + 1, endIndex);
-                System.out.println("获取到URL: " + url);
                 
                 // 处理多个路径的情况，只取第一个
                 if (url.contains(",")) {
                     url = url.split(",")[0].trim();
-                    System.out.println("处理多个路径，只取第一个: " + url);
                 }
                 
                 // 移除可能的空格
                 url = url.trim();
             } catch (Exception e) {
-                System.out.println("提取URL路径出错: " + e.getMessage());
+                log.debug("提取URL路径出错，跳过该请求映射: {}", e.getMessage());
                 continue;
             }
             
@@ -179,41 +211,50 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
                         .map(Enum::name)
                         .collect(Collectors.toSet());
             } catch (Exception e) {
-                System.out.println("获取HTTP方法出错: " + e.getMessage());
+                log.debug("获取HTTP方法出错: {}", e.getMessage());
             }
             
             if (httpMethods.isEmpty()) {
                 httpMethods.add("GET"); // 默认GET方法
-                System.out.println("使用默认GET方法");
             }
-            System.out.println("获取到HTTP方法: " + httpMethods);
             
             // 获取控制器类名和方法名
             String controllerClassName = handlerMethod.getBeanType().getSimpleName();
             String methodName = handlerMethod.getMethod().getName();
-            System.out.println("控制器类名: " + controllerClassName + ", 方法名: " + methodName);
             
-            // 获取方法参数信息
+            // 生成API ID
+            String apiId = generateApiId(url, httpMethods.iterator().next());
+            
+            // 预先解析调用方式和参数绑定，参数信息与实际绑定规则一致
+            ApiInvoker invoker;
+            try {
+                invoker = ApiInvoker.create(handlerMethod.createWithResolvedBean().getBean(), handlerMethod.getMethod(), objectMapper);
+            } catch (IllegalAccessException | RuntimeException e) {
+                log.warn("无法为接口{}创建调用器，跳过该请求映射: {}", apiId, e.getMessage());
+                continue;
+            }
+            
             List<ApiMetadata.ApiParameter> parameters = new ArrayList<>();
-            for (Parameter param : handlerMethod.getMethod().getParameters()) {
+            String requestBodyType = "";
+            for (ApiInvoker.ParameterSpec spec : invoker.parameters()) {
+                if (spec.source() == ApiInvoker.Source.NONE) {
+                    continue;
+                }
                 ApiMetadata.ApiParameter apiParam = new ApiMetadata.ApiParameter();
-                apiParam.name = param.getName();
-                apiParam.type = param.getType().getSimpleName();
-                apiParam.in = "QUERY"; // 默认QUERY，实际应根据注解判断
-                apiParam.required = false; // 默认非必填，实际应根据注解判断
+                apiParam.name = spec.name();
+                apiParam.type = spec.type().getSimpleName();
+                apiParam.in = spec.source().name();
+                apiParam.required = spec.required();
                 apiParam.description = "";
-                apiParam.defaultValue = "";
+                apiParam.defaultValue = spec.defaultValue() == null ? "" : spec.defaultValue();
                 parameters.add(apiParam);
+                if (spec.source() == ApiInvoker.Source.BODY) {
+                    requestBodyType = spec.type().getSimpleName();
+                }
             }
-            System.out.println("获取到参数数量: " + parameters.size());
             
             // 获取响应类型
             String responseType = handlerMethod.getMethod().getReturnType().getSimpleName();
-            System.out.println("响应类型: " + responseType);
-            
-            // 生成API ID
-            String apiId = generateApiId(url, httpMethods.iterator().next());
-            System.out.println("生成的API ID: " + apiId);
             
             // 创建API元数据
             ApiMetadata apiMetadata = new ApiMetadata();
@@ -225,53 +266,57 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
             apiMetadata.methodName = methodName;
             apiMetadata.parameters = parameters;
             apiMetadata.responseType = responseType;
-            apiMetadata.requestBodyType = "";
+            apiMetadata.requestBodyType = requestBodyType;
             apiMetadata.tags = extractTags(controllerClassName);
             apiMetadata.status = "ACTIVE";
             apiMetadata.createdAt = Instant.now().toEpochMilli();
             apiMetadata.updatedAt = Instant.now().toEpochMilli();
             apiMetadata.customProperties = new HashMap<>();
             
-            // 缓存API元数据
-            apiMetadataCache.put(apiId, apiMetadata);
-            System.out.println("成功添加API元数据: " + apiId);
+            // 加入新快照
+            apis.put(apiId, apiMetadata);
+            invokers.put(apiId, invoker);
+            log.debug("添加API元数据: id={}, {} {}, 处理方法={}.{}, 参数{}个, 响应类型={}",
+                    apiId, apiMetadata.httpMethod, url, controllerClassName, methodName, parameters.size(), responseType);
         }
         
-        // 更新最后刷新时间
-        lastRefreshTime = System.currentTimeMillis();
-        
-        System.out.println("=== API元数据刷新完成，共添加 " + apiMetadataCache.size() + " 个API ===");
+        List<ApiMetadata> apiList = List.copyOf(apis.values());
+        log.info("API元数据刷新完成，共{}个API", apis.size());
+        return new ApiSnapshot(Collections.unmodifiableMap(apis), apiList, Map.copyOf(invokers),
+                new ApiSearchIndex(apiList), System.currentTimeMillis());
     }
     
     @Override
     public Map<String, Object> getApiStatistics() {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
-        
+        return buildStatistics(currentSnapshot());
+    }
+    
+    /**
+     * 基于同一份快照统计，各项数字彼此一致
+     */
+    private Map<String, Object> buildStatistics(ApiSnapshot current) {
         Map<String, Object> statistics = new HashMap<>();
         
         // 总API数量
-        statistics.put("totalApis", apiMetadataCache.size());
+        statistics.put("totalApis", current.apis().size());
         
         // 按HTTP方法统计
         Map<String, Long> httpMethodStats = new HashMap<>();
-        for (ApiMetadata api : apiMetadataCache.values()) {
+        for (ApiMetadata api : current.apis()) {
             httpMethodStats.put(api.httpMethod, httpMethodStats.getOrDefault(api.httpMethod, 0L) + 1);
         }
         statistics.put("httpMethodStats", httpMethodStats);
         
         // 按控制器统计
         Map<String, Long> controllerStats = new HashMap<>();
-        for (ApiMetadata api : apiMetadataCache.values()) {
+        for (ApiMetadata api : current.apis()) {
             controllerStats.put(api.controllerClassName, controllerStats.getOrDefault(api.controllerClassName, 0L) + 1);
         }
         statistics.put("controllerStats", controllerStats);
         
         // 按标签统计
         Map<String, Long> tagStats = new HashMap<>();
-        for (ApiMetadata api : apiMetadataCache.values()) {
+        for (ApiMetadata api : current.apis()) {
             if (api.tags != null) {
                 for (String tag : api.tags) {
                     tagStats.put(tag, tagStats.getOrDefault(tag, 0L) + 1);
@@ -281,17 +326,14 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
         statistics.put("tagStats", tagStats);
         
         // 最后刷新时间
-        statistics.put("lastRefreshTime", lastRefreshTime);
+        statistics.put("lastRefreshTime", current.refreshedAt());
         
         return statistics;
     }
     
     @Override
     public String getApisAsMcpFormat() {
-        // 检查是否需要刷新缓存
-        if (System.currentTimeMillis() - lastRefreshTime > REFRESH_INTERVAL || apiMetadataCache.isEmpty()) {
-            refreshApiMetadata();
-        }
+        ApiSnapshot current = currentSnapshot();
         
         try {
             // 创建MCP格式的API元数据
@@ -300,8 +342,8 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
             mcpFormat.put("name", "Flink Monitor API");
             mcpFormat.put("description", "Flink Monitor项目的RESTful API");
             mcpFormat.put("baseUrl", "/api");
-            mcpFormat.put("apis", new ArrayList<>(apiMetadataCache.values()));
-            mcpFormat.put("statistics", getApiStatistics());
+            mcpFormat.put("apis", current.apis());
+            mcpFormat.put("statistics", buildStatistics(current));
             
             // 转换为JSON字符串
             return objectMapper.writeValueAsString(mcpFormat);
@@ -310,57 +352,46 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
         }
     }
     
+    @Override
+    public Map<String, Object> getMcpServerInfo() {
+        return Map.of(
+            "name", "Flink Monitor API MCP Server",
+            "version", "1.0",
+            "description", "Flink Monitor项目的MCP Server，用于为大模型提供API调用服务",
+            "baseUrl", "/api",
+            "apiCount", currentSnapshot().apis().size(),
+            "supports", List.of("api_discovery", "api_invocation", "semantic_analysis")
+        );
+    }
+    
     @Override
     public Object executeApiCall(String apiId, Map<String, Object> params) {
         // 检查API是否存在
-        ApiMetadata apiMetadata = getApiById(apiId);
-        if (apiMetadata == null) {
+        ApiInvoker invoker = currentSnapshot().invokers().get(apiId);
+        if (invoker == null) {
             throw new IllegalArgumentException("API不存在: " + apiId);
         }
         
-        // 实际实现应根据API元数据执行HTTP请求或直接调用方法
+        // 按预先解析的参数绑定规则直接调用控制器方法
         try {
-            // 获取应用上下文
-            Object controller = applicationContext.getBean(removeControllerSuffix(apiMetadata.controllerClassName + "Controller"));
-            
-            // 直接调用控制器方法获取结果
-            return invokeControllerMethod(controller, apiMetadata.methodName, params);
+            return invoker.invoke(params);
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("API调用失败: " + e.getMessage(), e);
         }
     }
     
     /**
-     * 调用控制器方法获取结果
+     * 读取当前快照，只有第一份快照构建完成之前的访问需要等待
      */
-    private Object invokeControllerMethod(Object controller, String methodName, Map<String, Object> params) {
-        // 根据方法名和参数调用控制器方法
-        // 获取方法对象
-        java.lang.reflect.Method method;
-        try {
-            if (methodName.contains("Get") || methodName.contains("get")) {
-                // GET方法通常不需要参数或只需要路径参数
-                method = controller.getClass().getMethod(methodName);
-                return method.invoke(controller);
-            } else {
-                // POST/PUT方法通常需要请求体参数
-                method = controller.getClass().getMethod(methodName, Map.class);
-                return method.invoke(controller, params);
-            }
-        } catch (NoSuchMethodException e) {
-            // 尝试根据业务规则匹配其他方法
-            try {
-                // 尝试匹配包含参数的方法
-                method = controller.getClass().getMethod(methodName, String.class);
-                // 获取id参数
-                String id = params.getOrDefault("id", params.keySet().iterator().next()).toString();
-                return method.invoke(controller, id);
-            } catch (Exception ex) {
-                throw new RuntimeException("无法找到匹配的方法: " + methodName, ex);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("调用控制器方法失败: " + methodName, e);
+    private ApiSnapshot currentSnapshot() {
+        ApiSnapshot current = snapshot.get();
+        if (current == null) {
+            refreshApiMetadata();
+            current = snapshot.get();
         }
+        return current;
     }
     
     /**
@@ -445,4 +476,17 @@ public class ApiMetadataServiceImpl implements ApiMetadataService {
         
         return result.toString();
     }
+    
+    /**
+     * 不可变的API元数据快照
+     *
+     * @param byId API ID到元数据的映射
+     * @param apis 按注册顺序排列的全部API
+     * @param invokers API ID到预先解析的调用器的映射
+     * @param searchIndex 基于同一批API构建的检索索引
+     * @param refreshedAt 构建时间
+     */
+    private record ApiSnapshot(Map<String, ApiMetadata> byId, List<ApiMetadata> apis,
+                               Map<String, ApiInvoker> invokers, ApiSearchIndex searchIndex, long refreshedAt) {
+    }
 }
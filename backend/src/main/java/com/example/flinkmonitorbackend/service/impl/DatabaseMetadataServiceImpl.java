@@ -1,6 +1,9 @@
 package com.example.flinkmonitorbackend.service.impl;
 
 import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -9,11 +12,17 @@ import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 数据库元数据服务实现类
+ * 表、列、主键和索引信息从information_schema按库批量读取，构建为不可变的SchemaModel，所有元数据查询都读取该模型
  */
 @Service
 public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
@@ -24,11 +33,75 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
     @Value("${spring.datasource.url}")
     private String dbUrl;
 
+    private static final Logger log = LoggerFactory.getLogger(DatabaseMetadataServiceImpl.class);
+
+    // 与JDBC元数据getTables(..., {"TABLE"})返回的表类型一致
+    private static final String TABLE_TYPE = "TABLE";
+
+    private static final String TABLES_SQL =
+            "SELECT TABLE_NAME, TABLE_COMMENT FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME";
+
+    private static final String COLUMNS_SQL =
+            "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION, " +
+            "NUMERIC_SCALE, IS_NULLABLE, COLUMN_COMMENT, COLUMN_DEFAULT FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = ? ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+    private static final String PRIMARY_KEYS_SQL =
+            "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+            "WHERE TABLE_SCHEMA = ? AND CONSTRAINT_NAME = 'PRIMARY' ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+    private static final String INDEX_LEADING_COLUMNS_SQL =
+            "SELECT DISTINCT TABLE_NAME, COLUMN_NAME FROM information_schema.STATISTICS " +
+            "WHERE TABLE_SCHEMA = ? AND SEQ_IN_INDEX = 1";
+
     private static final List<String> IGNORED_TABLES = List.of(
             "sys_config", "sys_user", "sys_role", "sys_permission",
-            "sys_menu", "sys_log", "sys_dict", "flyway_schema_history"
+            "sys_menu", "sys_log", "sys_dict", "flyway_schema_history",
+            "nl_query_history"
     );
 
+    private final AtomicReference<SchemaModel> schemaModel = new AtomicReference<>();
+
+    /**
+     * 获取数据库结构模型，首次访问时加载
+     */
+    @Override
+    public SchemaModel getSchemaModel() {
+        SchemaModel current = schemaModel.get();
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = schemaModel.get();
+            if (current == null) {
+                current = loadSchemaModel();
+                schemaModel.set(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 重新加载数据库结构模型，尚无模型时加载失败直接抛出异常
+     */
+    @Override
+    public SchemaModel refreshSchemaModel() {
+        try {
+            SchemaModel refreshed = loadSchemaModel();
+            schemaModel.set(refreshed);
+            return refreshed;
+        } catch (RuntimeException e) {
+            SchemaModel current = schemaModel.get();
+            if (current == null) {
+                throw e;
+            }
+            log.warn("重新加载数据库结构失败，继续使用旧模型: {}", e.getMessage());
+            return current;
+        }
+    }
+
     /**
      * 获取所有表的基本信息
      */
@@ -36,28 +109,14 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
     public List<Map<String, Object>> getAllTables() {
         List<Map<String, Object>> tables = new ArrayList<>();
 
-        try (Connection conn = dataSource.getConnection()) {
-            DatabaseMetaData metaData = conn.getMetaData();
-            String catalog = extractCatalog(dbUrl);
-            String schemaPattern = "%";
-
-            ResultSet tablesResultSet = metaData.getTables(catalog, schemaPattern, "%", new String[]{"TABLE"});
-
-            while (tablesResultSet.next()) {
-                String tableName = tablesResultSet.getString("TABLE_NAME");
-                String tableType = tablesResultSet.getString("TABLE_TYPE");
-                String remarks = tablesResultSet.getString("REMARKS");
-
-                if (!IGNORED_TABLES.contains(tableName)) {
-                    Map<String, Object> tableInfo = new HashMap<>();
-                    tableInfo.put("tableName", tableName);
-                    tableInfo.put("tableType", tableType);
-                    tableInfo.put("remarks", remarks);
-                    tables.add(tableInfo);
-                }
+        for (SchemaModel.TableInfo table : getSchemaModel().tables()) {
+            if (!IGNORED_TABLES.contains(table.name())) {
+                Map<String, Object> tableInfo = new HashMap<>();
+                tableInfo.put("tableName", table.name());
+                tableInfo.put("tableType", TABLE_TYPE);
+                tableInfo.put("remarks", table.remarks());
+                tables.add(tableInfo);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("获取表信息失败: " + e.getMessage(), e);
         }
 
         return tables;
@@ -70,49 +129,30 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
     public Map<String, Object> getTableStructure(String tableName) {
         Map<String, Object> tableStructure = new HashMap<>();
         List<Map<String, Object>> columns = new ArrayList<>();
+        List<String> primaryKeys = new ArrayList<>();
 
-        try (Connection conn = dataSource.getConnection()) {
-            DatabaseMetaData metaData = conn.getMetaData();
-            String catalog = extractCatalog(dbUrl);
-            String schemaPattern = "%";
-
-            // 获取表的基本信息
-            ResultSet tableResultSet = metaData.getTables(catalog, schemaPattern, tableName, new String[]{"TABLE"});
-            if (tableResultSet.next()) {
-                tableStructure.put("tableName", tableResultSet.getString("TABLE_NAME"));
-                tableStructure.put("tableType", tableResultSet.getString("TABLE_TYPE"));
-                tableStructure.put("remarks", tableResultSet.getString("REMARKS"));
-            }
+        getSchemaModel().table(tableName).ifPresent(table -> {
+            tableStructure.put("tableName", table.name());
+            tableStructure.put("tableType", TABLE_TYPE);
+            tableStructure.put("remarks", table.remarks());
 
-            // 获取表的列信息
-            ResultSet columnsResultSet = metaData.getColumns(catalog, schemaPattern, tableName, "%");
-            while (columnsResultSet.next()) {
+            for (SchemaModel.ColumnInfo columnInfo : table.columns()) {
                 Map<String, Object> column = new HashMap<>();
-                column.put("columnName", columnsResultSet.getString("COLUMN_NAME"));
-                column.put("dataType", columnsResultSet.getInt("DATA_TYPE"));
-                column.put("dataTypeName", columnsResultSet.getString("TYPE_NAME"));
-                column.put("columnSize", columnsResultSet.getInt("COLUMN_SIZE"));
-                column.put("decimalDigits", columnsResultSet.getInt("DECIMAL_DIGITS"));
-                column.put("nullable", columnsResultSet.getInt("NULLABLE") == 1);
-                column.put("remarks", columnsResultSet.getString("REMARKS"));
-                column.put("columnDef", columnsResultSet.getString("COLUMN_DEF"));
+                column.put("columnName", columnInfo.name());
+                column.put("dataType", columnInfo.jdbcType());
+                column.put("dataTypeName", columnInfo.typeName());
+                column.put("columnSize", (int) columnInfo.columnSize());
+                column.put("decimalDigits", columnInfo.decimalDigits());
+                column.put("nullable", columnInfo.nullable());
+                column.put("remarks", columnInfo.remarks());
+                column.put("columnDef", columnInfo.defaultValue());
                 columns.add(column);
             }
+            primaryKeys.addAll(table.primaryKeys());
+        });
 
-            // 获取表的主键信息
-            ResultSet primaryKeysResultSet = metaData.getPrimaryKeys(catalog, schemaPattern, tableName);
-            List<String> primaryKeys = new ArrayList<>();
-            while (primaryKeysResultSet.next()) {
-                primaryKeys.add(primaryKeysResultSet.getString("COLUMN_NAME"));
-            }
-
-            tableStructure.put("columns", columns);
-            tableStructure.put("primaryKeys", primaryKeys);
-
-        } catch (SQLException e) {
-            throw new RuntimeException("获取表结构失败: " + e.getMessage(), e);
-        }
-
+        tableStructure.put("columns", columns);
+        tableStructure.put("primaryKeys", primaryKeys);
         return tableStructure;
     }
 
@@ -124,36 +164,42 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
         StringBuilder description = new StringBuilder();
 
         description.append("数据库包含以下主要表：\n\n");
+        getTableDescriptions().values().forEach(description::append);
+
+        return description.toString();
+    }
 
-        List<Map<String, Object>> tables = getAllTables();
-        for (Map<String, Object> table : tables) {
-            String tableName = (String) table.get("tableName");
-            String remarks = (String) table.get("remarks");
+    /**
+     * 获取每张表结构的自然语言描述
+     */
+    @Override
+    public Map<String, String> getTableDescriptions() {
+        Map<String, String> descriptions = new LinkedHashMap<>();
+
+        for (SchemaModel.TableInfo table : getSchemaModel().tables()) {
+            if (IGNORED_TABLES.contains(table.name())) {
+                continue;
+            }
+            String tableName = table.name();
+            String remarks = table.remarks();
+            StringBuilder description = new StringBuilder();
 
             description.append("1. 表名：").append(tableName).append("\n");
             if (remarks != null && !remarks.isEmpty()) {
                 description.append("   描述：").append(remarks).append("\n");
             }
 
-            Map<String, Object> tableStructure = getTableStructure(tableName);
-            List<Map<String, Object>> columns = (List<Map<String, Object>>) tableStructure.get("columns");
-            List<String> primaryKeys = (List<String>) tableStructure.get("primaryKeys");
-
-            description.append("   主键：").append(String.join(", ", primaryKeys)).append("\n");
+            description.append("   主键：").append(String.join(", ", table.primaryKeys())).append("\n");
             description.append("   列信息：\n");
 
-            for (Map<String, Object> column : columns) {
-                String columnName = (String) column.get("columnName");
-                String dataTypeName = (String) column.get("dataTypeName");
-                boolean nullable = (Boolean) column.get("nullable");
-                String columnRemarks = (String) column.get("remarks");
-
+            for (SchemaModel.ColumnInfo column : table.columns()) {
                 description.append("     - ")
-                        .append(columnName)
-                        .append(" (").append(dataTypeName)
-                        .append(nullable ? ", 可空" : ", 非空")
+                        .append(column.name())
+                        .append(" (").append(column.typeName())
+                        .append(column.nullable() ? ", 可空" : ", 非空")
                         .append(")");
 
+                String columnRemarks = column.remarks();
                 if (columnRemarks != null && !columnRemarks.isEmpty()) {
                     description.append("：").append(columnRemarks);
                 }
@@ -162,9 +208,10 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
             }
 
             description.append("\n");
+            descriptions.put(tableName, description.toString());
         }
 
-        return description.toString();
+        return descriptions;
     }
 
     /**
@@ -197,6 +244,99 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
         return relationships.toString();
     }
 
+    /**
+     * 在同一连接上分别读取整个库的表、列、主键和索引，每类信息只查询一次
+     */
+    private SchemaModel loadSchemaModel() {
+        String schema = extractCatalog(dbUrl);
+        Map<String, String> tableRemarks = new LinkedHashMap<>();
+        Map<String, List<SchemaModel.ColumnInfo>> columns = new HashMap<>();
+        Map<String, List<String>> primaryKeys = new HashMap<>();
+        Map<String, Set<String>> indexLeadingColumns = new HashMap<>();
+
+        try (Connection conn = dataSource.getConnection()) {
+            query(conn, TABLES_SQL, schema, rs -> tableRemarks.put(rs.getString("TABLE_NAME"), rs.getString("TABLE_COMMENT")));
+            query(conn, COLUMNS_SQL, schema, rs -> columns
+                    .computeIfAbsent(rs.getString("TABLE_NAME"), table -> new ArrayList<>())
+                    .add(toColumnInfo(rs)));
+            query(conn, PRIMARY_KEYS_SQL, schema, rs -> primaryKeys
+                    .computeIfAbsent(rs.getString("TABLE_NAME"), table -> new ArrayList<>())
+                    .add(rs.getString("COLUMN_NAME")));
+            query(conn, INDEX_LEADING_COLUMNS_SQL, schema, rs -> indexLeadingColumns
+                    .computeIfAbsent(rs.getString("TABLE_NAME"), table -> new HashSet<>())
+                    .add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT)));
+        } catch (SQLException e) {
+            throw new RuntimeException("获取表结构失败: " + e.getMessage(), e);
+        }
+
+        List<SchemaModel.TableInfo> tables = new ArrayList<>();
+        tableRemarks.forEach((tableName, remarks) -> tables.add(new SchemaModel.TableInfo(tableName, remarks,
+                columns.getOrDefault(tableName, List.of()),
+                primaryKeys.getOrDefault(tableName, List.of()),
+                indexLeadingColumns.getOrDefault(tableName, Set.of()))));
+        log.info("已加载数据库{}的结构，共{}张表", schema, tables.size());
+        return new SchemaModel(tables, System.currentTimeMillis());
+    }
+
+    private void query(Connection conn, String sql, String schema, RowHandler handler) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    private SchemaModel.ColumnInfo toColumnInfo(ResultSet rs) throws SQLException {
+        String dataType = rs.getString("DATA_TYPE").toLowerCase(Locale.ROOT);
+        String columnType = rs.getString("COLUMN_TYPE");
+        boolean unsigned = columnType != null && columnType.toLowerCase(Locale.ROOT).contains("unsigned");
+
+        long columnSize = rs.getLong("CHARACTER_MAXIMUM_LENGTH");
+        if (rs.wasNull()) {
+            columnSize = rs.getLong("NUMERIC_PRECISION");
+        }
+
+        return new SchemaModel.ColumnInfo(
+                rs.getString("COLUMN_NAME"),
+                toJdbcType(dataType),
+                dataType.toUpperCase(Locale.ROOT) + (unsigned ? " UNSIGNED" : ""),
+                dataType,
+                columnSize,
+                rs.getInt("NUMERIC_SCALE"),
+                "YES".equals(rs.getString("IS_NULLABLE")),
+                rs.getString("COLUMN_COMMENT"),
+                rs.getString("COLUMN_DEFAULT"));
+    }
+
+    /**
+     * 将MySQL的DATA_TYPE转换为java.sql.Types，与JDBC元数据的DATA_TYPE保持一致
+     */
+    private static int toJdbcType(String dataType) {
+        return switch (dataType) {
+            case "bit" -> Types.BIT;
+            case "tinyint" -> Types.TINYINT;
+            case "smallint" -> Types.SMALLINT;
+            case "mediumint", "int", "integer" -> Types.INTEGER;
+            case "bigint" -> Types.BIGINT;
+            case "decimal", "numeric" -> Types.DECIMAL;
+            case "float" -> Types.REAL;
+            case "double" -> Types.DOUBLE;
+            case "char", "enum", "set" -> Types.CHAR;
+            case "varchar" -> Types.VARCHAR;
+            case "tinytext", "text", "mediumtext", "longtext", "json" -> Types.LONGVARCHAR;
+            case "date", "year" -> Types.DATE;
+            case "time" -> Types.TIME;
+            case "datetime", "timestamp" -> Types.TIMESTAMP;
+            case "binary" -> Types.BINARY;
+            case "varbinary" -> Types.VARBINARY;
+            case "tinyblob", "blob", "mediumblob", "longblob" -> Types.LONGVARBINARY;
+            default -> Types.OTHER;
+        };
+    }
+
     /**
      * 从数据库URL中提取catalog名称
      */
@@ -208,4 +348,9 @@ public class DatabaseMetadataServiceImpl implements DatabaseMetadataService {
         }
         return url.substring(dbNameStart, dbNameEnd);
     }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
 }
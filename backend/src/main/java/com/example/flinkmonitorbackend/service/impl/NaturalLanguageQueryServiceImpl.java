@@ -1,11 +1,19 @@
 package com.example.flinkmonitorbackend.service.impl;
 
-import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.EvaluationStreamService;
 import com.example.flinkmonitorbackend.service.NaturalLanguageQueryService;
 import com.example.flinkmonitorbackend.service.LlmService;
 import com.example.flinkmonitorbackend.service.McpClientService;
+import com.example.flinkmonitorbackend.service.QueryExampleStore;
 import com.example.flinkmonitorbackend.service.strategy.SqlGenerationStrategyManager;
+import com.example.flinkmonitorbackend.utils.CancellationToken;
+import com.example.flinkmonitorbackend.utils.QueryCancelledException;
+import com.example.flinkmonitorbackend.utils.QueryResult;
+import com.example.flinkmonitorbackend.utils.QueryTooExpensiveException;
+import com.example.flinkmonitorbackend.utils.SchemaPromptCache;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
 import com.example.flinkmonitorbackend.utils.SqlExecutor;
+import com.example.flinkmonitorbackend.utils.SqlTranslationCache;
 import com.example.flinkmonitorbackend.utils.SqlValidationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,19 +32,20 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
 
     private static final Logger log = LoggerFactory.getLogger(NaturalLanguageQueryServiceImpl.class);
     private static final String DEFAULT_SAFE_SQL = "SELECT id, org_name, org_code, is_active FROM organizations WHERE is_active = 1 LIMIT 50";
+    private static final String EVALUATION_UNAVAILABLE = "评估服务繁忙，暂未生成评估，请稍后重试";
 
 
     @Autowired
     private SqlExecutor sqlExecutor;
     
-    @Autowired
-    private DatabaseMetadataService databaseMetadataService;
-    
     @Autowired
     private LlmService llmService;
     
     @Autowired
     private McpClientService mcpClientService;
+
+    @Autowired
+    private EvaluationStreamService evaluationStreamService;
     
     @Autowired
     private SqlGenerationStrategyManager sqlGenerationStrategyManager;
@@ -44,52 +53,25 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
     @Autowired
     private SqlValidationService sqlValidationService;
 
-    private static final Map<String, String> TABLE_NAME_MAPPINGS = new HashMap<>();
-    private static final Map<String, String> COLUMN_NAME_MAPPINGS = new HashMap<>();
-    
-    static {
-        // 初始化表名映射，用于将自然语言中的表名映射到实际表名
-        TABLE_NAME_MAPPINGS.put("部门", "organizations");
-        TABLE_NAME_MAPPINGS.put("组织", "organizations");
-        TABLE_NAME_MAPPINGS.put("员工", "employee");
-        TABLE_NAME_MAPPINGS.put("请假", "hrbp_leave_record");
-        TABLE_NAME_MAPPINGS.put("加班", "overtime_records");
-        TABLE_NAME_MAPPINGS.put("异常工时", "exceptional_hours_records");
-        TABLE_NAME_MAPPINGS.put("门禁", "hrbp_gate_record");
-        TABLE_NAME_MAPPINGS.put("排班", "hrbp_schedule_shift");
-        TABLE_NAME_MAPPINGS.put("出差", "hrbp_trip_record");
-        TABLE_NAME_MAPPINGS.put("连续工作", "consecutive_work_days");
-        
-        // 初始化列名映射，用于将自然语言中的列名映射到实际列名
-        COLUMN_NAME_MAPPINGS.put("部门名称", "org_name");
-        COLUMN_NAME_MAPPINGS.put("部门代码", "org_code");
-        COLUMN_NAME_MAPPINGS.put("员工ID", "emp_id");
-        COLUMN_NAME_MAPPINGS.put("请假小时数", "leave_hours");
-        COLUMN_NAME_MAPPINGS.put("加班小时数", "overtime_hours");
-        COLUMN_NAME_MAPPINGS.put("状态", "status");
-        COLUMN_NAME_MAPPINGS.put("连续工作天数", "consecutive_days");
-        COLUMN_NAME_MAPPINGS.put("工作日期", "work_date");
-        COLUMN_NAME_MAPPINGS.put("总请假小时数", "total_leave_hours");
-        COLUMN_NAME_MAPPINGS.put("总加班小时数", "total_overtime_hours");
-        COLUMN_NAME_MAPPINGS.put("净加班小时数", "net_overtime_hours");
-    }
+    @Autowired
+    private SqlTranslationCache sqlTranslationCache;
+
+    @Autowired
+    private SchemaPromptCache schemaPromptCache;
+
+    @Autowired
+    private QueryExampleStore queryExampleStore;
 
     /**
      * 将自然语言转换为SQL查询并执行
      */
     @Override
     public List<Map<String, Object>> executeNaturalLanguageQuery(String naturalLanguageQuery) {
-        logger.info("执行自然语言查询: {}", naturalLanguageQuery);
+        log.info("执行自然语言查询: {}", naturalLanguageQuery);
         // 使用策略管理器生成SQL
-        String sql = translateToSql(naturalLanguageQuery);
+        Translation translation = translate(naturalLanguageQuery);
         // 执行SQL查询
-        try {
-            logger.info("执行SQL查询: {}", sql);
-            return sqlExecutor.executeQuery(sql);
-        } catch (SQLException e) {
-            logger.error("SQL查询执行失败: {}", e.getMessage(), e);
-            throw new RuntimeException("SQL查询执行失败: " + e.getMessage(), e);
-        }
+        return executeTranslation(naturalLanguageQuery, translation).rows();
     }
     
     /**
@@ -97,51 +79,116 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
      */
     @Override
     public Map<String, Object> executeNaturalLanguageQueryWithEvaluation(String naturalLanguageQuery) {
-        logger.info("执行自然语言查询带评估: {}", naturalLanguageQuery);
+        log.info("执行自然语言查询带评估: {}", naturalLanguageQuery);
         // 首先尝试直接调用MCP获取结果
-        Map<String, Object> mcpResult = executeNaturalLanguageQueryWithMcp(naturalLanguageQuery);
+        Map<String, Object> mcpResult = executeNaturalLanguageQueryWithMcp(naturalLanguageQuery, false);
         if (mcpResult != null && mcpResult.get("success") != null && (Boolean) mcpResult.get("success")) {
-            logger.info("MCP调用成功，返回结果");
+            log.info("MCP调用成功，返回结果");
             return mcpResult;
         }
         
         // 如果MCP调用失败或不适用，回退到SQL生成方式
-        String sql = translateToSql(naturalLanguageQuery);
+        Translation translation = translate(naturalLanguageQuery);
+        String sql = translation.sql();
         // 执行SQL查询
-        List<Map<String, Object>> results;
-        try {
-            logger.info("执行SQL查询: {}", sql);
-            results = sqlExecutor.executeQuery(sql);
-        } catch (SQLException e) {
-            logger.error("SQL查询执行失败: {}", e.getMessage(), e);
-            throw new RuntimeException("SQL查询执行失败: " + e.getMessage(), e);
-        }
+        QueryResult queryResult = executeTranslation(naturalLanguageQuery, translation);
         
         // 评估查询结果
-        String evaluation = llmService.evaluateSqlResults(naturalLanguageQuery, sql, results);
+        List<Map<String, Object>> results = queryResult.rows();
+        String evaluation = evaluateResults(naturalLanguageQuery, queryResult.executedSql(), results);
         
         // 返回包含结果和评估的数据
         Map<String, Object> result = new HashMap<>();
         result.put("query", naturalLanguageQuery);
         result.put("sql", sql);
+        putExecutionInfo(result, queryResult);
         result.put("results", results);
         result.put("evaluation", evaluation);
         result.put("method", "sql");
         
-        logger.info("查询完成，返回结果包含 {} 条记录", results.size());
+        log.info("查询完成，返回结果包含 {} 条记录", results.size());
         return result;
     }
 
+    /**
+     * 执行自然语言查询，查询结果立即返回，评估通过流式任务异步生成
+     */
+    @Override
+    public Map<String, Object> executeNaturalLanguageQueryWithAsyncEvaluation(String naturalLanguageQuery) {
+        log.info("执行自然语言查询（异步评估）: {}", naturalLanguageQuery);
+        Map<String, Object> mcpResult = executeNaturalLanguageQueryWithMcp(naturalLanguageQuery, true);
+        if (mcpResult != null && Boolean.TRUE.equals(mcpResult.get("success"))) {
+            return mcpResult;
+        }
+
+        Translation translation = translate(naturalLanguageQuery);
+        String sql = translation.sql();
+        QueryResult queryResult = executeTranslation(naturalLanguageQuery, translation);
+
+        List<Map<String, Object>> results = queryResult.rows();
+        String evaluationId = evaluationStreamService.startEvaluation(naturalLanguageQuery, queryResult.executedSql(), results);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("query", naturalLanguageQuery);
+        result.put("sql", sql);
+        putExecutionInfo(result, queryResult);
+        result.put("results", results);
+        result.put("evaluationId", evaluationId);
+        result.put("evaluationStatus", EvaluationStreamService.STATUS_RUNNING);
+        result.put("method", "sql");
+        return result;
+    }
+
+    /**
+     * 执行翻译出的SQL，成功后才把新生成的翻译记录为查询示例
+     */
+    private QueryResult executeTranslation(String naturalLanguageQuery, Translation translation) {
+        QueryResult queryResult;
+        try {
+            log.info("执行SQL查询: {}", translation.sql());
+            queryResult = sqlExecutor.executeQuery(translation.sql());
+        } catch (SQLException e) {
+            log.error("SQL查询执行失败: {}", e.getMessage(), e);
+            forgetTranslation(naturalLanguageQuery);
+            throw new RuntimeException("SQL查询执行失败: " + e.getMessage(), e);
+        } catch (QueryTooExpensiveException e) {
+            // 代价过高被拒绝的SQL同样不再复用
+            forgetTranslation(naturalLanguageQuery);
+            throw e;
+        }
+
+        if (translation.exampleSource()) {
+            queryExampleStore.recordSuccess(naturalLanguageQuery, translation.sql());
+        }
+        return queryResult;
+    }
+
+    /**
+     * SQL执行失败时丢弃该查询的翻译缓存和示例，下次重新生成
+     */
+    private void forgetTranslation(String naturalLanguageQuery) {
+        sqlTranslationCache.invalidate(naturalLanguageQuery);
+        queryExampleStore.recordFailure(naturalLanguageQuery);
+    }
+
+    /**
+     * 写入实际执行的SQL，代价过高的查询被改写后执行时附带改写说明，调用方据此提示用户结果范围已缩小
+     */
+    private static void putExecutionInfo(Map<String, Object> result, QueryResult queryResult) {
+        result.put("executedSql", queryResult.executedSql());
+        result.put("sqlRewritten", queryResult.rewritten());
+        if (queryResult.rewritten()) {
+            result.put("rewriteMessage", queryResult.rewriteMessage());
+        }
+    }
+
     private String sanitizeCandidateSql(String sql) {
         if (sql == null || sql.trim().isEmpty()) {
             throw new SecurityException("生成的SQL为空，拒绝执行");
         }
 
-        String sanitized = sqlValidationService.sanitizeSql(sql);
-        if (!llmService.isSqlSafe(sanitized)) {
-            throw new SecurityException("LLM安全检查未通过");
-        }
-        return sanitized;
+        // 一次解析同时完成安全检查、白名单校验和LIMIT补齐
+        return sqlValidationService.validate(sql).requireSanitizedSql();
     }
     
     /**
@@ -151,20 +198,22 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
     public Map<String, Object> executeSqlWithEvaluation(String sql, String originalQuery) {
         String sanitizedSql = sanitizeCandidateSql(sql);
         // 执行SQL查询
-        List<Map<String, Object>> results;
+        QueryResult queryResult;
         try {
-            results = sqlExecutor.executeQuery(sanitizedSql);
+            queryResult = sqlExecutor.executeQuery(sanitizedSql);
         } catch (SQLException e) {
             throw new RuntimeException("SQL查询执行失败: " + e.getMessage(), e);
         }
         
         // 评估查询结果
-        String evaluation = llmService.evaluateSqlResults(originalQuery, sanitizedSql, results);
+        List<Map<String, Object>> results = queryResult.rows();
+        String evaluation = evaluateResults(originalQuery, queryResult.executedSql(), results);
         
         // 返回包含结果和评估的数据
         Map<String, Object> result = new HashMap<>();
         result.put("query", originalQuery);
         result.put("sql", sanitizedSql);
+        putExecutionInfo(result, queryResult);
         result.put("results", results);
         result.put("evaluation", evaluation);
         return result;
@@ -176,56 +225,58 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
      */
     @Override
     public String translateToSql(String naturalLanguageQuery) {
-        if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
-            return sqlValidationService.sanitizeSql(DEFAULT_SAFE_SQL);
-        }
-
-        String normalizedQuery = naturalLanguageQuery.toLowerCase().trim();
-
-        log.info("正在处理自然语言查询: {}", naturalLanguageQuery);
-
-        List<String> candidates = new ArrayList<>();
-
-        String templateSql = matchTemplateQuery(normalizedQuery);
-        if (templateSql != null) {
-            candidates.add(templateSql);
-        }
+        return translate(naturalLanguageQuery).sql();
+    }
 
-        String metadataSql = generateSqlFromMetadata(normalizedQuery);
-        if (metadataSql != null) {
-            candidates.add(metadataSql);
+    /**
+     * 翻译自然语言查询，同时标记结果能否在执行成功后作为查询示例
+     * 只有非兜底策略新生成的SQL才是示例候选，缓存和历史中复用的SQL、兜底策略的结果和默认查询都不是
+     */
+    private Translation translate(String naturalLanguageQuery) {
+        if (naturalLanguageQuery == null || naturalLanguageQuery.trim().isEmpty()) {
+            return new Translation(sqlValidationService.sanitizeSql(DEFAULT_SAFE_SQL), false);
         }
 
-        String mappedSql = generateSqlFromTableMapping(normalizedQuery);
-        if (mappedSql != null) {
-            candidates.add(mappedSql);
-        }
+        CancellationToken.current().throwIfCancelled();
 
-        String regexSql = generateSqlFromRegex(normalizedQuery);
-        if (regexSql != null) {
-            candidates.add(regexSql);
+        Optional<String> cachedSql = sqlTranslationCache.get(naturalLanguageQuery);
+        if (cachedSql.isPresent()) {
+            log.info("命中SQL翻译缓存，跳过SQL生成: {}", naturalLanguageQuery);
+            return new Translation(cachedSql.get(), false);
         }
 
-        String generatedSql = generateSqlFromOllama(normalizedQuery);
-        candidates.add(generatedSql);
-
-        for (String candidate : candidates) {
+        // 与执行成功过的历史查询几乎相同时直接复用其SQL，不再逐个尝试生成策略
+        Optional<String> historySql = queryExampleStore.findNearDuplicate(naturalLanguageQuery);
+        if (historySql.isPresent()) {
             try {
-                String sanitized = sanitizeCandidateSql(candidate);
-                log.info("生成并通过校验的SQL: {}", sanitized);
-                return sanitized;
+                String sanitized = sanitizeCandidateSql(historySql.get());
+                log.info("命中相似的历史查询，复用SQL: {}", sanitized);
+                sqlTranslationCache.put(naturalLanguageQuery, sanitized);
+                return new Translation(sanitized, false);
             } catch (SecurityException ex) {
-                log.warn("SQL校验失败，将尝试下一种策略: {}", ex.getMessage());
+                log.warn("历史SQL未通过校验，重新生成: {}", ex.getMessage());
             }
         }
 
-        return sqlValidationService.sanitizeSql(DEFAULT_SAFE_SQL);
+        log.info("正在处理自然语言查询: {}", naturalLanguageQuery);
+
+        // 由策略管理器按预期代价依次尝试各生成策略，规则策略命中时不会调用大模型
+        Optional<SqlGenerationStrategyManager.GeneratedSql> generatedSql = sqlGenerationStrategyManager.tryGenerateSql(naturalLanguageQuery);
+        if (generatedSql.isPresent()) {
+            String sanitized = generatedSql.get().sql();
+            log.info("生成并通过校验的SQL: {}", sanitized);
+            sqlTranslationCache.put(naturalLanguageQuery, sanitized);
+            return new Translation(sanitized, generatedSql.get().strategy().isExampleSource());
+        }
+
+        // 所有策略都未生成可用的SQL，默认查询不代表真实翻译结果，不写入缓存
+        return new Translation(sqlValidationService.sanitizeSql(DEFAULT_SAFE_SQL), false);
     }
 
     @Override
     public Map<String, Object> translateToSqlWithEvaluation(String naturalLanguageQuery) {
         String sql = translateToSql(naturalLanguageQuery);
-        String evaluation = llmService.evaluateSqlResults(naturalLanguageQuery, sql, List.of());
+        String evaluation = evaluateResults(naturalLanguageQuery, sql, List.of());
 
         Map<String, Object> result = new HashMap<>();
         result.put("query", naturalLanguageQuery);
@@ -237,10 +288,12 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
     
     /**
      * 使用MCP执行自然语言查询
+     *
+     * @param asyncEvaluation 为true时不等待评估，只返回评估任务ID
      */
-    private Map<String, Object> executeNaturalLanguageQueryWithMcp(String naturalLanguageQuery) {
+    private Map<String, Object> executeNaturalLanguageQueryWithMcp(String naturalLanguageQuery, boolean asyncEvaluation) {
         try {
-            logger.info("尝试使用MCP执行自然语言查询: {}", naturalLanguageQuery);
+            log.info("尝试使用MCP执行自然语言查询: {}", naturalLanguageQuery);
             // 分析自然语言查询，确定要调用的API
             String normalizedQuery = naturalLanguageQuery.toLowerCase();
             String apiId = null;
@@ -269,9 +322,6 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
                 // 执行API调用
                 Object apiResult = mcpClientService.executeEnhancedApiCall(apiId, params);
                 
-                // 评估API调用结果
-                String evaluation = llmService.evaluateSqlResults(naturalLanguageQuery, "API调用: " + apiId, apiResult);
-                
                 // 返回包含结果和评估的数据
                 Map<String, Object> result = new HashMap<>();
                 result.put("query", naturalLanguageQuery);
@@ -279,96 +329,30 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
                 result.put("apiId", apiId);
                 result.put("params", params);
                 result.put("results", apiResult);
-                result.put("evaluation", evaluation);
                 result.put("success", true);
+
+                // 评估API调用结果
+                if (asyncEvaluation) {
+                    result.put("evaluationId", evaluationStreamService.startEvaluation(naturalLanguageQuery, "API调用: " + apiId, apiResult));
+                    result.put("evaluationStatus", EvaluationStreamService.STATUS_RUNNING);
+                } else {
+                    result.put("evaluation", evaluateResults(naturalLanguageQuery, "API调用: " + apiId, apiResult));
+                }
                 
                 log.info("MCP调用成功，结果: {}", result);
                 return result;
             }
             
-            logger.info("未匹配到合适的API，回退到SQL方式");
+            log.info("未匹配到合适的API，回退到SQL方式");
             return null;
+        } catch (QueryCancelledException e) {
+            throw e;
         } catch (Exception e) {
             log.warn("MCP调用失败，将回退到SQL方式: {}", e.getMessage(), e);
             return null;
         }
     }
     
-    /**
-     * 增强的SQL安全检查
-     * @param sql SQL查询语句
-     * @return 是否安全
-     */
-    private boolean isSqlSafeEnhanced(String sql) {
-        // 首先调用原有的SQL安全检查
-        boolean isSafe = llmService.isSqlSafe(sql);
-        if (!isSafe) {
-            return false;
-        }
-        
-        // 增强的安全检查
-        String lowerSql = sql.toLowerCase();
-        
-        // 检查是否包含危险的SQL关键字
-        String[] dangerousKeywords = {
-            "drop", "delete", "update", "insert", "truncate", "alter", "create", "drop", 
-            "grant", "revoke", "execute", "call", "declare", "set", "use", "backup", "restore",
-            "union", "except", "intersect", "into", "load", "outfile", "dumpfile"
-        };
-        
-        // 使用正则表达式检查完整关键字，避免匹配表名或列名中的子字符串
-        for (String keyword : dangerousKeywords) {
-            // 关键字前后必须是边界字符（空格、括号、逗号、分号等）
-            String pattern = "\\b" + keyword + "\\b";
-            if (lowerSql.matches(".*" + pattern + ".*")) {
-                logger.warn("SQL包含危险关键字: {}", keyword);
-                return false;
-            }
-        }
-        
-        // 检查是否包含注释
-        if (lowerSql.contains("--") || lowerSql.contains("/*") || lowerSql.contains("#")) {
-            logger.warn("SQL包含注释，可能存在安全风险");
-            return false;
-        }
-        
-        // 检查是否包含多个语句
-        if (lowerSql.contains(";")) {
-            logger.warn("SQL包含多个语句，可能存在注入风险");
-            return false;
-        }
-        
-        // 检查是否包含通配符删除
-        if (lowerSql.contains("* from") && lowerSql.contains("where 1=1")) {
-            logger.warn("SQL包含潜在的通配符注入风险");
-            return false;
-        }
-        
-        return true;
-    }
-    
-    /**
-     * 将自然语言转换为SQL查询语句并生成评估结果（不执行）
-     */
-    @Override
-    public Map<String, Object> translateToSqlWithEvaluation(String naturalLanguageQuery) {
-        logger.info("将自然语言转换为SQL并生成评估: {}", naturalLanguageQuery);
-        
-        // 使用策略管理器生成SQL
-        String sql = sqlGenerationStrategyManager.generateSql(naturalLanguageQuery);
-        logger.info("生成SQL: {}", sql);
-        
-        // 构建结果，不执行SQL，仅返回SQL和安全性评估
-        Map<String, Object> result = new HashMap<>();
-        result.put("query", naturalLanguageQuery);
-        result.put("sql", sql);
-        result.put("safe", isSqlSafeEnhanced(sql));
-        result.put("evaluation", "SQL语句已生成，未执行，无法提供详细评估结果。建议执行SQL后查看详细评估。");
-        
-        logger.info("SQL转换和评估完成");
-        return result;
-    }
-    
     /**
      * 从查询中提取参数
      */
@@ -409,313 +393,31 @@ public class NaturalLanguageQueryServiceImpl implements NaturalLanguageQueryServ
     }
     
     /**
-     * 匹配模板查询
-     */
-    private String matchTemplateQuery(String normalizedQuery) {
-        Map<String, String> sqlTemplates = new HashMap<>();
-
-        // 添加支持的查询模板
-        sqlTemplates.put("查询所有部门的总请假小时数排行", 
-                "SELECT o.org_name, o.org_code, SUM(l.leave_hours) AS total_leave_hours " +
-                "FROM hrbp_leave_record l JOIN organizations o ON l.org_id = o.id " +
-                "GROUP BY o.id, o.org_name, o.org_code ORDER BY total_leave_hours DESC");
-
-        sqlTemplates.put("计算各部门的净加班小时数", 
-                "SELECT o.org_name, o.org_code, " +
-                "COALESCE(ot.overtime_hours, 0) AS total_overtime_hours, " +
-                "COALESCE(l.leave_hours, 0) AS total_leave_hours, " +
-                "(COALESCE(ot.overtime_hours, 0) - COALESCE(l.leave_hours, 0)) AS net_overtime_hours " +
-                "FROM organizations o " +
-                "LEFT JOIN (SELECT e.org_id, SUM(ot.overtime_hours) AS overtime_hours " +
-                "           FROM overtime_records ot " +
-                "           JOIN exceptional_hours_records e ON ot.emp_id = e.emp_id " +
-                "           GROUP BY e.org_id) ot ON o.id = ot.org_id " +
-                "LEFT JOIN (SELECT org_id, SUM(leave_hours) AS leave_hours FROM hrbp_leave_record GROUP BY org_id) l ON o.id = l.org_id " +
-                "ORDER BY net_overtime_hours DESC");
-
-        sqlTemplates.put("查询状态为待处理的异常工时记录数量", 
-                "SELECT COUNT(*) AS pending_exceptional_records " +
-                "FROM exceptional_hours_records WHERE status = 'pending'");
-
-        sqlTemplates.put("找出连续工作天数最多的前5名员工", 
-                "SELECT emp_id, MAX(consecutive_days) AS max_consecutive_days " +
-                "FROM consecutive_work_days " +
-                "GROUP BY emp_id ORDER BY max_consecutive_days DESC LIMIT 5");
-
-        // 检查是否匹配任何模板
-        for (Map.Entry<String, String> entry : sqlTemplates.entrySet()) {
-            if (normalizedQuery.contains(entry.getKey().toLowerCase())) {
-                return entry.getValue();
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 根据表名映射生成SQL查询
-     */
-    private String generateSqlFromTableMapping(String query) {
-        // 检查是否包含已知的表名，使用不区分大小写的匹配
-        for (Map.Entry<String, String> mapping : TABLE_NAME_MAPPINGS.entrySet()) {
-            String mappingKey = mapping.getKey().toLowerCase();
-            String normalizedQuery = query.toLowerCase();
-            
-            if (normalizedQuery.contains(mappingKey)) {
-                String actualTableName = mapping.getValue();
-                
-                // 从数据库元数据中获取表的重要列，减少硬编码
-                List<String> columns = getSelectableColumns(actualTableName);
-                
-                // 生成SQL查询，使用获取到的重要列而不是*，减少不必要的数据传输
-                String columnList = String.join(", ", columns);
-                String sql = String.format("SELECT %s FROM %s", columnList, actualTableName);
-                
-                // 添加简单的过滤条件
-                if (normalizedQuery.contains("状态") || normalizedQuery.contains("status")) {
-                    if (normalizedQuery.contains("待处理") || normalizedQuery.contains("pending")) {
-                        sql += " WHERE status = 'pending'";
-                    }
-                    if (normalizedQuery.contains("已处理") || normalizedQuery.contains("processed")) {
-                        sql += " WHERE status = 'processed'";
-                    }
-                    if (normalizedQuery.contains("已批准") || normalizedQuery.contains("approved")) {
-                        sql += " WHERE status = 'approved'";
-                    }
-                }
-                
-                // 添加排序（使用数据库元数据获取合适的排序字段）
-                if (normalizedQuery.contains("排行") || normalizedQuery.contains("排名") || normalizedQuery.contains("order")) {
-                    sql += " ORDER BY " + getDefaultOrderColumn(actualTableName) + " DESC";
-                } else {
-                    // 默认排序
-                    sql += " ORDER BY " + getDefaultOrderColumn(actualTableName) + " DESC";
-                }
-                
-                // 添加分页
-                sql += " LIMIT " + sqlValidationService.getMaxLimit();
-                
-                return sql;
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 使用正则表达式生成SQL查询
-     */
-    private String generateSqlFromRegex(String query) {
-        // 匹配 "查询[组织/部门]的[指标]" 模式
-        // 使用字符串处理代替正则表达式，避免转义字符问题
-        if (query.contains("查询") && query.contains("的")) {
-            int startIndex = query.indexOf("查询") + 2;
-            int endIndex = query.indexOf("的", startIndex);
-            if (endIndex > startIndex) {
-                String dept = query.substring(startIndex, endIndex).trim();
-                String metric = query.substring(endIndex + 1).trim();
-                
-                if (metric.contains("请假")) {
-                    int limit = Math.min(extractNumber(dept), sqlValidationService.getMaxLimit());
-                    return String.format(
-                            "SELECT o.org_name, o.org_code, SUM(l.leave_hours) AS total_leave_hours " +
-                            "FROM hrbp_leave_record l JOIN organizations o ON l.org_id = o.id " +
-                            "GROUP BY o.id, o.org_name, o.org_code ORDER BY total_leave_hours DESC " +
-                            "LIMIT %d",
-                            limit
-                    );
-                }
-                
-                if (metric.contains("加班")) {
-                    int limit = Math.min(extractNumber(dept), sqlValidationService.getMaxLimit());
-                    return String.format(
-                            "SELECT o.org_name, o.org_code, SUM(ot.overtime_hours) AS total_overtime_hours " +
-                            "FROM overtime_records ot JOIN exceptional_hours_records e ON ot.emp_id = e.emp_id " +
-                            "JOIN organizations o ON e.org_id = o.id " +
-                            "GROUP BY o.id, o.org_name, o.org_code ORDER BY total_overtime_hours DESC " +
-                            "LIMIT %d",
-                            limit
-                    );
-                }
-            }
-        }
-
-        // 匹配 "查询[表名]" 模式
-        if (query.contains("查询")) {
-            String tableDesc = query.substring(2).trim();
-            for (Map.Entry<String, String> mapping : TABLE_NAME_MAPPINGS.entrySet()) {
-                if (tableDesc.contains(mapping.getKey())) {
-                    String actualTableName = mapping.getValue();
-                    String columnList = String.join(", ", getSelectableColumns(actualTableName));
-                    return String.format("SELECT %s FROM %s LIMIT %d", columnList, actualTableName, sqlValidationService.getMaxLimit());
-                }
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 利用数据库元数据生成SQL查询
+     * 评估查询结果，大模型繁忙时返回提示文本，不影响查询结果的返回
      */
-    private String generateSqlFromMetadata(String query) {
+    private String evaluateResults(String query, String sql, Object results) {
         try {
-            // 获取所有表信息
-            List<Map<String, Object>> tables = databaseMetadataService.getAllTables();
-            
-            // 尝试匹配最相关的表
-            String bestMatchTable = tables.stream()
-                    .map(table -> (String) table.get("tableName"))
-                    .filter(tableName -> {
-                        // 检查表名是否包含查询中的关键字
-                        String normalizedTableName = tableName.toLowerCase();
-                        return query.contains(normalizedTableName) || 
-                               TABLE_NAME_MAPPINGS.entrySet().stream()
-                                   .anyMatch(entry -> query.contains(entry.getKey()) && entry.getValue().equals(tableName));
-                    })
-                    .filter(tableName -> !sqlValidationService.getAllowedColumns(tableName).isEmpty())
-                    .findFirst()
-                    .orElse("organizations");
-            
-            // 从数据库元数据中获取表的重要列，减少硬编码
-            List<String> columns = getSelectableColumns(bestMatchTable);
-            
-            // 生成SQL查询，使用获取到的重要列而不是*，减少不必要的数据传输
-            String columnList = String.join(", ", columns);
-            String sql = String.format("SELECT %s FROM %s", columnList, bestMatchTable);
-            
-            // 添加默认排序
-            sql += String.format(" ORDER BY %s DESC", getDefaultOrderColumn(bestMatchTable));
-            
-            // 添加分页
-            sql += " LIMIT " + sqlValidationService.getMaxLimit();
-            
-            return sql;
-        } catch (Exception e) {
-            // 如果元数据生成失败，返回null，让调用者处理
-            return null;
+            return llmService.evaluateSqlResults(query, sql, results);
+        } catch (ServiceOverloadedException e) {
+            log.warn("大模型繁忙，跳过结果评估: {}", e.getMessage());
+            return EVALUATION_UNAVAILABLE;
         }
     }
 
-    /**
-     * 使用LLM大模型生成SQL查询
-     */
-    private String generateSqlFromOllama(String query) {
-        // 获取数据库结构描述
-        String databaseStructure = getDatabaseStructure();
-        
-        // 添加重试机制
-        String generatedSql = null;
-        int maxRetries = 3;
-        int retryCount = 0;
-        
-        // 添加重试机制
-        while (retryCount < maxRetries) {
-            try {
-                // 使用LlmService生成SQL，默认使用Ollama
-                generatedSql = llmService.generateSql(query, databaseStructure);
-                
-                // 清理生成的SQL
-                String cleanedSql = llmService.cleanGeneratedSql(generatedSql);
-                
-                return sanitizeCandidateSql(cleanedSql);
-            } catch (Exception e) {
-                retryCount++;
-                log.warn("LLM调用失败，正在重试... ({}/{}), 错误信息: {}", retryCount, maxRetries, e.getMessage());
-                
-                // 如果是最后一次重试，返回默认查询
-                if (retryCount >= maxRetries) {
-                    log.error("LLM调用多次失败，返回默认查询", e);
-                    return DEFAULT_SAFE_SQL;
-                }
-                
-                // 等待一段时间后重试
-                try {
-                    Thread.sleep(1000 * retryCount); // 指数退避
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        }
-        
-        return generatedSql;
-    }
-
-    private List<String> getSelectableColumns(String tableName) {
-        List<String> allowedColumns = sqlValidationService.getAllowedColumns(tableName);
-        if (!allowedColumns.isEmpty()) {
-            return allowedColumns;
-        }
-
-        List<String> importantColumns = getImportantColumnsForTable(tableName);
-        if (!importantColumns.isEmpty()) {
-            return importantColumns;
-        }
-
-        return List.of("id");
-    }
-    
-    /**
-     * 获取表的重要列
-     */
-    private List<String> getImportantColumnsForTable(String tableName) {
-        Map<String, List<String>> importantColumns = new HashMap<>();
-        
-        // 定义各表的重要列，这些信息可以考虑从数据库元数据或配置文件中获取
-        importantColumns.put("organizations", Arrays.asList("id", "org_name", "org_code", "parent_id", "is_active"));
-        importantColumns.put("hrbp_leave_record", Arrays.asList("id", "emp_id", "start_time", "end_time", "leave_type"));
-        importantColumns.put("overtime_records", Arrays.asList("id", "emp_id", "work_date", "actual_hours", "regular_hours", "overtime_hours"));
-        importantColumns.put("exceptional_hours_records", Arrays.asList("id", "emp_id", "org_id", "indicator_name", "actual_value", "threshold", "status"));
-        importantColumns.put("hrbp_gate_record", Arrays.asList("id", "emp_id", "org_id", "device_id", "event_time", "event_type"));
-        importantColumns.put("consecutive_work_days", Arrays.asList("id", "emp_id", "org_id", "work_date", "consecutive_days"));
-        
-        return importantColumns.getOrDefault(tableName, new ArrayList<>());
-    }
-    
-    /**
-     * 获取表的默认排序字段，利用表结构知识减少硬编码
-     */
-    private String getDefaultOrderColumn(String tableName) {
-        Map<String, String> defaultOrderColumns = new HashMap<>();
-        defaultOrderColumns.put("organizations", "org_name");
-        defaultOrderColumns.put("hrbp_leave_record", "start_time");
-        defaultOrderColumns.put("overtime_records", "work_date");
-        defaultOrderColumns.put("exceptional_hours_records", "created_at");
-        defaultOrderColumns.put("hrbp_gate_record", "event_time");
-        defaultOrderColumns.put("hrbp_schedule_shift", "shift_date");
-        defaultOrderColumns.put("hrbp_trip_record", "start_date");
-        defaultOrderColumns.put("consecutive_work_days", "work_date");
-        
-        return defaultOrderColumns.getOrDefault(tableName, "id");
-    }
-    
     /**
      * 获取数据库结构描述，用于大模型理解数据库结构
+     * 读取预编译的结构提示词缓存，不会触发JDBC元数据查询
      */
     public String getDatabaseStructure() {
-        return databaseMetadataService.getDatabaseStructureDescription() + "\n" + 
-               databaseMetadataService.getTableRelationships();
+        return schemaPromptCache.getPromptFragment();
     }
-    
+
     /**
-     * 从字符串中提取数字
+     * 翻译结果
+     *
+     * @param sql 清理后的SQL
+     * @param exampleSource 执行成功后是否记录为查询示例
      */
-    private int extractNumber(String text) {
-        // 简单实现，提取第一个数字
-        for (int i = 0; i < text.length(); i++) {
-            if (Character.isDigit(text.charAt(i))) {
-                int j = i + 1;
-                while (j < text.length() && Character.isDigit(text.charAt(j))) {
-                    j++;
-                }
-                try {
-                    return Integer.parseInt(text.substring(i, j));
-                } catch (NumberFormatException e) {
-                    return 10;
-                }
-            }
-        }
-        return 10;
+    private record Translation(String sql, boolean exampleSource) {
     }
 }
@@ -6,6 +6,11 @@ package com.example.flinkmonitorbackend.service.strategy;
  */
 public abstract class AbstractSqlGenerationStrategy implements SqlGenerationStrategy {
     
+    /**
+     * 查询未指定条数时生成的SQL返回的行数，只作为预览，需要更多数据时由查询中的条数决定
+     */
+    protected static final int DEFAULT_ROW_LIMIT = 10;
+    
     /**
      * 默认实现：将查询转换为小写进行处理
      * @param naturalLanguageQuery 自然语言查询
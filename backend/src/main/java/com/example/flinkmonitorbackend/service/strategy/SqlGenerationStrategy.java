@@ -25,4 +25,31 @@ public interface SqlGenerationStrategy {
      * @return 是否适用
      */
     boolean isApplicable(String naturalLanguageQuery);
-}
\ No newline at end of file
+    
+    /**
+     * 获取策略优先级，数值越小越先尝试
+     * 运行统计不足时按优先级排序，统计充足后由策略管理器按预期代价调整顺序
+     * @return 优先级
+     */
+    default int getPriority() {
+        return 100;
+    }
+    
+    /**
+     * 是否为兜底策略
+     * 兜底策略始终排在最后且不会被跳过
+     * @return 是否为兜底策略
+     */
+    default boolean isFallback() {
+        return false;
+    }
+    
+    /**
+     * 生成的SQL执行成功后能否作为查询示例保存
+     * 兜底策略只按识别出的表返回默认列表，结果不代表对查询的真实翻译，默认不保存
+     * @return 是否保存为查询示例
+     */
+    default boolean isExampleSource() {
+        return !isFallback();
+    }
+}
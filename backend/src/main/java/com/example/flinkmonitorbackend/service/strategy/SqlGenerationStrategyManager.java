@@ -1,97 +1,219 @@
 package com.example.flinkmonitorbackend.service.strategy;
 
+import com.example.flinkmonitorbackend.utils.QueryCancelledException;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SQL生成策略管理器
  * 管理和调用不同的SQL生成策略
+ * 策略在启动时按声明的优先级注册一次，运行中记录每个策略的命中率、校验通过率和耗时，
+ * 统计充足后按预期代价（耗时 / 成功率）调整尝试顺序，并跳过几乎从不成功的策略
  */
 @Component
 public class SqlGenerationStrategyManager {
-    
-    private final List<SqlGenerationStrategy> strategies;
-    
+
+    private static final Logger log = LoggerFactory.getLogger(SqlGenerationStrategyManager.class);
+
+    private static final String DEFAULT_SAFE_SQL = "SELECT id, org_name, org_code, is_active FROM organizations WHERE is_active = 1 LIMIT 10";
+
+    // 尝试次数达到该值后才按统计调整顺序
+    private static final int MIN_ATTEMPTS_FOR_ADAPTIVE = 20;
+    // 成功率低于该值的策略会被跳过
+    private static final double SKIP_SUCCESS_RATE = 0.05;
+    // 被跳过的策略每隔若干次调用仍尝试一次，以便在数据变化后恢复
+    private static final int SKIPPED_PROBE_INTERVAL = 20;
+
+    private final List<StrategyEntry> registry;
+    private final SqlValidationService sqlValidationService;
+    private final AtomicLong invocations = new AtomicLong();
+
     @Autowired
-    public SqlGenerationStrategyManager(List<SqlGenerationStrategy> strategies) {
-        this.strategies = strategies;
+    public SqlGenerationStrategyManager(List<SqlGenerationStrategy> strategies, SqlValidationService sqlValidationService) {
+        this.sqlValidationService = sqlValidationService;
+        this.registry = strategies.stream()
+                .sorted(Comparator.comparingInt(SqlGenerationStrategy::getPriority))
+                .map(StrategyEntry::new)
+                .toList();
+        log.info("已注册SQL生成策略: {}", registry.stream().map(entry -> entry.strategy.getStrategyName()).toList());
     }
-    
+
     /**
      * 生成SQL查询
-     * 按照优先级顺序尝试使用不同的策略
+     * 按照预期代价从低到高尝试不同的策略，返回第一个通过校验的SQL
      * @param naturalLanguageQuery 自然语言查询
-     * @return 生成的SQL查询语句
+     * @return 生成的SQL查询语句，所有策略都失败时返回安全的默认查询
      */
     public String generateSql(String naturalLanguageQuery) {
-        // 按照优先级顺序尝试使用不同的策略
-        // 优先级：模板策略 > 表映射策略 > 正则策略 > 元数据策略 > 大模型策略
-        
-        // 模板策略
-        SqlGenerationStrategy templateStrategy = getStrategyByClass("com.example.flinkmonitorbackend.service.strategy.impl.TemplateSqlStrategy");
-        if (templateStrategy != null && templateStrategy.isApplicable(naturalLanguageQuery)) {
-            String sql = templateStrategy.generateSql(naturalLanguageQuery);
-            if (sql != null) {
-                return sql;
-            }
-        }
-        
-        // 表映射策略
-        SqlGenerationStrategy tableMappingStrategy = getStrategyByClass("com.example.flinkmonitorbackend.service.strategy.impl.TableMappingSqlStrategy");
-        if (tableMappingStrategy != null && tableMappingStrategy.isApplicable(naturalLanguageQuery)) {
-            String sql = tableMappingStrategy.generateSql(naturalLanguageQuery);
-            if (sql != null) {
-                return sql;
-            }
-        }
-        
-        // 正则策略
-        SqlGenerationStrategy regexStrategy = getStrategyByClass("com.example.flinkmonitorbackend.service.strategy.impl.RegexSqlStrategy");
-        if (regexStrategy != null && regexStrategy.isApplicable(naturalLanguageQuery)) {
-            String sql = regexStrategy.generateSql(naturalLanguageQuery);
-            if (sql != null) {
-                return sql;
+        // 最后兜底，返回一个安全的默认查询
+        return tryGenerateSql(naturalLanguageQuery).map(GeneratedSql::sql).orElse(DEFAULT_SAFE_SQL);
+    }
+
+    /**
+     * 按照预期代价从低到高尝试不同的策略
+     * @param naturalLanguageQuery 自然语言查询
+     * @return 第一个通过校验的SQL及生成它的策略，所有策略都未生成可用的SQL时为空
+     */
+    public Optional<GeneratedSql> tryGenerateSql(String naturalLanguageQuery) {
+        long invocation = invocations.incrementAndGet();
+
+        for (StrategyEntry entry : orderedEntries()) {
+            if (entry.shouldSkip() && invocation % SKIPPED_PROBE_INTERVAL != 0) {
+                continue;
             }
-        }
-        
-        // 元数据策略
-        SqlGenerationStrategy metadataStrategy = getStrategyByClass("com.example.flinkmonitorbackend.service.strategy.impl.MetadataSqlStrategy");
-        if (metadataStrategy != null && metadataStrategy.isApplicable(naturalLanguageQuery)) {
-            String sql = metadataStrategy.generateSql(naturalLanguageQuery);
+
+            String sql = entry.tryGenerate(naturalLanguageQuery);
             if (sql != null) {
-                return sql;
+                return Optional.of(new GeneratedSql(sql, entry.strategy));
             }
         }
-        
-        // 大模型策略（兜底策略）
-        SqlGenerationStrategy llmStrategy = getStrategyByClass("com.example.flinkmonitorbackend.service.strategy.impl.LlmSqlStrategy");
-        if (llmStrategy != null) {
-            return llmStrategy.generateSql(naturalLanguageQuery);
-        }
-        
-        // 最后兜底，返回一个安全的默认查询
-        return "SELECT id, org_name, org_code, is_active FROM organizations WHERE is_active = 1 LIMIT 10";
+
+        return Optional.empty();
     }
-    
+
     /**
-     * 根据类名获取策略实例
-     * @param className 策略类名
-     * @return 策略实例
+     * 当前的尝试顺序：普通策略按预期代价排序，兜底策略按优先级排在最后
      */
-    private SqlGenerationStrategy getStrategyByClass(String className) {
-        return strategies.stream()
-                .filter(strategy -> strategy.getClass().getName().equals(className))
-                .findFirst()
-                .orElse(null);
+    List<StrategyEntry> orderedEntries() {
+        Map<StrategyEntry, Double> costs = new HashMap<>();
+        List<StrategyEntry> regular = new ArrayList<>();
+        List<StrategyEntry> fallbacks = new ArrayList<>();
+        for (StrategyEntry entry : registry) {
+            if (entry.strategy.isFallback()) {
+                fallbacks.add(entry);
+            } else {
+                // 先取出代价再排序，避免排序过程中统计被并发更新
+                costs.put(entry, entry.expectedCost());
+                regular.add(entry);
+            }
+        }
+
+        // 统计不足的策略预期代价记为0，排序稳定，保持声明的优先级顺序
+        regular.sort(Comparator.comparingDouble(costs::get));
+        regular.addAll(fallbacks);
+        return regular;
     }
-    
+
     /**
-     * 获取所有策略
+     * 获取所有策略，按当前尝试顺序排列
      * @return 策略列表
      */
     public List<SqlGenerationStrategy> getAllStrategies() {
-        return strategies;
+        return orderedEntries().stream().map(entry -> entry.strategy).toList();
+    }
+
+    /**
+     * 获取各策略的运行统计
+     * @return 策略统计列表，按当前尝试顺序排列
+     */
+    public List<Map<String, Object>> getStrategyStats() {
+        return orderedEntries().stream().map(StrategyEntry::snapshot).toList();
+    }
+
+    /**
+     * 策略生成并通过校验的SQL
+     *
+     * @param sql 清理后的SQL
+     * @param strategy 生成该SQL的策略
+     */
+    public record GeneratedSql(String sql, SqlGenerationStrategy strategy) {
+    }
+
+    /**
+     * 已注册的策略及其运行统计
+     */
+    final class StrategyEntry {
+        private final SqlGenerationStrategy strategy;
+        private long attempts;
+        private long hits;
+        private long validationPasses;
+        private double averageLatencyMillis;
+
+        StrategyEntry(SqlGenerationStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        /**
+         * 调用策略并校验结果，策略不适用、未生成SQL或校验失败时返回null
+         */
+        String tryGenerate(String naturalLanguageQuery) {
+            if (!strategy.isApplicable(naturalLanguageQuery)) {
+                return null;
+            }
+
+            long start = System.nanoTime();
+            String sql = null;
+            String sanitized = null;
+            try {
+                sql = strategy.generateSql(naturalLanguageQuery);
+                if (sql != null) {
+                    sanitized = sqlValidationService.sanitizeSql(sql);
+                }
+            } catch (ServiceOverloadedException | QueryCancelledException e) {
+                throw e;
+            } catch (SecurityException e) {
+                log.debug("策略{}生成的SQL未通过校验: {}", strategy.getStrategyName(), e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("策略{}生成SQL失败: {}", strategy.getStrategyName(), e.getMessage());
+            } finally {
+                record(sql != null, sanitized != null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            return sanitized;
+        }
+
+        private synchronized void record(boolean hit, boolean valid, long latencyMillis) {
+            attempts++;
+            if (hit) {
+                hits++;
+            }
+            if (valid) {
+                validationPasses++;
+            }
+            // 指数加权平均，近期耗时权重更高
+            averageLatencyMillis = attempts == 1 ? latencyMillis : averageLatencyMillis * 0.9 + latencyMillis * 0.1;
+        }
+
+        /**
+         * 预期代价：平均耗时除以成功率，成功率采用拉普拉斯平滑
+         */
+        synchronized double expectedCost() {
+            if (attempts < MIN_ATTEMPTS_FOR_ADAPTIVE) {
+                return 0;
+            }
+            return (averageLatencyMillis + 1) / successRate();
+        }
+
+        synchronized boolean shouldSkip() {
+            return !strategy.isFallback() && attempts >= MIN_ATTEMPTS_FOR_ADAPTIVE && successRate() < SKIP_SUCCESS_RATE;
+        }
+
+        private double successRate() {
+            return (validationPasses + 1.0) / (attempts + 2.0);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("strategy", strategy.getStrategyName());
+            snapshot.put("priority", strategy.getPriority());
+            snapshot.put("attempts", attempts);
+            snapshot.put("hitRate", attempts == 0 ? 0.0 : (double) hits / attempts);
+            snapshot.put("validationPassRate", hits == 0 ? 0.0 : (double) validationPasses / hits);
+            snapshot.put("averageLatencyMillis", averageLatencyMillis);
+            snapshot.put("skipped", shouldSkip());
+            return snapshot;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
 package com.example.flinkmonitorbackend.service.strategy.impl;
 
-import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
 import com.example.flinkmonitorbackend.service.LlmService;
+import com.example.flinkmonitorbackend.service.QueryExampleStore;
 import com.example.flinkmonitorbackend.service.strategy.AbstractSqlGenerationStrategy;
+import com.example.flinkmonitorbackend.utils.SchemaRetriever;
+import com.example.flinkmonitorbackend.utils.QueryCancelledException;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -17,30 +20,32 @@ public class LlmSqlStrategy extends AbstractSqlGenerationStrategy {
     private LlmService llmService;
     
     @Autowired
-    private DatabaseMetadataService databaseMetadataService;
+    private SchemaRetriever schemaRetriever;
+
+    @Autowired
+    private QueryExampleStore queryExampleStore;
     
     @Override
     public String generateSql(String naturalLanguageQuery) {
         try {
-            // 获取数据库结构描述
-            String databaseStructure = getDatabaseStructure();
+            // 获取与查询相关的数据库结构描述
+            String databaseStructure = schemaRetriever.getRelevantSchemaPrompt(naturalLanguageQuery);
             
-            // 使用LlmService生成SQL
-            String generatedSql = llmService.generateSql(naturalLanguageQuery, databaseStructure);
+            // 使用LlmService生成SQL，附带相似的历史查询作为参考示例
+            String generatedSql = llmService.generateSqlWithExamples(naturalLanguageQuery, databaseStructure,
+                    queryExampleStore.findSimilarExamples(naturalLanguageQuery));
             
             // 清理生成的SQL
             String cleanedSql = llmService.cleanGeneratedSql(generatedSql);
             
-            // 检查生成的SQL是否安全
-            if (llmService.isSqlSafe(cleanedSql)) {
-                return cleanedSql;
-            } else {
-                // 如果生成的SQL不安全，返回一个安全的默认查询
-                return "SELECT id, org_name, org_code, is_active FROM organizations WHERE is_active = 1 LIMIT 10";
-            }
+            // 检查生成的SQL是否安全，不安全时不返回SQL，由策略管理器返回默认查询
+            return llmService.isSqlSafe(cleanedSql) ? cleanedSql : null;
+        } catch (ServiceOverloadedException | QueryCancelledException e) {
+            // 大模型繁忙或请求已取消时不返回默认查询，由上层处理
+            throw e;
         } catch (Exception e) {
-            // 如果大模型生成失败，返回一个安全的默认查询
-            return "SELECT id, org_name, org_code, is_active FROM organizations WHERE is_active = 1 LIMIT 10";
+            // 大模型生成失败时不返回SQL，默认查询不代表真实翻译结果，避免被缓存复用
+            return null;
         }
     }
     
@@ -50,16 +55,26 @@ public class LlmSqlStrategy extends AbstractSqlGenerationStrategy {
     }
     
     @Override
-    public boolean isApplicable(String naturalLanguageQuery) {
-        // 大模型策略适用于所有查询，作为最终兜底策略
+    public int getPriority() {
+        return 100;
+    }
+    
+    @Override
+    public boolean isFallback() {
         return true;
     }
     
     /**
-     * 获取数据库结构描述
+     * 只是排在最后尝试，生成的是对查询的完整翻译，执行成功后可作为示例
      */
-    private String getDatabaseStructure() {
-        return databaseMetadataService.getDatabaseStructureDescription() + "\n" + 
-               databaseMetadataService.getTableRelationships();
+    @Override
+    public boolean isExampleSource() {
+        return true;
+    }
+    
+    @Override
+    public boolean isApplicable(String naturalLanguageQuery) {
+        // 大模型策略适用于所有查询，作为最终兜底策略
+        return true;
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.example.flinkmonitorbackend.service.strategy.impl;
 
 import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
 import com.example.flinkmonitorbackend.service.strategy.AbstractSqlGenerationStrategy;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -9,6 +11,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 元数据SQL策略
@@ -17,28 +21,19 @@ import java.util.Map;
 @Component
 public class MetadataSqlStrategy extends AbstractSqlGenerationStrategy {
     
-    // 表名映射关系
-    private static final Map<String, String> TABLE_NAME_MAPPINGS = new HashMap<>();
-    
     // 表的默认排序字段
     private static final Map<String, String> DEFAULT_ORDER_COLUMNS = new HashMap<>();
     
     @Autowired
     private DatabaseMetadataService databaseMetadataService;
     
+    @Autowired
+    private SchemaKeywordIndex schemaKeywordIndex;
+    
+    @Autowired
+    private SqlValidationService sqlValidationService;
+    
     static {
-        // 初始化表名映射
-        TABLE_NAME_MAPPINGS.put("部门", "organizations");
-        TABLE_NAME_MAPPINGS.put("组织", "organizations");
-        TABLE_NAME_MAPPINGS.put("员工", "employee");
-        TABLE_NAME_MAPPINGS.put("请假", "hrbp_leave_record");
-        TABLE_NAME_MAPPINGS.put("加班", "overtime_records");
-        TABLE_NAME_MAPPINGS.put("异常工时", "exceptional_hours_records");
-        TABLE_NAME_MAPPINGS.put("门禁", "hrbp_gate_record");
-        TABLE_NAME_MAPPINGS.put("排班", "hrbp_schedule_shift");
-        TABLE_NAME_MAPPINGS.put("出差", "hrbp_trip_record");
-        TABLE_NAME_MAPPINGS.put("连续工作", "consecutive_work_days");
-        
         // 初始化表的默认排序字段
         DEFAULT_ORDER_COLUMNS.put("organizations", "org_name");
         DEFAULT_ORDER_COLUMNS.put("hrbp_leave_record", "start_time");
@@ -56,8 +51,11 @@ public class MetadataSqlStrategy extends AbstractSqlGenerationStrategy {
             // 获取所有表信息
             List<Map<String, Object>> tables = databaseMetadataService.getAllTables();
             
-            // 尝试匹配最相关的表
+            // 尝试匹配最相关的表，未识别出表时不生成，交给大模型或返回默认查询
             String bestMatchTable = findBestMatchTable(tables, naturalLanguageQuery);
+            if (bestMatchTable == null) {
+                return null;
+            }
             
             // 从数据库元数据中获取表的重要列
             List<String> columns = getImportantColumnsForTable(bestMatchTable);
@@ -71,7 +69,7 @@ public class MetadataSqlStrategy extends AbstractSqlGenerationStrategy {
             sql += String.format(" ORDER BY %s DESC", orderColumn);
             
             // 添加分页
-            sql += " LIMIT 10";
+            sql += " LIMIT " + DEFAULT_ROW_LIMIT;
             
             return sql;
         } catch (Exception e) {
@@ -86,35 +84,53 @@ public class MetadataSqlStrategy extends AbstractSqlGenerationStrategy {
     }
     
     @Override
-    public boolean isApplicable(String naturalLanguageQuery) {
-        // 元数据策略适用于所有查询，作为兜底策略
+    public int getPriority() {
+        return 40;
+    }
+    
+    /**
+     * 识别出表时总会返回该表的最近记录，校验几乎总能通过，
+     * 不作为兜底策略的话按成功率调整顺序后会排到更精确的规则策略前面
+     */
+    @Override
+    public boolean isFallback() {
         return true;
     }
     
+    @Override
+    public boolean isApplicable(String naturalLanguageQuery) {
+        // 只适用于提到了已知表的查询
+        return isValidQuery(naturalLanguageQuery) && schemaKeywordIndex.mentionsTable(naturalLanguageQuery);
+    }
+    
     /**
      * 查找最匹配的表
+     *
+     * @return 查询中第一个实际存在且允许查询的表，没有时为null
      */
     private String findBestMatchTable(List<Map<String, Object>> tables, String naturalLanguageQuery) {
-        String normalizedQuery = naturalLanguageQuery.toLowerCase();
-        
-        // 尝试找到完全匹配的表名
-        return tables.stream()
+        Set<String> existingTables = tables.stream()
                 .map(table -> (String) table.get("tableName"))
-                .filter(tableName -> {
-                    // 检查表名是否包含查询中的关键字
-                    String normalizedTableName = tableName.toLowerCase();
-                    return normalizedQuery.contains(normalizedTableName) || 
-                           TABLE_NAME_MAPPINGS.entrySet().stream()
-                               .anyMatch(entry -> normalizedQuery.contains(entry.getKey()) && entry.getValue().equals(tableName));
-                })
+                .collect(Collectors.toSet());
+        
+        // 查询中提到的表按出现顺序排列，取第一个实际存在且允许查询的表
+        return schemaKeywordIndex.findTables(naturalLanguageQuery).stream()
+                .filter(existingTables::contains)
+                .filter(tableName -> !sqlValidationService.getAllowedColumns(tableName).isEmpty())
                 .findFirst()
-                .orElse("organizations"); // 默认返回organizations表
+                .orElse(null);
     }
     
     /**
      * 获取表的重要列
      */
     private List<String> getImportantColumnsForTable(String tableName) {
+        // 优先使用白名单中允许查询的列，保证生成的SQL能通过校验
+        List<String> allowedColumns = sqlValidationService.getAllowedColumns(tableName);
+        if (!allowedColumns.isEmpty()) {
+            return allowedColumns;
+        }
+        
         List<String> columns = new ArrayList<>();
         
         try {
@@ -1,8 +1,13 @@
 package com.example.flinkmonitorbackend.service.strategy.impl;
 
 import com.example.flinkmonitorbackend.service.strategy.AbstractSqlGenerationStrategy;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * 正则SQL策略
  * 基于正则表达式生成SQL查询
@@ -10,6 +15,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class RegexSqlStrategy extends AbstractSqlGenerationStrategy {
     
+    @Autowired
+    private SchemaKeywordIndex schemaKeywordIndex;
+    
+    @Autowired
+    private SqlValidationService sqlValidationService;
+    
     @Override
     public String generateSql(String naturalLanguageQuery) {
         String normalizedQuery = normalizeQuery(naturalLanguageQuery);
@@ -43,10 +54,16 @@ public class RegexSqlStrategy extends AbstractSqlGenerationStrategy {
             }
         }
 
-        // 匹配 "查询[表名]" 模式
+        // 匹配 "查询[表名]" 模式，表名通过关键词索引识别，不直接拼接查询文本
         if (normalizedQuery.contains("查询")) {
             String tableDesc = normalizedQuery.substring(2).trim();
-            return String.format("SELECT * FROM %s LIMIT 10", tableDesc);
+            return schemaKeywordIndex.findFirstTable(tableDesc)
+                    .map(tableName -> {
+                        List<String> columns = sqlValidationService.getAllowedColumns(tableName);
+                        String columnList = columns.isEmpty() ? "id" : String.join(", ", columns);
+                        return String.format("SELECT %s FROM %s LIMIT %d", columnList, tableName, DEFAULT_ROW_LIMIT);
+                    })
+                    .orElse(null);
         }
         
         return null;
@@ -57,6 +74,11 @@ public class RegexSqlStrategy extends AbstractSqlGenerationStrategy {
         return "Regex Strategy";
     }
     
+    @Override
+    public int getPriority() {
+        return 30;
+    }
+    
     @Override
     public boolean isApplicable(String naturalLanguageQuery) {
         String normalizedQuery = normalizeQuery(naturalLanguageQuery);
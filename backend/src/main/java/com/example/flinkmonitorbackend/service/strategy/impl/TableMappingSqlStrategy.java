@@ -2,10 +2,11 @@ package com.example.flinkmonitorbackend.service.strategy.impl;
 
 import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
 import com.example.flinkmonitorbackend.service.strategy.AbstractSqlGenerationStrategy;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -18,9 +19,6 @@ import java.util.Map;
 @Component
 public class TableMappingSqlStrategy extends AbstractSqlGenerationStrategy {
     
-    // 表名映射关系
-    private static final Map<String, String> TABLE_NAME_MAPPINGS = new HashMap<>();
-    
     // 各表的重要列
     private static final Map<String, List<String>> IMPORTANT_COLUMNS = new HashMap<>();
     
@@ -30,19 +28,13 @@ public class TableMappingSqlStrategy extends AbstractSqlGenerationStrategy {
     @Autowired
     private DatabaseMetadataService databaseMetadataService;
     
+    @Autowired
+    private SchemaKeywordIndex schemaKeywordIndex;
+    
+    @Autowired
+    private SqlValidationService sqlValidationService;
+    
     static {
-        // 初始化表名映射
-        TABLE_NAME_MAPPINGS.put("部门", "organizations");
-        TABLE_NAME_MAPPINGS.put("组织", "organizations");
-        TABLE_NAME_MAPPINGS.put("员工", "employee");
-        TABLE_NAME_MAPPINGS.put("请假", "hrbp_leave_record");
-        TABLE_NAME_MAPPINGS.put("加班", "overtime_records");
-        TABLE_NAME_MAPPINGS.put("异常工时", "exceptional_hours_records");
-        TABLE_NAME_MAPPINGS.put("门禁", "hrbp_gate_record");
-        TABLE_NAME_MAPPINGS.put("排班", "hrbp_schedule_shift");
-        TABLE_NAME_MAPPINGS.put("出差", "hrbp_trip_record");
-        TABLE_NAME_MAPPINGS.put("连续工作", "consecutive_work_days");
-        
         // 初始化各表的重要列
         IMPORTANT_COLUMNS.put("organizations", Arrays.asList("id", "org_name", "org_code", "parent_id", "is_active"));
         IMPORTANT_COLUMNS.put("hrbp_leave_record", Arrays.asList("id", "emp_id", "start_time", "end_time", "leave_type"));
@@ -76,7 +68,7 @@ public class TableMappingSqlStrategy extends AbstractSqlGenerationStrategy {
         List<String> columns = getImportantColumnsForTable(actualTableName);
         
         // 生成SQL查询
-        String columnList = columns.isEmpty() ? "*" : String.join(", ", columns);
+        String columnList = String.join(", ", columns);
         StringBuilder sql = new StringBuilder(String.format("SELECT %s FROM %s", columnList, actualTableName));
         
         // 添加过滤条件
@@ -86,7 +78,7 @@ public class TableMappingSqlStrategy extends AbstractSqlGenerationStrategy {
         addOrderByClause(sql, normalizedQuery, actualTableName);
         
         // 添加分页
-        sql.append(" LIMIT 10");
+        sql.append(" LIMIT ").append(DEFAULT_ROW_LIMIT);
         
         return sql.toString();
     }
@@ -96,50 +88,49 @@ public class TableMappingSqlStrategy extends AbstractSqlGenerationStrategy {
         return "Table Mapping Strategy";
     }
     
+    @Override
+    public int getPriority() {
+        return 20;
+    }
+    
     @Override
     public boolean isApplicable(String naturalLanguageQuery) {
         String normalizedQuery = normalizeQuery(naturalLanguageQuery);
         
         // 检查是否包含已知的表名映射
-        return TABLE_NAME_MAPPINGS.entrySet().stream()
-                .anyMatch(entry -> normalizedQuery.contains(entry.getKey()));
+        return schemaKeywordIndex.mentionsTable(normalizedQuery);
     }
     
     /**
      * 查找匹配的表名
      */
     private String findMatchingTable(String normalizedQuery) {
-        return TABLE_NAME_MAPPINGS.entrySet().stream()
-                .filter(entry -> normalizedQuery.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .findFirst()
-                .orElse(null);
+        return schemaKeywordIndex.findFirstTable(normalizedQuery).orElse(null);
     }
     
     /**
-     * 获取表的重要列
+     * 获取表的重要列，优先使用白名单中允许查询的列，保证生成的SQL能通过校验
      */
     private List<String> getImportantColumnsForTable(String tableName) {
-        return IMPORTANT_COLUMNS.getOrDefault(tableName, new ArrayList<>());
+        List<String> allowedColumns = sqlValidationService.getAllowedColumns(tableName);
+        if (!allowedColumns.isEmpty()) {
+            return allowedColumns;
+        }
+        return IMPORTANT_COLUMNS.getOrDefault(tableName, List.of("id"));
     }
     
     /**
      * 添加过滤条件
      */
     private void addFilterConditions(StringBuilder sql, String normalizedQuery, String tableName) {
-        boolean hasWhere = false;
-        
-        // 添加状态过滤条件
+        // 添加状态过滤条件，未识别出具体状态时不加WHERE
         if (normalizedQuery.contains("状态") || normalizedQuery.contains("status")) {
-            sql.append(" WHERE");
-            hasWhere = true;
-            
             if (normalizedQuery.contains("待处理") || normalizedQuery.contains("pending")) {
-                sql.append(" status = 'pending'");
+                sql.append(" WHERE status = 'pending'");
             } else if (normalizedQuery.contains("已处理") || normalizedQuery.contains("processed")) {
-                sql.append(" status = 'processed'");
+                sql.append(" WHERE status = 'processed'");
             } else if (normalizedQuery.contains("已批准") || normalizedQuery.contains("approved")) {
-                sql.append(" status = 'approved'");
+                sql.append(" WHERE status = 'approved'");
             }
         }
     }
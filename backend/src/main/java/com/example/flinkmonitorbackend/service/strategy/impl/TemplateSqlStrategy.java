@@ -66,6 +66,11 @@ public class TemplateSqlStrategy extends AbstractSqlGenerationStrategy {
         return "Template Strategy";
     }
     
+    @Override
+    public int getPriority() {
+        return 10;
+    }
+    
     @Override
     public boolean isApplicable(String naturalLanguageQuery) {
         String normalizedQuery = normalizeQuery(naturalLanguageQuery);
@@ -0,0 +1,83 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 幂等缓存的键
+ * 对客户端标识、操作和请求内容计算SHA-256摘要并保留前128位，作为Map键时只需比较两个long。
+ * 键决定能否复用其他请求的响应，因此仍使用抗碰撞的摘要算法，只是每个线程复用同一个MessageDigest实例
+ *
+ * @param high 摘要的高64位
+ * @param low 摘要的次高64位
+ */
+public record CacheKey(long high, long low) {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("无法初始化摘要算法", e);
+        }
+    });
+
+    /**
+     * 计算缓存键
+     * 各字段带长度前缀写入摘要，不同的字段切分不会得到相同的输入；请求内容去掉首尾空白
+     *
+     * @param clientKey 客户端标识
+     * @param operation 操作名称
+     * @param payload 请求内容
+     */
+    public static CacheKey of(String clientKey, String operation, String payload) {
+        return of(clientKey, operation, new String[]{payload});
+    }
+
+    /**
+     * 计算由多个请求字段组成的缓存键
+     * 每个字段单独带长度前缀写入摘要，字段之间的边界不同时键也不同；of(clientKey, operation, payload)即只有一个字段的情况
+     *
+     * @param clientKey 客户端标识
+     * @param operation 操作名称
+     * @param fields 请求内容的各个字段，分别去掉首尾空白
+     */
+    public static CacheKey of(String clientKey, String operation, String... fields) {
+        MessageDigest digest = SHA_256.get();
+        update(digest, clientKey);
+        update(digest, operation);
+        for (String field : fields) {
+            update(digest, field == null ? null : field.strip());
+        }
+        // digest()会重置实例，下次调用可以直接复用
+        byte[] hash = digest.digest();
+        return new CacheKey(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    private static void update(MessageDigest digest, String field) {
+        if (field == null) {
+            digest.update(lengthPrefix(-1));
+            return;
+        }
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        digest.update(lengthPrefix(bytes.length));
+        digest.update(bytes);
+    }
+
+    private static byte[] lengthPrefix(int length) {
+        return new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length};
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
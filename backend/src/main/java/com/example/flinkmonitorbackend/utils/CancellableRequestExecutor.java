@@ -0,0 +1,214 @@
+package com.example.flinkmonitorbackend.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 可取消的请求执行器
+ * 在独立的有界线程池中处理耗时的自然语言查询，以DeferredResult异步返回；
+ * 客户端断开连接或超过请求截止时间时取消该请求的令牌：中断大模型排队和等待，并对正在执行的SQL调用Statement.cancel()；
+ * 相同键的并发请求可以合并为一次执行，其余请求等待同一个结果，等待的请求全部退出后才取消执行
+ */
+@Component
+public class CancellableRequestExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(CancellableRequestExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    // 正在执行的合并请求，执行结束（包括失败和取消）后移除
+    private final ConcurrentHashMap<Object, SharedExecution<?>> inFlight = new ConcurrentHashMap<>();
+
+    public CancellableRequestExecutor(@Value("${nlq.request.max-threads:16}") int maxThreads,
+                                      @Value("${nlq.request.max-queue-depth:32}") int maxQueueDepth,
+                                      @Value("${nlq.request.timeout-ms:90000}") long timeoutMillis) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueueDepth)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "nlq-request-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 异步执行请求
+     *
+     * @param task 请求处理逻辑，在绑定了取消令牌的线程中执行
+     * @param timeoutResult 超过截止时间时返回的结果
+     * @param rejectedResult 线程池已满时立即返回的结果
+     * @return 异步结果
+     */
+    public <T> DeferredResult<T> submit(Supplier<T> task, Supplier<T> timeoutResult, Supplier<T> rejectedResult) {
+        SharedExecution<T> execution = new SharedExecution<>();
+        execution.join();
+        start(execution, task, rejectedResult);
+        return toDeferredResult(new Waiter<>(execution), timeoutResult, rejectedResult);
+    }
+
+    /**
+     * 异步执行请求，相同键的请求正在执行时不再重复执行，而是等待其结果
+     * 某个等待方超时或断开只让它自己退出，所有等待方都退出后才取消共享的执行
+     *
+     * @param key 请求键，相同的键表示结果可以共享
+     * @param task 请求处理逻辑，在绑定了取消令牌的线程中执行
+     * @param timeoutResult 超过截止时间时返回的结果
+     * @param rejectedResult 线程池已满或共享的执行被取消时返回的结果
+     * @return 异步结果
+     */
+    public <T> DeferredResult<T> submitShared(Object key, Supplier<T> task, Supplier<T> timeoutResult, Supplier<T> rejectedResult) {
+        return toDeferredResult(join(key, task, rejectedResult), timeoutResult, rejectedResult);
+    }
+
+    /**
+     * 加入相同键的执行，没有可加入的执行时发起新的执行
+     */
+    @SuppressWarnings("unchecked")
+    <T> Waiter<T> join(Object key, Supplier<T> task, Supplier<T> rejectedResult) {
+        while (true) {
+            SharedExecution<T> created = new SharedExecution<>();
+            SharedExecution<T> running = (SharedExecution<T>) inFlight.putIfAbsent(key, created);
+            if (running == null) {
+                created.join();
+                created.outcome.whenComplete((result, error) -> inFlight.remove(key, created));
+                start(created, task, rejectedResult);
+                return new Waiter<>(created);
+            }
+            if (running.join()) {
+                return new Waiter<>(running);
+            }
+            // 所有等待方都已退出，该执行正在取消，由当前请求重新发起
+            inFlight.remove(key, running);
+        }
+    }
+
+    private <T> void start(SharedExecution<T> execution, Supplier<T> task, Supplier<T> rejectedResult) {
+        CancellationToken token = execution.token;
+        CompletableFuture<T> outcome = execution.outcome;
+
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                try (CancellationToken.Scope ignored = token.bind()) {
+                    token.throwIfCancelled();
+                    outcome.complete(task.get());
+                } catch (QueryCancelledException e) {
+                    outcome.completeExceptionally(e);
+                    log.info("请求已取消，停止处理: {}", e.getMessage());
+                } catch (Throwable e) {
+                    // 任何失败都要结束共享的执行，否则合并进来的等待方只能等到超时
+                    outcome.completeExceptionally(e);
+                    if (e instanceof Error error) {
+                        log.error("请求处理出现严重错误", error);
+                        throw error;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            outcome.complete(rejectedResult.get());
+            return;
+        }
+
+        // 任务结束后再取消不会产生影响：未开始的任务被移出队列，执行中的任务被中断
+        token.onCancel(() -> {
+            future.cancel(true);
+            outcome.completeExceptionally(new QueryCancelledException("请求已取消"));
+        });
+    }
+
+    /**
+     * 等待方的异步结果，自身超时或断开时退出等待，不占用线程池
+     */
+    private <T> DeferredResult<T> toDeferredResult(Waiter<T> waiter, Supplier<T> timeoutResult, Supplier<T> rejectedResult) {
+        DeferredResult<T> deferredResult = new DeferredResult<>(timeoutMillis, timeoutResult);
+        waiter.result().whenComplete((result, error) -> {
+            if (error == null) {
+                deferredResult.setResult(result);
+            } else if (error instanceof QueryCancelledException) {
+                deferredResult.setResult(rejectedResult.get());
+            } else {
+                deferredResult.setErrorResult(error);
+            }
+        });
+        deferredResult.onTimeout(() -> waiter.leave("请求超过" + timeoutMillis + "ms"));
+        deferredResult.onError(error -> waiter.leave("客户端断开连接"));
+        return deferredResult;
+    }
+
+    /**
+     * 一次可被多个请求共享的执行，记录仍在等待结果的请求数
+     */
+    static final class SharedExecution<T> {
+        private final CompletableFuture<T> outcome = new CompletableFuture<>();
+        private final CancellationToken token = new CancellationToken();
+        private int waiters;
+        // 所有等待方都已退出，不再接受新的等待方
+        private boolean abandoned;
+
+        synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        void leave(String reason) {
+            synchronized (this) {
+                if (--waiters > 0 || outcome.isDone()) {
+                    return;
+                }
+                abandoned = true;
+            }
+            token.cancel(reason);
+        }
+    }
+
+    /**
+     * 共享执行的一个等待方
+     */
+    static final class Waiter<T> {
+        private final SharedExecution<T> execution;
+        private final AtomicBoolean left = new AtomicBoolean();
+
+        private Waiter(SharedExecution<T> execution) {
+            this.execution = execution;
+        }
+
+        CompletableFuture<T> result() {
+            return execution.outcome;
+        }
+
+        /**
+         * 退出等待，重复调用无效；最后一个等待方退出时取消执行
+         */
+        void leave(String reason) {
+            if (left.compareAndSet(false, true)) {
+                execution.leave(reason);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
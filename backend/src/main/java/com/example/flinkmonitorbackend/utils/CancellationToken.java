@@ -0,0 +1,114 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 请求取消令牌
+ * 处理请求的线程绑定一个令牌，执行SQL、等待大模型等耗时操作时注册取消回调；
+ * 客户端断开或请求超时时取消令牌，回调立即执行，例如中断等待或调用Statement.cancel()
+ * 未绑定令牌的线程使用一个永不取消的令牌，调用方无需判空
+ */
+public final class CancellationToken {
+
+    private static final CancellationToken NONE = new CancellationToken();
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile String reason;
+
+    /**
+     * 当前线程绑定的令牌，未绑定时返回永不取消的令牌
+     */
+    public static CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    /**
+     * 把令牌绑定到当前线程，关闭返回的作用域后恢复原来的绑定
+     */
+    public Scope bind() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * 取消令牌并执行全部回调，重复取消无效
+     */
+    public void cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (callbacks) {
+            if (this == NONE || this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (RuntimeException ignored) {
+                // 回调失败不影响其他回调
+            }
+        }
+    }
+
+    /**
+     * 注册取消回调，令牌已取消时立即执行
+     * 操作结束后必须关闭返回的注册，避免回调作用到后续无关的操作上
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (callbacks) {
+            if (reason == null) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (callbacks) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> {
+        };
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * @throws QueryCancelledException 令牌已取消
+     */
+    public void throwIfCancelled() {
+        String cancelReason = reason;
+        if (cancelReason != null) {
+            throw new QueryCancelledException("请求已取消: " + cancelReason);
+        }
+    }
+
+    /**
+     * 线程绑定作用域
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 取消回调的注册
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
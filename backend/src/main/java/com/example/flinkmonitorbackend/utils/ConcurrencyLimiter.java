@@ -0,0 +1,97 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 有界并发限制器
+ * 最多同时执行maxConcurrent个任务，最多maxQueueDepth个任务排队等待，
+ * 排队已满或等待超时时立即抛出ServiceOverloadedException，避免线程堆积
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxQueueDepth;
+    private final long maxWaitMillis;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public ConcurrencyLimiter(String name, int maxConcurrent, int maxQueueDepth, long maxWaitMillis) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("最大并发数必须大于0");
+        }
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueueDepth = Math.max(0, maxQueueDepth);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * 在并发限制内执行任务
+     */
+    public <T> T execute(Supplier<T> task) {
+        acquire();
+        try {
+            return task.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * 获取执行许可，调用方必须在任务结束后调用release
+     *
+     * @throws ServiceOverloadedException 排队已满或等待超时
+     * @throws QueryCancelledException 排队期间线程被中断（请求已取消）
+     */
+    public void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+
+        if (waiting.incrementAndGet() > maxQueueDepth) {
+            waiting.decrementAndGet();
+            throw new ServiceOverloadedException(name + "繁忙，请稍后重试");
+        }
+
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceOverloadedException(name + "排队超时，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException(name + "排队时请求被取消");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * 不排队，仅在当前有空闲许可时获取
+     *
+     * @return 是否获取到许可，获取到时调用方必须在任务结束后调用release
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 当前排队等待的任务数
+     */
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    /**
+     * 当前可用的执行许可数
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+}
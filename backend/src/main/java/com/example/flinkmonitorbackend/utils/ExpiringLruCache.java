@@ -0,0 +1,174 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * 带过期时间的LRU缓存
+ * 条目数或总权重超过上限时淘汰最久未访问的条目，读取时发现过期的条目会被直接移除，
+ * 也可以调用removeExpired()定期清理未再读取的过期条目
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final ToLongFunction<? super V> weigher;
+    // accessOrder=true，保证迭代顺序即LRU顺序
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expiredCount;
+
+    public ExpiringLruCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, Long.MAX_VALUE, ttlMillis, value -> 0L);
+    }
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param maxWeight 所有条目的最大总权重
+     * @param ttlMillis 条目的存活时间，不大于0表示不过期
+     * @param weigher 计算条目权重，如估算的占用字节数
+     */
+    public ExpiringLruCache(int maxEntries, long maxWeight, long ttlMillis, ToLongFunction<? super V> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+    }
+
+    public synchronized Optional<V> get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return Optional.empty();
+        }
+
+        if (isExpired(entry, System.currentTimeMillis())) {
+            remove(key);
+            expiredCount++;
+            missCount++;
+            return Optional.empty();
+        }
+
+        hitCount++;
+        return Optional.of(entry.value());
+    }
+
+    /**
+     * 放入条目，权重在加锁前计算，估算大结果集的大小不会阻塞其他读写
+     */
+    public void put(K key, V value) {
+        long weight = Math.max(0L, weigher.applyAsLong(value));
+        synchronized (this) {
+            if (weight > maxWeight) {
+                // 单个条目超过总容量时不缓存，避免把其他条目全部挤出
+                remove(key);
+                return;
+            }
+
+            Entry<V> previous = entries.put(key, new Entry<>(value, weight, System.currentTimeMillis()));
+            if (previous != null) {
+                totalWeight -= previous.weight();
+            }
+            totalWeight += weight;
+
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || totalWeight > maxWeight) && eldest.hasNext()) {
+                Map.Entry<K, Entry<V>> candidate = eldest.next();
+                if (candidate.getKey().equals(key)) {
+                    continue;
+                }
+                totalWeight -= candidate.getValue().weight();
+                eldest.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * 移除所有已过期的条目
+     *
+     * @return 移除的条目数
+     */
+    public synchronized int removeExpired() {
+        if (ttlMillis <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+            if (isExpired(entry, now)) {
+                totalWeight -= entry.weight();
+                iterator.remove();
+                removed++;
+            }
+        }
+        expiredCount += removed;
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 因条目数或总权重超限被淘汰的条目数
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 因过期被移除的条目数
+     */
+    public synchronized long expiredCount() {
+        return expiredCount;
+    }
+
+    private void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight();
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return ttlMillis > 0 && now - entry.createdAt() > ttlMillis;
+    }
+
+    private record Entry<V>(V value, long weight, long createdAt) {
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * 多关键词匹配器（Aho-Corasick自动机）
+ * 构建后不可变，可并发使用；一次线性扫描即可找出文本中出现的全部关键词，匹配不区分大小写
+ *
+ * @param <T> 关键词关联的数据类型
+ */
+public final class KeywordMatcher<T> {
+
+    private final Node<T> root;
+    private final int keywordCount;
+
+    private KeywordMatcher(Node<T> root, int keywordCount) {
+        this.root = root;
+        this.keywordCount = keywordCount;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 找出文本中出现的全部关键词，按结束位置排序，同一位置结束的关键词长的在前
+     */
+    public List<Match<T>> findAll(String text) {
+        if (text == null || text.isEmpty() || keywordCount == 0) {
+            return List.of();
+        }
+
+        List<Match<T>> matches = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        Node<T> node = root;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.failure;
+            }
+            node = node.children.getOrDefault(c, root);
+
+            for (Output<T> output : node.outputs) {
+                int end = i + 1;
+                matches.add(new Match<>(output.keyword, end - output.keyword.length(), end, output.value));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 文本中是否出现任一关键词
+     */
+    public boolean containsAny(String text) {
+        if (text == null || text.isEmpty() || keywordCount == 0) {
+            return false;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        Node<T> node = root;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.failure;
+            }
+            node = node.children.getOrDefault(c, root);
+            if (!node.outputs.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return keywordCount;
+    }
+
+    /**
+     * 匹配结果
+     *
+     * @param keyword 命中的关键词（小写）
+     * @param start 在小写文本中的起始位置
+     * @param end 在小写文本中的结束位置（不含）
+     * @param value 关键词关联的数据
+     */
+    public record Match<T>(String keyword, int start, int end, T value) {
+    }
+
+    public static final class Builder<T> {
+        private final Node<T> root = new Node<>();
+        private int keywordCount;
+
+        private Builder() {
+        }
+
+        /**
+         * 添加关键词，同一关键词可以关联多个数据
+         */
+        public Builder<T> add(String keyword, T value) {
+            if (keyword == null || keyword.isBlank()) {
+                return this;
+            }
+
+            String lower = keyword.toLowerCase(Locale.ROOT);
+            Node<T> node = root;
+            for (int i = 0; i < lower.length(); i++) {
+                node = node.children.computeIfAbsent(lower.charAt(i), c -> new Node<>());
+            }
+            node.outputs.add(new Output<>(lower, value));
+            keywordCount++;
+            return this;
+        }
+
+        public KeywordMatcher<T> build() {
+            // 按层次遍历建立失败指针，并把失败指针指向节点的输出合并进来
+            Queue<Node<T>> queue = new ArrayDeque<>();
+            root.failure = root;
+            for (Node<T> child : root.children.values()) {
+                child.failure = root;
+                queue.add(child);
+            }
+
+            while (!queue.isEmpty()) {
+                Node<T> node = queue.poll();
+                for (Map.Entry<Character, Node<T>> entry : node.children.entrySet()) {
+                    char c = entry.getKey();
+                    Node<T> child = entry.getValue();
+
+                    Node<T> failure = node.failure;
+                    while (failure != root && !failure.children.containsKey(c)) {
+                        failure = failure.failure;
+                    }
+                    Node<T> target = failure.children.get(c);
+                    child.failure = target != null && target != child ? target : root;
+                    child.outputs.addAll(child.failure.outputs);
+                    queue.add(child);
+                }
+            }
+
+            freeze(root);
+            return new KeywordMatcher<>(root, keywordCount);
+        }
+
+        private void freeze(Node<T> root) {
+            Queue<Node<T>> queue = new ArrayDeque<>();
+            queue.add(root);
+            while (!queue.isEmpty()) {
+                Node<T> node = queue.poll();
+                node.outputs = node.outputs.isEmpty() ? List.of() : Collections.unmodifiableList(node.outputs);
+                queue.addAll(node.children.values());
+            }
+        }
+    }
+
+    private static final class Node<T> {
+        private final Map<Character, Node<T>> children = new HashMap<>();
+        private Node<T> failure;
+        private List<Output<T>> outputs = new ArrayList<>();
+    }
+
+    private record Output<T>(String keyword, T value) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 自然语言词汇到数据库表名、列名的映射
+ */
+public final class NaturalLanguageMappings {
+
+    /**
+     * 表名映射，用于将自然语言中的表名映射到实际表名
+     */
+    public static final Map<String, String> TABLE_NAME_MAPPINGS;
+
+    /**
+     * 列名映射，用于将自然语言中的列名映射到实际列名
+     */
+    public static final Map<String, String> COLUMN_NAME_MAPPINGS;
+
+    static {
+        Map<String, String> tableMappings = new HashMap<>();
+        tableMappings.put("部门", "organizations");
+        tableMappings.put("组织", "organizations");
+        tableMappings.put("员工", "employee");
+        tableMappings.put("请假", "hrbp_leave_record");
+        tableMappings.put("加班", "overtime_records");
+        tableMappings.put("异常工时", "exceptional_hours_records");
+        tableMappings.put("门禁", "hrbp_gate_record");
+        tableMappings.put("排班", "hrbp_schedule_shift");
+        tableMappings.put("出差", "hrbp_trip_record");
+        tableMappings.put("连续工作", "consecutive_work_days");
+        TABLE_NAME_MAPPINGS = Collections.unmodifiableMap(tableMappings);
+
+        Map<String, String> columnMappings = new HashMap<>();
+        columnMappings.put("部门名称", "org_name");
+        columnMappings.put("部门代码", "org_code");
+        columnMappings.put("员工ID", "emp_id");
+        columnMappings.put("请假小时数", "leave_hours");
+        columnMappings.put("加班小时数", "overtime_hours");
+        columnMappings.put("状态", "status");
+        columnMappings.put("连续工作天数", "consecutive_days");
+        columnMappings.put("工作日期", "work_date");
+        columnMappings.put("总请假小时数", "total_leave_hours");
+        columnMappings.put("总加班小时数", "total_overtime_hours");
+        columnMappings.put("净加班小时数", "net_overtime_hours");
+        COLUMN_NAME_MAPPINGS = Collections.unmodifiableMap(columnMappings);
+    }
+
+    private NaturalLanguageMappings() {
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.flinkmonitorbackend.utils;
+
+/**
+ * 查询已取消异常
+ * 客户端断开连接或请求超过截止时间后，正在进行的大模型调用和SQL查询以此异常结束
+ */
+public class QueryCancelledException extends RuntimeException {
+
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+}
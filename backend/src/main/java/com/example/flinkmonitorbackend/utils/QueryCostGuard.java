@@ -0,0 +1,355 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaModel;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 查询代价守卫
+ * 执行生成的SQL前先在同一连接上EXPLAIN，估算扫描行数并识别大表全表扫描：
+ * 能通过补充带索引的日期条件（只查最近若干天）降低代价时改写SQL，否则直接拒绝，避免查询占满数据库直到超时
+ */
+@Component
+public class QueryCostGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryCostGuard.class);
+
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 5;
+    private static final Set<String> FULL_SCAN_TYPES = Set.of("ALL", "index");
+
+    private final SqlValidationService sqlValidationService;
+    private final DatabaseMetadataService databaseMetadataService;
+    private final boolean enabled;
+    private final long maxExaminedRows;
+    private final long largeTableRows;
+    private final boolean rewriteEnabled;
+    private final int dateWindowDays;
+
+    public QueryCostGuard(SqlValidationService sqlValidationService,
+                          DatabaseMetadataService databaseMetadataService,
+                          @Value("${nlq.cost-guard.enabled:true}") boolean enabled,
+                          @Value("${nlq.cost-guard.max-examined-rows:1000000}") long maxExaminedRows,
+                          @Value("${nlq.cost-guard.large-table-rows:100000}") long largeTableRows,
+                          @Value("${nlq.cost-guard.rewrite-enabled:true}") boolean rewriteEnabled,
+                          @Value("${nlq.cost-guard.date-window-days:30}") int dateWindowDays) {
+        this.sqlValidationService = sqlValidationService;
+        this.databaseMetadataService = databaseMetadataService;
+        this.enabled = enabled;
+        this.maxExaminedRows = maxExaminedRows;
+        this.largeTableRows = largeTableRows;
+        this.rewriteEnabled = rewriteEnabled;
+        this.dateWindowDays = dateWindowDays;
+    }
+
+    /**
+     * 检查查询代价
+     *
+     * @param conn 将用于执行查询的连接
+     * @param validation 已通过的校验结果，直接使用其中的语法树，不再解析
+     * @return 可以执行的SQL，代价过高但可改写时返回改写后的SQL和改写说明
+     * @throws QueryTooExpensiveException 代价过高且无法改写
+     */
+    public CheckResult check(Connection conn, SqlValidationResult validation) {
+        String sql = validation.requireSanitizedSql();
+        if (!enabled) {
+            return CheckResult.unchanged(sql);
+        }
+
+        Assessment assessment = assess(conn, sql, validation.statement());
+        if (assessment == null || !assessment.isExpensive()) {
+            return CheckResult.unchanged(sql);
+        }
+
+        if (rewriteEnabled) {
+            String rewritten = rewriteWithDatePredicates(sql, assessment.fullScanTables);
+            if (rewritten != null) {
+                // 改写后的SQL同样要通过校验才能执行，代价按校验后的SQL重新评估
+                SqlValidationResult rewrittenValidation = sqlValidationService.validate(rewritten);
+                if (!rewrittenValidation.isAllowed()) {
+                    log.warn("补充日期条件后的SQL未通过校验: {}", rewrittenValidation.rejectionReason());
+                } else {
+                    String validatedSql = rewrittenValidation.sanitizedSql();
+                    Assessment rewrittenAssessment = assess(conn, validatedSql, rewrittenValidation.statement());
+                    if (rewrittenAssessment != null && !rewrittenAssessment.isExpensive()) {
+                        log.info("查询预计扫描{}行，已补充日期条件只查询最近{}天: {}", assessment.examinedRows, dateWindowDays, validatedSql);
+                        return new CheckResult(validatedSql, "查询预计扫描约" + assessment.examinedRows + "行，已自动补充日期条件，只返回最近"
+                                + dateWindowDays + "天的数据");
+                    }
+                }
+            }
+        }
+
+        log.warn("拒绝执行代价过高的查询: 预计扫描{}行, 全表扫描{}, sql={}", assessment.examinedRows, assessment.fullScanTables.keySet(), sql);
+        String fullScanHint = assessment.fullScanTables.isEmpty() ? "" : "，全表扫描: " + String.join("、", assessment.fullScanTables.keySet());
+        throw new QueryTooExpensiveException("查询预计扫描约" + assessment.examinedRows + "行" + fullScanHint
+                + "，请增加时间范围、员工或部门等筛选条件后重试");
+    }
+
+    /**
+     * 按嵌套循环连接估算扫描行数：每张表的扫描行数乘以前面各表过滤后的行数
+     */
+    private Assessment assess(Connection conn, String sql, PlainSelect plainSelect) {
+        if (plainSelect == null) {
+            return null;
+        }
+
+        List<PlanRow> plan;
+        try {
+            plan = explain(conn, sql);
+        } catch (SQLException e) {
+            // 执行计划不可用时不拦截，由执行阶段报告错误
+            log.warn("获取执行计划失败，跳过代价检查: {}", e.getMessage());
+            return null;
+        }
+
+        Map<String, String> aliasToTable = aliasToTable(plainSelect);
+        boolean boundedByLimit = isBoundedByLimit(plainSelect, plan);
+        long limit = plainSelect.getLimit() != null && plainSelect.getLimit().getRowCount() != null
+                ? parseLong(plainSelect.getLimit().getRowCount().toString(), Long.MAX_VALUE)
+                : Long.MAX_VALUE;
+
+        double examined = 0;
+        double outerRows = 1;
+        Map<String, String> fullScanTables = new LinkedHashMap<>();
+        for (PlanRow row : plan) {
+            examined += outerRows * row.rows;
+            outerRows *= Math.max(1, row.rows * row.filtered / 100.0);
+
+            if (FULL_SCAN_TYPES.contains(row.type) && row.rows >= largeTableRows && !boundedByLimit) {
+                String tableName = aliasToTable.getOrDefault(row.table.toLowerCase(Locale.ROOT), row.table.toLowerCase(Locale.ROOT));
+                fullScanTables.put(tableName, row.table);
+            }
+        }
+
+        long examinedRows = boundedByLimit ? Math.min((long) examined, limit) : (long) Math.min(examined, Long.MAX_VALUE);
+        return new Assessment(examinedRows, examinedRows > maxExaminedRows || !fullScanTables.isEmpty(), fullScanTables);
+    }
+
+    /**
+     * 单表、无过滤、无排序分组和聚合的查询读到LIMIT行即停止，全表扫描代价由LIMIT决定
+     */
+    private boolean isBoundedByLimit(PlainSelect plainSelect, List<PlanRow> plan) {
+        if (plan.size() != 1 || plainSelect.getLimit() == null) {
+            return false;
+        }
+        String extra = plan.get(0).extra;
+        if (extra.contains("Using filesort") || extra.contains("Using temporary")) {
+            return false;
+        }
+        return plainSelect.getWhere() == null
+                && plainSelect.getGroupBy() == null
+                && plainSelect.getDistinct() == null
+                && plainSelect.getOrderByElements() == null
+                && !containsFunction(plainSelect.getSelectItems());
+    }
+
+    /**
+     * 为全表扫描的大表补充“最近N天”条件，只使用作为索引第一列且未出现在WHERE中的日期列
+     */
+    private String rewriteWithDatePredicates(String sql, Map<String, String> fullScanTables) {
+        if (fullScanTables.isEmpty()) {
+            return null;
+        }
+
+        // 校验结果中的语法树被缓存共享，改写在单独解析的副本上进行；只有代价过高的查询才会走到这里
+        PlainSelect plainSelect = parse(sql);
+        if (plainSelect == null) {
+            return null;
+        }
+
+        Set<String> whereColumns = new HashSet<>();
+        if (plainSelect.getWhere() != null) {
+            plainSelect.getWhere().accept(new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    whereColumns.add(column.getColumnName().toLowerCase(Locale.ROOT));
+                }
+            });
+        }
+
+        List<String> predicates = new ArrayList<>();
+        for (Map.Entry<String, String> entry : fullScanTables.entrySet()) {
+            String dateColumn = findIndexedDateColumn(entry.getKey());
+            if (dateColumn == null || whereColumns.contains(dateColumn)) {
+                return null;
+            }
+            predicates.add(entry.getValue() + "." + dateColumn + " >= CURRENT_DATE - INTERVAL " + dateWindowDays + " DAY");
+        }
+
+        String condition = String.join(" AND ", predicates);
+        try {
+            Expression where = plainSelect.getWhere() == null
+                    ? CCJSqlParserUtil.parseCondExpression(condition)
+                    : CCJSqlParserUtil.parseCondExpression("(" + plainSelect.getWhere() + ") AND " + condition);
+            plainSelect.setWhere(where);
+            return plainSelect.toString();
+        } catch (JSQLParserException e) {
+            log.warn("补充日期条件失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 从数据库结构模型中查找作为索引第一列的日期列
+     */
+    private String findIndexedDateColumn(String tableName) {
+        // 只使用查询白名单中的列，与SQL校验保持一致
+        List<String> allowed = sqlValidationService.getAllowedColumns(tableName);
+        return databaseMetadataService.getSchemaModel().table(tableName)
+                .flatMap(table -> table.columns().stream()
+                        .filter(SchemaModel.ColumnInfo::isTemporal)
+                        .map(column -> column.name().toLowerCase(Locale.ROOT))
+                        .filter(table.indexLeadingColumns()::contains)
+                        .filter(allowed::contains)
+                        .findFirst())
+                .orElse(null);
+    }
+
+    private List<PlanRow> explain(Connection conn, String sql) throws SQLException {
+        List<PlanRow> plan = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            stmt.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Set<String> labels = columnLabels(rs.getMetaData());
+                while (rs.next()) {
+                    String table = rs.getString("table");
+                    plan.add(new PlanRow(
+                            table == null ? "" : table,
+                            String.valueOf(rs.getString("type")),
+                            parseLong(rs.getString("rows"), 0L),
+                            labels.contains("filtered") ? parseDouble(rs.getString("filtered"), 100.0) : 100.0,
+                            labels.contains("extra") && rs.getString("Extra") != null ? rs.getString("Extra") : ""));
+                }
+            }
+        }
+        return plan;
+    }
+
+    private static Set<String> columnLabels(ResultSetMetaData metaData) throws SQLException {
+        Set<String> labels = new LinkedHashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            labels.add(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT));
+        }
+        return labels;
+    }
+
+    private static PlainSelect parse(String sql) {
+        try {
+            Statement statement = CCJSqlParserUtil.parse(sql);
+            return statement instanceof PlainSelect plainSelect ? plainSelect : null;
+        } catch (JSQLParserException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> aliasToTable(PlainSelect plainSelect) {
+        Map<String, String> aliasToTable = new LinkedHashMap<>();
+        registerTable(aliasToTable, plainSelect.getFromItem());
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                registerTable(aliasToTable, join.getRightItem());
+            }
+        }
+        return aliasToTable;
+    }
+
+    private static void registerTable(Map<String, String> aliasToTable, Object fromItem) {
+        if (fromItem instanceof Table table) {
+            String tableName = table.getName().toLowerCase(Locale.ROOT);
+            aliasToTable.put(tableName, tableName);
+            if (table.getAlias() != null) {
+                aliasToTable.put(table.getAlias().getName().toLowerCase(Locale.ROOT), tableName);
+            }
+        }
+    }
+
+    private static boolean containsFunction(List<SelectItem<?>> selectItems) {
+        boolean[] found = {false};
+        ExpressionVisitorAdapter visitor = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Function function) {
+                found[0] = true;
+            }
+        };
+        for (SelectItem<?> item : selectItems) {
+            if (item.getExpression() != null) {
+                item.getExpression().accept(visitor);
+            }
+        }
+        return found[0];
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 代价检查的结论
+     *
+     * @param sql 可以执行的SQL
+     * @param rewriteMessage SQL被改写时说明改写的内容，未改写时为null
+     */
+    public record CheckResult(String sql, String rewriteMessage) {
+
+        static CheckResult unchanged(String sql) {
+            return new CheckResult(sql, null);
+        }
+
+        public boolean rewritten() {
+            return rewriteMessage != null;
+        }
+    }
+
+    private record PlanRow(String table, String type, long rows, double filtered, String extra) {
+    }
+
+    /**
+     * 代价评估结果
+     *
+     * @param examinedRows 预计扫描行数
+     * @param isExpensive 是否超出限制
+     * @param fullScanTables 被全表扫描的大表，表名 -> 执行计划中的表名或别名
+     */
+    private record Assessment(long examinedRows, boolean isExpensive, Map<String, String> fullScanTables) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL执行结果
+ * 除查询到的行外还带有实际执行的SQL：代价过高的查询可能被改写后才执行，调用方需要如实告知用户
+ *
+ * @param rows 查询到的行
+ * @param executedSql 实际执行的SQL
+ * @param rewriteMessage SQL被改写时说明改写的内容，未改写时为null
+ */
+public record QueryResult(List<Map<String, Object>> rows, String executedSql, String rewriteMessage) {
+
+    /**
+     * 实际执行的SQL是否经过改写
+     */
+    public boolean rewritten() {
+        return rewriteMessage != null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.flinkmonitorbackend.utils;
+
+/**
+ * 查询代价超限异常
+ * 执行计划显示查询会扫描过多数据时在执行前拒绝，属于SQL拒绝执行的一种，控制器按400返回
+ */
+public class QueryTooExpensiveException extends SecurityException {
+
+    public QueryTooExpensiveException(String message) {
+        super(message);
+    }
+}
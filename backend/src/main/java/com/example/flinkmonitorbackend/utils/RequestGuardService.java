@@ -1,94 +1,271 @@
 package com.example.flinkmonitorbackend.utils;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 @Component
 public class RequestGuardService {
 
     private static final Logger log = LoggerFactory.getLogger(RequestGuardService.class);
 
-    private static final int MAX_REQUESTS_PER_WINDOW = 30;
-    private static final long WINDOW_MS = 10_000L;
-    private static final long CACHE_TTL_MS = 60_000L;
+    private static final Tags CACHE_TAGS = Tags.of("cache", "idempotent-response");
 
-    private final ConcurrentHashMap<String, RequestWindow> requestWindows = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, CachedResponse> idempotentCache = new ConcurrentHashMap<>();
+    private final Environment environment;
+    // 单调时钟，纳秒
+    private final LongSupplier nanoClock;
+    private final EndpointLimit defaultLimit;
+    // 接口 -> 该接口的限流配置和各客户端的令牌桶
+    private final ConcurrentHashMap<String, EndpointLimiter> limiters = new ConcurrentHashMap<>();
+    // 幂等响应缓存，按条目数和估算的响应大小限制容量
+    private final ExpiringLruCache<CacheKey, Map<String, Object>> idempotentCache;
 
-    public boolean tryAcquire(String key) {
-        RequestWindow window = requestWindows.computeIfAbsent(key, k -> new RequestWindow());
-        boolean allowed = window.tryAcquire(MAX_REQUESTS_PER_WINDOW, WINDOW_MS);
+    @Autowired
+    public RequestGuardService(Environment environment, MeterRegistry meterRegistry) {
+        this(environment, meterRegistry, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 限流使用的单调时钟，单位纳秒，测试中可替换为手动推进的时钟
+     */
+    RequestGuardService(Environment environment, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.environment = environment;
+        this.nanoClock = nanoClock;
+        this.defaultLimit = new EndpointLimit(
+                environment.getProperty("nlq.rate-limit.capacity", Integer.class, 30),
+                environment.getProperty("nlq.rate-limit.refill-per-second", Double.class, 3.0));
+        this.idempotentCache = new ExpiringLruCache<>(
+                environment.getProperty("nlq.idempotent-cache.max-entries", Integer.class, 1000),
+                environment.getProperty("nlq.idempotent-cache.max-weight-bytes", Long.class, 64L * 1024 * 1024),
+                environment.getProperty("nlq.idempotent-cache.ttl-ms", Long.class, 60_000L),
+                RequestGuardService::estimateSize);
+        registerCacheMetrics(meterRegistry);
+    }
+
+    /**
+     * 按客户端和接口限流
+     * 每个客户端在每个接口上有一个令牌桶，容量即允许的突发请求数，令牌按固定速率补充；
+     * 接口可通过 nlq.rate-limit.endpoints.<接口>.capacity / refill-per-second 单独配置
+     *
+     * @param clientKey 客户端标识
+     * @param endpoint 接口名称
+     * @return 是否放行
+     */
+    public boolean tryAcquire(String clientKey, String endpoint) {
+        EndpointLimiter limiter = limiters.computeIfAbsent(endpoint, this::createLimiter);
+        boolean allowed = limiter.tryAcquire(clientKey, nanoClock.getAsLong());
         if (!allowed) {
-            log.warn("触发速率限制，clientKey={} 当前窗口请求数={}", key, window.getCount());
+            log.warn("触发速率限制，clientKey={} endpoint={} 容量={} 每秒补充={}",
+                    clientKey, endpoint, limiter.limit.capacity(), limiter.limit.refillPerSecond());
         }
         return allowed;
     }
 
-    public Optional<Map<String, Object>> getCachedResponse(String cacheKey) {
-        CachedResponse cached = idempotentCache.get(cacheKey);
-        if (cached == null) {
-            return Optional.empty();
+    /**
+     * 定期移除令牌已经补满的桶：补满的桶与新建的桶等价，移除不影响限流结果，
+     * 内存只与最近仍在消耗令牌的客户端数量有关，不会随扫描式的大量一次性客户端增长
+     */
+    @Scheduled(fixedDelayString = "${nlq.rate-limit.sweep-interval-ms:30000}")
+    public void evictIdleClients() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (EndpointLimiter limiter : limiters.values()) {
+            evicted += limiter.evictFull(now);
         }
-
-        if (System.currentTimeMillis() - cached.timestamp > CACHE_TTL_MS) {
-            idempotentCache.remove(cacheKey);
-            return Optional.empty();
+        if (evicted > 0) {
+            log.debug("清理空闲的限流客户端 {} 个", evicted);
         }
+    }
 
-        return Optional.of(cached.body);
+    /**
+     * 当前保存了令牌桶的客户端数，各接口分别计数
+     */
+    int trackedClients() {
+        return limiters.values().stream().mapToInt(limiter -> limiter.buckets.size()).sum();
     }
 
-    public void cacheResponse(String cacheKey, Map<String, Object> responseBody) {
-        idempotentCache.put(cacheKey, new CachedResponse(responseBody, System.currentTimeMillis()));
+    private EndpointLimiter createLimiter(String endpoint) {
+        String prefix = "nlq.rate-limit.endpoints." + endpoint + ".";
+        EndpointLimit limit = new EndpointLimit(
+                environment.getProperty(prefix + "capacity", Integer.class, defaultLimit.capacity()),
+                environment.getProperty(prefix + "refill-per-second", Double.class, defaultLimit.refillPerSecond()));
+        return new EndpointLimiter(limit);
     }
 
-    public String buildCacheKey(String clientKey, String operation, String payload) {
-        String seed = clientKey + ":" + operation + ":" + payload;
-        return digest(seed);
+    public Optional<Map<String, Object>> getCachedResponse(CacheKey cacheKey) {
+        return idempotentCache.get(cacheKey);
     }
 
-    private String digest(String seed) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(seed.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("无法初始化摘要算法", e);
+    public void cacheResponse(CacheKey cacheKey, Map<String, Object> responseBody) {
+        idempotentCache.put(cacheKey, responseBody);
+    }
+
+    /**
+     * 定期清理过期的响应，不依赖同一个key再次被读取
+     */
+    @Scheduled(fixedDelayString = "${nlq.idempotent-cache.sweep-interval-ms:30000}")
+    public void evictExpiredResponses() {
+        int removed = idempotentCache.removeExpired();
+        if (removed > 0) {
+            log.debug("清理过期的幂等响应 {} 个", removed);
         }
     }
 
-    private static class RequestWindow {
-        private final AtomicInteger counter = new AtomicInteger(0);
-        private volatile long windowStart = System.currentTimeMillis();
+    /**
+     * 按Micrometer缓存指标的命名导出，可通过 /actuator/metrics/cache.gets 等查看
+     */
+    private void registerCacheMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("cache.size", idempotentCache, ExpiringLruCache::size)
+                .tags(CACHE_TAGS).description("缓存的响应数").register(meterRegistry);
+        Gauge.builder("cache.weight", idempotentCache, ExpiringLruCache::weight)
+                .tags(CACHE_TAGS).baseUnit("bytes").description("缓存响应的估算大小").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", idempotentCache, ExpiringLruCache::hitCount)
+                .tags(CACHE_TAGS).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", idempotentCache, ExpiringLruCache::missCount)
+                .tags(CACHE_TAGS).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", idempotentCache, ExpiringLruCache::evictionCount)
+                .tags(CACHE_TAGS).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", idempotentCache, ExpiringLruCache::expiredCount)
+                .tags(CACHE_TAGS).tag("cause", "expired").register(meterRegistry);
+    }
 
-        boolean tryAcquire(int limit, long windowMs) {
-            synchronized (this) {
-                long now = System.currentTimeMillis();
-                if (now - windowStart > windowMs) {
-                    windowStart = now;
-                    counter.set(0);
-                }
+    /**
+     * 粗略估算响应占用的堆内存字节数，只用于缓存容量控制
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40;
+            for (Object element : collection) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        }
+        if (value instanceof Object[] array) {
+            long size = 16;
+            for (Object element : array) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        }
+        // 数字、日期、布尔等小对象
+        return 24;
+    }
+
+    public CacheKey buildCacheKey(String clientKey, String operation, String payload) {
+        return CacheKey.of(clientKey, operation, payload);
+    }
 
-                counter.incrementAndGet();
-                return counter.get() <= limit;
+    /**
+     * 请求内容由多个字段组成时使用，各字段分别参与摘要，不会因拼接而与其他字段组合冲突
+     */
+    public CacheKey buildCacheKey(String clientKey, String operation, String... fields) {
+        return CacheKey.of(clientKey, operation, fields);
+    }
+
+    /**
+     * 限流配置
+     *
+     * @param capacity 令牌桶容量，即允许的突发请求数
+     * @param refillPerSecond 每秒补充的令牌数
+     */
+    private record EndpointLimit(int capacity, double refillPerSecond) {
+
+        EndpointLimit {
+            if (capacity < 1 || refillPerSecond <= 0) {
+                throw new IllegalArgumentException("限流配置无效: capacity=" + capacity + ", refillPerSecond=" + refillPerSecond);
             }
         }
+    }
+
+    /**
+     * 单个接口的限流器，按客户端保存令牌桶
+     */
+    private static final class EndpointLimiter {
+        private final EndpointLimit limit;
+        // 补充一个令牌所需的时间
+        private final long intervalNanos;
+        // 桶满时可以提前消耗的时间，即容量减一个令牌对应的时间
+        private final long burstNanos;
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+        EndpointLimiter(EndpointLimit limit) {
+            this.limit = limit;
+            this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / limit.refillPerSecond()));
+            this.burstNanos = intervalNanos * (limit.capacity() - 1);
+        }
 
-        int getCount() {
-            return counter.get();
+        boolean tryAcquire(String clientKey, long now) {
+            return buckets.computeIfAbsent(clientKey, key -> new TokenBucket(now))
+                    .tryAcquire(now, intervalNanos, burstNanos);
+        }
+
+        int evictFull(long now) {
+            int evicted = 0;
+            for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+                // 与并发请求竞争时最多多放行一个请求，换取清理不加锁
+                if (entry.getValue().isFull(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+            return evicted;
         }
     }
 
-    private record CachedResponse(Map<String, Object> body, long timestamp) {
+    /**
+     * 令牌桶，以理论到达时间表示（GCRA算法）：每放行一个请求把该时间推后一个补充间隔，
+     * 该时间超前当前时间不超过桶容量对应的时长即可放行。状态只有一个long，通过CAS无锁更新
+     */
+    private static final class TokenBucket {
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+        }
+
+        boolean tryAcquire(long now, long intervalNanos, long burstNanos) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                // nanoTime可能溢出，只比较差值
+                long base = arrival - now > 0 ? arrival : now;
+                if (base - now > burstNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return theoreticalArrival.get() - now <= 0;
+        }
     }
 }
@@ -0,0 +1,268 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 查询结果摘要工具
+ * 将查询结果压缩为列统计信息和少量代表性样例行，控制评估提示词的长度，
+ * 使大模型评估的耗时与结果集大小无关
+ */
+@Component
+public class ResultSummarizer {
+
+    private static final int TOP_K = 5;
+    private static final int MAX_TRACKED_DISTINCT = 1000;
+    private static final int MAX_VALUE_LENGTH = 50;
+
+    private final int tokenBudget;
+    private final int maxSampleRows;
+
+    public ResultSummarizer(@Value("${llm.evaluation.token-budget:1200}") int tokenBudget,
+                            @Value("${llm.evaluation.sample-rows:5}") int maxSampleRows) {
+        this.tokenBudget = tokenBudget;
+        this.maxSampleRows = maxSampleRows;
+    }
+
+    /**
+     * 生成查询结果摘要
+     *
+     * @param results 查询结果，通常为行列表，也可能是API调用返回的任意对象
+     * @return 长度受token预算约束的摘要文本
+     */
+    public String summarize(Object results) {
+        if (results == null) {
+            return "查询结果为空";
+        }
+
+        if (results instanceof Collection<?> rows) {
+            if (rows.isEmpty()) {
+                return "查询结果为空（0行）";
+            }
+            if (rows.stream().allMatch(row -> row instanceof Map<?, ?>)) {
+                return summarizeRows(new ArrayList<>(rows));
+            }
+        }
+
+        // 非表格结构的结果（如API返回值）直接截断
+        return truncateToBudget(String.valueOf(results), tokenBudget);
+    }
+
+    private String summarizeRows(List<?> rows) {
+        Map<String, ColumnStats> columns = new LinkedHashMap<>();
+        for (Object rowObj : rows) {
+            Map<?, ?> row = (Map<?, ?>) rowObj;
+            for (Map.Entry<?, ?> entry : row.entrySet()) {
+                String columnName = String.valueOf(entry.getKey());
+                columns.computeIfAbsent(columnName, ColumnStats::new).accept(entry.getValue());
+            }
+        }
+
+        // 某些行可能缺少列，缺失按空值计
+        for (ColumnStats stats : columns.values()) {
+            stats.nulls += rows.size() - stats.nonNull - stats.nulls;
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append("共").append(rows.size()).append("行，").append(columns.size()).append("列。\n");
+        summary.append("列统计：\n");
+
+        int used = estimateTokens(summary);
+        int omittedColumns = 0;
+        for (ColumnStats stats : columns.values()) {
+            String line = stats.describe(rows.size());
+            int cost = estimateTokens(line);
+            if (used + cost > tokenBudget) {
+                omittedColumns++;
+                continue;
+            }
+            summary.append(line);
+            used += cost;
+        }
+        if (omittedColumns > 0) {
+            summary.append("（另有").append(omittedColumns).append("列因长度限制省略）\n");
+        }
+
+        List<String> samples = new ArrayList<>();
+        for (int index : sampleIndexes(rows.size())) {
+            String line = "- " + truncate(String.valueOf(rows.get(index)), MAX_VALUE_LENGTH * 4) + "\n";
+            int cost = estimateTokens(line);
+            if (used + cost > tokenBudget) {
+                break;
+            }
+            samples.add(line);
+            used += cost;
+        }
+
+        if (!samples.isEmpty()) {
+            summary.append("样例数据（展示").append(samples.size()).append("行）：\n");
+            samples.forEach(summary::append);
+        }
+
+        return summary.toString();
+    }
+
+    /**
+     * 选取首行、末行以及均匀分布的中间行作为样例
+     */
+    private Set<Integer> sampleIndexes(int rowCount) {
+        Set<Integer> indexes = new LinkedHashSet<>();
+        if (maxSampleRows <= 0) {
+            return indexes;
+        }
+
+        int count = Math.min(maxSampleRows, rowCount);
+        if (count == 1) {
+            indexes.add(0);
+            return indexes;
+        }
+
+        for (int i = 0; i < count; i++) {
+            indexes.add((int) Math.round((double) i * (rowCount - 1) / (count - 1)));
+        }
+        return indexes;
+    }
+
+    private String truncateToBudget(String text, int budget) {
+        if (estimateTokens(text) <= budget) {
+            return text;
+        }
+
+        StringBuilder truncated = new StringBuilder();
+        int used = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            used += isWideChar(c) ? 4 : 1;
+            if (used > budget * 4) {
+                break;
+            }
+            truncated.append(c);
+        }
+        return truncated.append("...（结果过长已截断）").toString();
+    }
+
+    /**
+     * 粗略估算token数：中文等宽字符约1个token，其余字符约4个一个token
+     */
+    static int estimateTokens(CharSequence text) {
+        int narrow = 0;
+        int wide = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isWideChar(text.charAt(i))) {
+                wide++;
+            } else {
+                narrow++;
+            }
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    private static boolean isWideChar(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN || c > 0xFF00;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value.length() <= maxLength ? value : value.substring(0, maxLength) + "...";
+    }
+
+    private static final class ColumnStats {
+        private final String name;
+        private long nonNull;
+        private long nulls;
+        private Object min;
+        private Object max;
+        private final Map<String, Integer> frequencies = new HashMap<>();
+        private boolean distinctOverflow;
+
+        ColumnStats(String name) {
+            this.name = name;
+        }
+
+        void accept(Object value) {
+            if (value == null) {
+                nulls++;
+                return;
+            }
+
+            nonNull++;
+            updateRange(value);
+
+            String key = truncate(String.valueOf(value), MAX_VALUE_LENGTH);
+            Integer count = frequencies.get(key);
+            if (count != null) {
+                frequencies.put(key, count + 1);
+            } else if (frequencies.size() < MAX_TRACKED_DISTINCT) {
+                frequencies.put(key, 1);
+            } else {
+                distinctOverflow = true;
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void updateRange(Object value) {
+            if (min == null) {
+                min = value;
+                max = value;
+                return;
+            }
+
+            if (value instanceof Number number && min instanceof Number currentMin && max instanceof Number currentMax) {
+                double v = number.doubleValue();
+                if (v < currentMin.doubleValue()) {
+                    min = value;
+                }
+                if (v > currentMax.doubleValue()) {
+                    max = value;
+                }
+                return;
+            }
+
+            if (value instanceof Comparable comparable && value.getClass() == min.getClass()) {
+                if (comparable.compareTo(min) < 0) {
+                    min = value;
+                }
+                if (comparable.compareTo(max) > 0) {
+                    max = value;
+                }
+            }
+        }
+
+        String describe(long rowCount) {
+            StringBuilder line = new StringBuilder("- ").append(name).append("：");
+            line.append("非空").append(nonNull);
+            line.append("，空值率").append(String.format("%.1f%%", rowCount == 0 ? 0.0 : nulls * 100.0 / rowCount));
+            line.append("，不同值").append(distinctOverflow ? ">" : "").append(frequencies.size());
+
+            if (min != null) {
+                line.append("，最小值").append(truncate(String.valueOf(min), MAX_VALUE_LENGTH));
+                line.append("，最大值").append(truncate(String.valueOf(max), MAX_VALUE_LENGTH));
+            }
+
+            // 每个值都唯一时高频值没有参考意义
+            if (frequencies.size() < nonNull) {
+                List<Map.Entry<String, Integer>> top = frequencies.entrySet().stream()
+                        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                        .limit(TOP_K)
+                        .toList();
+                line.append("，高频值：");
+                for (int i = 0; i < top.size(); i++) {
+                    if (i > 0) {
+                        line.append("、");
+                    }
+                    line.append(top.get(i).getKey()).append("(").append(top.get(i).getValue()).append(")");
+                }
+            }
+
+            return line.append("\n").toString();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 表名、列名关键词索引
+ * 把中英文表名同义词、列名同义词、实际表名和表注释编译为一个多关键词匹配器，
+ * 一次扫描查询文本即可得到其中提到的全部表和列
+ */
+@Component
+public class SchemaKeywordIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaKeywordIndex.class);
+
+    // 数据库不可用时只使用静态映射，间隔一段时间再尝试加入数据库结构
+    private static final long SCHEMA_RETRY_INTERVAL_MS = 60_000L;
+
+    private static final KeywordMatcher<SchemaEntity> STATIC_MATCHER = newBuilder().build();
+
+    private final SchemaPromptCache schemaPromptCache;
+    private volatile Compiled compiled;
+
+    public SchemaKeywordIndex(SchemaPromptCache schemaPromptCache) {
+        this.schemaPromptCache = schemaPromptCache;
+    }
+
+    /**
+     * 查询中出现的全部实体，按结束位置排序
+     */
+    public List<KeywordMatcher.Match<SchemaEntity>> match(String query) {
+        return getMatcher().findAll(query);
+    }
+
+    /**
+     * 查询中提到的表，按在查询中首次出现的位置排序，同一位置优先更长的关键词
+     */
+    public List<String> findTables(String query) {
+        List<KeywordMatcher.Match<SchemaEntity>> tableMatches = new ArrayList<>();
+        for (KeywordMatcher.Match<SchemaEntity> match : match(query)) {
+            if (match.value().type() == EntityType.TABLE) {
+                tableMatches.add(match);
+            }
+        }
+        tableMatches.sort(Comparator.<KeywordMatcher.Match<SchemaEntity>>comparingInt(KeywordMatcher.Match::start)
+                .thenComparing(match -> -match.keyword().length()));
+
+        Set<String> tables = new LinkedHashSet<>();
+        tableMatches.forEach(match -> tables.add(match.value().name()));
+        return new ArrayList<>(tables);
+    }
+
+    /**
+     * 查询中最先提到的表
+     */
+    public Optional<String> findFirstTable(String query) {
+        return findTables(query).stream().findFirst();
+    }
+
+    /**
+     * 查询中提到的列
+     */
+    public Set<String> findColumns(String query) {
+        Set<String> columns = new LinkedHashSet<>();
+        for (KeywordMatcher.Match<SchemaEntity> match : match(query)) {
+            if (match.value().type() == EntityType.COLUMN) {
+                columns.add(match.value().name());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 查询中是否提到任何表
+     */
+    public boolean mentionsTable(String query) {
+        return !findTables(query).isEmpty();
+    }
+
+    private KeywordMatcher<SchemaEntity> getMatcher() {
+        Compiled current = compiled;
+        long now = System.currentTimeMillis();
+
+        // 数据库不可用时构建的静态匹配器，在重试间隔内直接使用
+        if (current != null && current.snapshot == null && now - current.builtAt < SCHEMA_RETRY_INTERVAL_MS) {
+            return current.matcher;
+        }
+
+        SchemaPromptCache.SchemaSnapshot snapshot;
+        try {
+            snapshot = schemaPromptCache.getSnapshot();
+        } catch (RuntimeException e) {
+            log.warn("获取数据库结构失败，关键词索引只使用静态映射: {}", e.getMessage());
+            compiled = new Compiled(null, STATIC_MATCHER, now);
+            return STATIC_MATCHER;
+        }
+
+        // 结构快照刷新后重新编译
+        if (current == null || current.snapshot != snapshot) {
+            current = new Compiled(snapshot, build(snapshot), now);
+            compiled = current;
+        }
+        return current.matcher;
+    }
+
+    private static KeywordMatcher<SchemaEntity> build(SchemaPromptCache.SchemaSnapshot snapshot) {
+        KeywordMatcher.Builder<SchemaEntity> builder = newBuilder();
+
+        for (String table : snapshot.tableDescriptions().keySet()) {
+            builder.add(table, SchemaEntity.table(table));
+        }
+
+        for (Map.Entry<String, String> entry : snapshot.tableRemarks().entrySet()) {
+            String keyword = remarkKeyword(entry.getValue());
+            if (keyword != null) {
+                builder.add(keyword, SchemaEntity.table(entry.getKey()));
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static KeywordMatcher.Builder<SchemaEntity> newBuilder() {
+        KeywordMatcher.Builder<SchemaEntity> builder = KeywordMatcher.builder();
+        NaturalLanguageMappings.TABLE_NAME_MAPPINGS.forEach((synonym, table) -> builder.add(synonym, SchemaEntity.table(table)));
+        NaturalLanguageMappings.COLUMN_NAME_MAPPINGS.forEach((synonym, column) -> {
+            builder.add(synonym, SchemaEntity.column(column));
+            builder.add(column, SchemaEntity.column(column));
+        });
+        return builder;
+    }
+
+    /**
+     * 从表注释中提取关键词：取第一个标点前的部分并去掉末尾的“表”字，如“请假记录表（按天）”提取为“请假记录”
+     */
+    static String remarkKeyword(String remarks) {
+        String keyword = remarks.trim().split("[\\p{P}\\s]", 2)[0];
+        if (keyword.endsWith("表")) {
+            keyword = keyword.substring(0, keyword.length() - 1);
+        }
+        return keyword.length() >= 2 ? keyword : null;
+    }
+
+    public enum EntityType {
+        TABLE,
+        COLUMN
+    }
+
+    /**
+     * 关键词对应的数据库实体
+     *
+     * @param type 实体类型
+     * @param name 表名或列名
+     */
+    public record SchemaEntity(EntityType type, String name) {
+
+        static SchemaEntity table(String name) {
+            return new SchemaEntity(EntityType.TABLE, name);
+        }
+
+        static SchemaEntity column(String name) {
+            return new SchemaEntity(EntityType.COLUMN, name);
+        }
+    }
+
+    private record Compiled(SchemaPromptCache.SchemaSnapshot snapshot, KeywordMatcher<SchemaEntity> matcher, long builtAt) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaChangedEvent;
+import com.example.flinkmonitorbackend.service.SchemaModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 数据库结构提示词缓存
+ * 将数据库结构模型预先编译为大模型提示词片段，生成SQL时直接读取；数据库结构变更时重建，
+ * 关键词索引和表检索索引随快照一起重新编译
+ */
+@Component
+public class SchemaPromptCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaPromptCache.class);
+
+    private static final String HEADER = "数据库包含以下主要表：\n\n";
+
+    private final DatabaseMetadataService databaseMetadataService;
+    private final AtomicReference<SchemaSnapshot> snapshot = new AtomicReference<>();
+
+    public SchemaPromptCache(DatabaseMetadataService databaseMetadataService) {
+        this.databaseMetadataService = databaseMetadataService;
+    }
+
+    /**
+     * 获取完整的数据库结构提示词，包括表结构和表关系
+     */
+    public String getPromptFragment() {
+        return getSnapshot().fullPrompt();
+    }
+
+    /**
+     * 获取当前的结构快照，首次访问时构建
+     */
+    public SchemaSnapshot getSnapshot() {
+        SchemaSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot.get();
+            if (current == null) {
+                current = buildSnapshot();
+                snapshot.set(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 按当前的数据库结构模型重建提示词，构建失败时保留旧快照
+     */
+    @EventListener(SchemaChangedEvent.class)
+    public void refresh() {
+        try {
+            SchemaSnapshot refreshed = buildSnapshot();
+            snapshot.set(refreshed);
+            log.info("数据库结构提示词已刷新，共{}张表", refreshed.tableDescriptions().size());
+        } catch (Exception e) {
+            log.warn("刷新数据库结构提示词失败，继续使用旧快照: {}", e.getMessage());
+        }
+    }
+
+    private SchemaSnapshot buildSnapshot() {
+        Map<String, String> tableDescriptions = new LinkedHashMap<>(databaseMetadataService.getTableDescriptions());
+        String relationships = databaseMetadataService.getTableRelationships();
+
+        Map<String, String> tableRemarks = new LinkedHashMap<>();
+        for (Map<String, Object> table : databaseMetadataService.getAllTables()) {
+            String remarks = (String) table.get("remarks");
+            if (remarks != null && !remarks.isBlank()) {
+                tableRemarks.put((String) table.get("tableName"), remarks);
+            }
+        }
+
+        StringBuilder fullPrompt = new StringBuilder(HEADER);
+        tableDescriptions.values().forEach(fullPrompt::append);
+        fullPrompt.append("\n").append(relationships);
+
+        Map<String, Set<String>> joinedTables = inferJoinedTables(databaseMetadataService.getSchemaModel(),
+                tableDescriptions.keySet());
+
+        return new SchemaSnapshot(Collections.unmodifiableMap(tableDescriptions), Collections.unmodifiableMap(tableRemarks),
+                relationships, Collections.unmodifiableMap(joinedTables), fullPrompt.toString(), System.currentTimeMillis());
+    }
+
+    /**
+     * 按列名约定推断表之间的关联：xxx_id列关联主键为id、且表名中有以xxx开头的单词的表，
+     * 如org_id关联organizations；匹配到多张表时无法确定，不记录关联
+     *
+     * @param model 数据库结构模型
+     * @param tables 参与推断的表
+     * @return 表名到它通过外键列关联的表
+     */
+    static Map<String, Set<String>> inferJoinedTables(SchemaModel model, Set<String> tables) {
+        Map<String, Set<String>> joinedTables = new LinkedHashMap<>();
+        for (SchemaModel.TableInfo table : model.tables()) {
+            if (!tables.contains(table.name())) {
+                continue;
+            }
+
+            Set<String> targets = new LinkedHashSet<>();
+            for (SchemaModel.ColumnInfo column : table.columns()) {
+                String columnName = column.name().toLowerCase(Locale.ROOT);
+                String prefix = columnName.endsWith("_id") ? columnName.substring(0, columnName.length() - 3) : "";
+                if (prefix.length() < 2) {
+                    continue;
+                }
+
+                List<String> candidates = model.tables().stream()
+                        .filter(other -> other != table && tables.contains(other.name()))
+                        .filter(other -> other.primaryKeys().size() == 1 && other.primaryKeys().get(0).equalsIgnoreCase("id"))
+                        .filter(other -> Arrays.stream(other.name().toLowerCase(Locale.ROOT).split("_"))
+                                .anyMatch(word -> word.startsWith(prefix)))
+                        .map(SchemaModel.TableInfo::name)
+                        .toList();
+                if (candidates.size() == 1) {
+                    targets.add(candidates.get(0));
+                }
+            }
+
+            if (!targets.isEmpty()) {
+                joinedTables.put(table.name(), Collections.unmodifiableSet(targets));
+            }
+        }
+        return joinedTables;
+    }
+
+    /**
+     * 数据库结构快照
+     *
+     * @param tableDescriptions 按表顺序排列的表描述
+     * @param tableRemarks 表注释，只包含有注释的表
+     * @param relationships 表关系描述
+     * @param joinedTables 表名到它通过外键列关联的表，由列名约定推断
+     * @param fullPrompt 预先拼接好的完整提示词片段
+     * @param builtAt 构建时间
+     */
+    public record SchemaSnapshot(Map<String, String> tableDescriptions, Map<String, String> tableRemarks,
+                                 String relationships, Map<String, Set<String>> joinedTables,
+                                 String fullPrompt, long builtAt) {
+    }
+}
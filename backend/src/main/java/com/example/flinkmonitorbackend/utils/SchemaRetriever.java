@@ -0,0 +1,224 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 数据库结构检索
+ * 根据查询内容对表进行相关性排序，只把最相关的几张表的结构放入大模型提示词
+ */
+@Component
+public class SchemaRetriever {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaRetriever.class);
+
+    private static final String HEADER = "数据库包含以下主要表：\n\n";
+
+    // 同义词命中表名或查询直接提到表名时的权重，远高于普通词汇重叠
+    private static final double TABLE_MAPPING_WEIGHT = 10.0;
+    private static final double COLUMN_MAPPING_WEIGHT = 3.0;
+
+    private final SchemaPromptCache schemaPromptCache;
+    private final SchemaKeywordIndex schemaKeywordIndex;
+    private final int topK;
+    private volatile LexicalIndex index;
+
+    public SchemaRetriever(SchemaPromptCache schemaPromptCache,
+                           SchemaKeywordIndex schemaKeywordIndex,
+                           @Value("${nlq.schema-retrieval.top-k:3}") int topK) {
+        this.schemaPromptCache = schemaPromptCache;
+        this.schemaKeywordIndex = schemaKeywordIndex;
+        this.topK = topK;
+    }
+
+    /**
+     * 获取与查询相关的数据库结构提示词
+     * 包含最相关的前K张表以及它们关联的表，没有任何表与查询相关时返回完整的结构描述
+     *
+     * @param naturalLanguageQuery 自然语言查询
+     * @return 数据库结构提示词片段
+     */
+    public String getRelevantSchemaPrompt(String naturalLanguageQuery) {
+        SchemaPromptCache.SchemaSnapshot snapshot = schemaPromptCache.getSnapshot();
+        Set<String> tables = selectTables(naturalLanguageQuery, snapshot);
+        if (tables.isEmpty()) {
+            return snapshot.fullPrompt();
+        }
+
+        StringBuilder prompt = new StringBuilder(HEADER);
+        // 保持原有的表顺序，使同一组表生成的提示词完全一致
+        for (Map.Entry<String, String> entry : snapshot.tableDescriptions().entrySet()) {
+            if (tables.contains(entry.getKey())) {
+                prompt.append(entry.getValue());
+            }
+        }
+        prompt.append("\n").append(snapshot.relationships());
+
+        log.debug("查询相关的表: {}", tables);
+        return prompt.toString();
+    }
+
+    /**
+     * 最相关的前K张表，再加上它们关联的表，使模型生成JOIN时能看到关联表的结构
+     */
+    Set<String> selectTables(String naturalLanguageQuery, SchemaPromptCache.SchemaSnapshot snapshot) {
+        Set<String> tables = new LinkedHashSet<>(rankTables(naturalLanguageQuery, snapshot));
+        for (String table : List.copyOf(tables)) {
+            tables.addAll(snapshot.joinedTables().getOrDefault(table, Set.of()));
+        }
+        return tables;
+    }
+
+    /**
+     * 按相关性从高到低返回前K张表，只包含得分大于0的表
+     */
+    public List<String> rankTables(String naturalLanguageQuery, SchemaPromptCache.SchemaSnapshot snapshot) {
+        if (naturalLanguageQuery == null || naturalLanguageQuery.isBlank()) {
+            return List.of();
+        }
+
+        LexicalIndex currentIndex = getIndex(snapshot);
+        String query = naturalLanguageQuery.toLowerCase(Locale.ROOT);
+        Set<String> queryTokens = tokenize(query);
+
+        // 一次扫描得到查询中提到的表和列
+        List<KeywordMatcher.Match<SchemaKeywordIndex.SchemaEntity>> mentions = schemaKeywordIndex.match(query);
+
+        Map<String, Double> scores = new HashMap<>();
+        for (String table : currentIndex.tableTokens.keySet()) {
+            double score = currentIndex.score(table, queryTokens);
+
+            // 查询直接提到表名、表的同义词或注释
+            for (KeywordMatcher.Match<SchemaKeywordIndex.SchemaEntity> mention : mentions) {
+                SchemaKeywordIndex.SchemaEntity entity = mention.value();
+                if (entity.type() == SchemaKeywordIndex.EntityType.TABLE && entity.name().equals(table)) {
+                    score += TABLE_MAPPING_WEIGHT;
+                } else if (entity.type() == SchemaKeywordIndex.EntityType.COLUMN && currentIndex.hasToken(table, entity.name())) {
+                    score += COLUMN_MAPPING_WEIGHT;
+                }
+            }
+
+            if (score > 0) {
+                scores.put(table, score);
+            }
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private LexicalIndex getIndex(SchemaPromptCache.SchemaSnapshot snapshot) {
+        LexicalIndex current = index;
+        if (current == null || current.snapshot != snapshot) {
+            current = new LexicalIndex(snapshot);
+            index = current;
+        }
+        return current;
+    }
+
+    /**
+     * 分词：英文按单词及下划线分段，中文按二元组切分
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        StringBuilder han = new StringBuilder();
+
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            boolean isWordChar = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+            boolean isHan = Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+
+            if (isWordChar) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                addWordTokens(word.toString(), tokens);
+                word.setLength(0);
+            }
+
+            if (isHan) {
+                han.append(c);
+            } else if (han.length() > 0) {
+                addHanTokens(han.toString(), tokens);
+                han.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static void addWordTokens(String word, Set<String> tokens) {
+        tokens.add(word);
+        for (String part : word.split("_")) {
+            if (part.length() >= 2) {
+                tokens.add(part);
+            }
+        }
+    }
+
+    private static void addHanTokens(String run, Set<String> tokens) {
+        if (run.length() == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int i = 0; i + 1 < run.length(); i++) {
+            tokens.add(run.substring(i, i + 2));
+        }
+    }
+
+    /**
+     * 基于表描述文本的词汇索引，词汇权重为IDF，所有表都包含的词汇权重为0
+     */
+    private static final class LexicalIndex {
+        private final SchemaPromptCache.SchemaSnapshot snapshot;
+        private final Map<String, Set<String>> tableTokens = new LinkedHashMap<>();
+        private final Map<String, Double> idf = new HashMap<>();
+
+        LexicalIndex(SchemaPromptCache.SchemaSnapshot snapshot) {
+            this.snapshot = snapshot;
+            Map<String, Integer> documentFrequency = new HashMap<>();
+            for (Map.Entry<String, String> entry : snapshot.tableDescriptions().entrySet()) {
+                Set<String> tokens = tokenize(entry.getValue());
+                tableTokens.put(entry.getKey(), tokens);
+                for (String token : tokens) {
+                    documentFrequency.merge(token, 1, Integer::sum);
+                }
+            }
+
+            int tableCount = Math.max(1, tableTokens.size());
+            for (Map.Entry<String, Integer> entry : documentFrequency.entrySet()) {
+                idf.put(entry.getKey(), Math.log((double) tableCount / entry.getValue()));
+            }
+        }
+
+        double score(String table, Set<String> queryTokens) {
+            Set<String> tokens = tableTokens.get(table);
+            double score = 0;
+            for (String token : queryTokens) {
+                if (tokens.contains(token)) {
+                    score += idf.getOrDefault(token, 0.0);
+                }
+            }
+            return score;
+        }
+
+        boolean hasToken(String table, String token) {
+            return tableTokens.getOrDefault(table, Set.of()).contains(token);
+        }
+    }
+}
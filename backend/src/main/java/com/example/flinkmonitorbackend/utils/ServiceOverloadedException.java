@@ -0,0 +1,12 @@
+package com.example.flinkmonitorbackend.utils;
+
+/**
+ * 服务过载异常
+ * 并发数和排队数都已达到上限时快速拒绝请求，由控制器转换为503响应
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
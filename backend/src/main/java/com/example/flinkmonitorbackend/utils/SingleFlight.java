@@ -0,0 +1,87 @@
+package com.example.flinkmonitorbackend.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 合并相同键的并发调用
+ * 同一个键同时只执行一次加载，其余调用方等待并共享同一个结果或异常；
+ * 执行加载的调用方被取消时，其余调用方不共享取消异常，而是重新发起加载
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 执行加载，若相同键的加载正在进行则等待其结果
+     *
+     * @param key 调用键
+     * @param loader 实际的加载逻辑，只由第一个调用方执行
+     * @return 加载结果
+     */
+    public V execute(K key, Supplier<V> loader) {
+        while (true) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing != null) {
+                try {
+                    return await(existing);
+                } catch (LoaderCancelledException e) {
+                    continue;
+                }
+            }
+
+            try {
+                V value = loader.get();
+                created.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            } finally {
+                // 结果只在加载期间共享，完成后立即移除，后续调用重新加载
+                inFlight.remove(key, created);
+            }
+        }
+    }
+
+    /**
+     * 当前正在进行的加载数量
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 等待其他调用方的加载结果，等待期间可被中断
+     */
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("等待合并的调用结果时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof QueryCancelledException) {
+                // 取消的是执行加载的调用方，与当前调用方无关
+                throw new LoaderCancelledException();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static final class LoaderCancelledException extends RuntimeException {
+        private LoaderCancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
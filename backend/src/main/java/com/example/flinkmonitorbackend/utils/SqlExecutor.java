@@ -3,6 +3,7 @@ package com.example.flinkmonitorbackend.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import com.example.flinkmonitorbackend.utils.SqlValidationService;
@@ -16,6 +17,7 @@ import java.util.Map;
 
 /**
  * SQL执行工具类
+ * 使用自然语言查询专用的只读连接池，与业务接口的连接池隔离
  */
 @Component
 public class SqlExecutor {
@@ -25,52 +27,84 @@ public class SqlExecutor {
     private static final int QUERY_TIMEOUT_SECONDS = 30;
 
     @Autowired
+    @Qualifier("nlqDataSource")
     private DataSource dataSource;
 
     @Autowired
     private SqlValidationService sqlValidationService;
 
+    @Autowired
+    private QueryCostGuard queryCostGuard;
+
     /**
      * 执行SQL查询并返回结果
+     * 执行前先检查执行计划，代价过高的查询会被改写或以QueryTooExpensiveException拒绝，改写时结果中带有实际执行的SQL和改写说明；
+     * 当前请求被取消时对正在执行的语句调用Statement.cancel()，以QueryCancelledException结束
      */
-    public List<Map<String, Object>> executeQuery(String sql) throws SQLException {
+    public QueryResult executeQuery(String sql) throws SQLException {
         List<Map<String, Object>> results = new ArrayList<>();
-        String sanitizedSql = sqlValidationService.sanitizeSql(sql);
+        SqlValidationResult validation = sqlValidationService.validate(sql);
+        String sanitizedSql = validation.requireSanitizedSql();
         long startTime = System.currentTimeMillis();
         boolean success = false;
         int rowCount = 0;
+        String rewriteMessage = null;
         int effectiveMaxRows = Math.min(MAX_ROWS, sqlValidationService.getMaxLimit());
+        CancellationToken cancellationToken = CancellationToken.current();
+        cancellationToken.throwIfCancelled();
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sanitizedSql)) {
+        try (Connection conn = dataSource.getConnection()) {
+            QueryCostGuard.CheckResult costCheck = queryCostGuard.check(conn, validation);
+            sanitizedSql = costCheck.sql();
+            rewriteMessage = costCheck.rewriteMessage();
 
-            stmt.setMaxRows(effectiveMaxRows);
-            stmt.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            try (PreparedStatement stmt = conn.prepareStatement(sanitizedSql);
+                 CancellationToken.Registration ignored = cancellationToken.onCancel(() -> cancelQuietly(stmt))) {
+                stmt.setMaxRows(effectiveMaxRows);
+                stmt.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
 
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        String columnName = metaData.getColumnName(i);
-                        Object value = rs.getObject(i);
-                        row.put(columnName, value);
+                    while (rs.next()) {
+                        Map<String, Object> row = new HashMap<>();
+                        for (int i = 1; i <= columnCount; i++) {
+                            String columnName = metaData.getColumnName(i);
+                            Object value = rs.getObject(i);
+                            row.put(columnName, value);
+                        }
+                        results.add(row);
                     }
-                    results.add(row);
-                }
 
-                rowCount = results.size();
-                success = true;
+                    rowCount = results.size();
+                    success = true;
+                }
             }
         } catch (SQLException e) {
+            if (cancellationToken.isCancelled()) {
+                log.info("请求已取消，SQL执行中止: {}", e.getMessage());
+                cancellationToken.throwIfCancelled();
+            }
+            if (e instanceof SQLTransientConnectionException) {
+                // 只读连接池已满且排队超时
+                log.warn("查询连接池繁忙: {}", e.getMessage());
+                throw new ServiceOverloadedException("查询连接池繁忙，请稍后重试");
+            }
             log.warn("SQL执行失败: {}", e.getMessage());
             throw e;
         } finally {
             long duration = System.currentTimeMillis() - startTime;
             log.info("SQL审计日志: success={}, duration={}ms, rows={}, sql={}", success, duration, rowCount, sanitizedSql);
         }
-        return results;
+        return new QueryResult(results, sanitizedSql, rewriteMessage);
+    }
+
+    private void cancelQuietly(Statement stmt) {
+        try {
+            stmt.cancel();
+        } catch (SQLException e) {
+            log.warn("取消SQL执行失败: {}", e.getMessage());
+        }
     }
 }
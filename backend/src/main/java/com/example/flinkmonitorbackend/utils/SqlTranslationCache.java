@@ -0,0 +1,82 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.SchemaChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * 自然语言到SQL的翻译缓存
+ * 所有客户端共享，按规范化后的查询文本缓存已通过校验的SQL，避免重复调用大模型
+ */
+@Component
+public class SqlTranslationCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlTranslationCache.class);
+
+    // 空白字符和句读标点（全角标点已转为半角）对查询语义没有影响；
+    // 日期、时间和小数中的'-'、'/'、':'、'.'需要保留，否则"2024-1-11"与"2024-11-1"、"1.5小时"与"15小时"会得到相同的键，
+    // '.'和':'只在不夹在两个数字之间时去掉
+    private static final Pattern IGNORABLE_CHARS =
+            Pattern.compile("[\\s,;!?、。…\"'“”‘’《》「」【】()\\[\\]]+|(?<!\\d)[.:]|[.:](?!\\d)");
+
+    private final ExpiringLruCache<String, String> cache;
+
+    public SqlTranslationCache(@Value("${nlq.translation-cache.max-entries:1000}") int maxEntries,
+                               @Value("${nlq.translation-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.cache = new ExpiringLruCache<>(maxEntries, ttlSeconds * 1000L);
+    }
+
+    public Optional<String> get(String naturalLanguageQuery) {
+        String key = normalize(naturalLanguageQuery);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<String> cached = cache.get(key);
+        if (cached.isPresent()) {
+            log.debug("命中SQL翻译缓存: {}", key);
+        }
+        return cached;
+    }
+
+    public void put(String naturalLanguageQuery, String validatedSql) {
+        String key = normalize(naturalLanguageQuery);
+        if (key.isEmpty() || validatedSql == null) {
+            return;
+        }
+        cache.put(key, validatedSql);
+    }
+
+    public void invalidate(String naturalLanguageQuery) {
+        cache.invalidate(normalize(naturalLanguageQuery));
+    }
+
+    /**
+     * 数据库结构变更后，按旧结构翻译的SQL全部失效
+     */
+    @EventListener(SchemaChangedEvent.class)
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 规范化查询文本：全角转半角、统一小写、去除空白和句读标点
+     */
+    public static String normalize(String naturalLanguageQuery) {
+        if (naturalLanguageQuery == null) {
+            return "";
+        }
+
+        String normalized = Normalizer.normalize(naturalLanguageQuery, Normalizer.Form.NFKC);
+        normalized = normalized.toLowerCase(Locale.ROOT);
+        return IGNORABLE_CHARS.matcher(normalized).replaceAll("");
+    }
+}
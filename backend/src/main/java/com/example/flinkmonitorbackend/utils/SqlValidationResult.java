@@ -0,0 +1,48 @@
+package com.example.flinkmonitorbackend.utils;
+
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.List;
+
+/**
+ * SQL校验结果
+ * 一次语法树遍历同时得到安全结论、规范化后的SQL和引用的表
+ *
+ * @param safe 是否为只读的单条SELECT语句，不含注释、写入或加锁子句及危险函数
+ * @param sanitizedSql 通过表、列白名单和结构限制并补齐LIMIT后的SQL，未通过时为null
+ * @param referencedTables 引用的表名（小写），未通过时为空
+ * @param rejectionReason 未通过的原因，通过时为null
+ * @param statement 与sanitizedSql对应的语法树，供执行前的代价检查复用；校验结果会被缓存共享，不能修改，未通过时为null
+ */
+public record SqlValidationResult(boolean safe, String sanitizedSql, List<String> referencedTables, String rejectionReason,
+                                  PlainSelect statement) {
+
+    static SqlValidationResult unsafe(String reason) {
+        return new SqlValidationResult(false, null, List.of(), reason, null);
+    }
+
+    static SqlValidationResult rejected(String reason) {
+        return new SqlValidationResult(true, null, List.of(), reason, null);
+    }
+
+    static SqlValidationResult allowed(PlainSelect statement, List<String> referencedTables) {
+        return new SqlValidationResult(true, statement.toString(), List.copyOf(referencedTables), null, statement);
+    }
+
+    /**
+     * 是否可以执行，即安全且满足白名单和结构限制
+     */
+    public boolean isAllowed() {
+        return sanitizedSql != null;
+    }
+
+    /**
+     * 取可执行的SQL，未通过校验时抛出SecurityException
+     */
+    public String requireSanitizedSql() {
+        if (sanitizedSql == null) {
+            throw new SecurityException(rejectionReason);
+        }
+        return sanitizedSql;
+    }
+}
@@ -1,26 +1,43 @@
 package com.example.flinkmonitorbackend.utils;
 
 import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaChangedEvent;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
-import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
-import net.sf.jsqlparser.util.deparser.ExpressionVisitorAdapter;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.select.*;
-import net.sf.jsqlparser.util.deparser.SelectItemVisitorAdapter;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.ParenthesedFromItem;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.select.WithItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
+/**
+ * SQL校验服务
+ * 每条候选SQL只解析一次，在同一次语法树遍历中完成安全检查（单条只读SELECT、无注释、无写入和加锁子句、无危险函数）、
+ * 表和列白名单、结构限制以及LIMIT补齐，校验结果按SQL文本缓存，执行前再次校验同一条SQL时不会重复解析
+ */
 @Component
 public class SqlValidationService {
 
@@ -50,42 +67,64 @@ public class SqlValidationService {
             "employee", Set.of("id", "name", "status")
     );
 
+    // 可用于拖慢数据库、读取服务器文件或持有锁的MySQL函数
+    private static final Set<String> DANGEROUS_FUNCTIONS = Set.of(
+            "sleep", "benchmark", "load_file", "get_lock", "release_lock", "release_all_locks",
+            "master_pos_wait", "source_pos_wait"
+    );
+
     private static final int DEFAULT_LIMIT = 50;
     private static final int MAX_LIMIT = 200;
+    private static final int RESULT_CACHE_SIZE = 512;
+    private static final long RESULT_CACHE_TTL_MS = 10 * 60 * 1000L;
 
     private final DatabaseMetadataService databaseMetadataService;
     private final Map<String, Set<String>> allowedColumnsCache = new ConcurrentHashMap<>();
+    // 原始SQL和规范化后的SQL -> 校验结果
+    private final ExpiringLruCache<String, SqlValidationResult> recentResults =
+            new ExpiringLruCache<>(RESULT_CACHE_SIZE, RESULT_CACHE_TTL_MS);
 
     public SqlValidationService(DatabaseMetadataService databaseMetadataService) {
         this.databaseMetadataService = databaseMetadataService;
     }
 
-    public String sanitizeSql(String sql) {
-        try {
-            Statement statement = CCJSqlParserUtil.parse(sql);
-            if (!(statement instanceof Select select)) {
-                throw new SecurityException("只允许执行SELECT语句");
-            }
-
-            if (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty()) {
-                throw new SecurityException("禁止使用CTE子句");
-            }
+    /**
+     * 校验SQL
+     *
+     * @param sql 待校验的SQL
+     * @return 安全结论、规范化后的SQL和引用的表
+     */
+    public SqlValidationResult validate(String sql) {
+        if (sql == null || sql.isBlank()) {
+            return SqlValidationResult.unsafe("SQL为空，拒绝执行");
+        }
 
-            SelectBody selectBody = select.getSelectBody();
-            if (selectBody instanceof PlainSelect plainSelect) {
-                rejectSubSelects(plainSelect);
-                Map<String, String> aliasToTable = buildAliasMapping(plainSelect);
-                List<String> tablesInQuery = extractTables(plainSelect, aliasToTable);
-                enforceColumnWhitelist(plainSelect, aliasToTable, tablesInQuery);
-                enforceLimit(plainSelect);
-            } else {
-                throw new SecurityException("仅允许简单的SELECT查询，禁止子查询或集合操作");
-            }
+        Optional<SqlValidationResult> cached = recentResults.get(sql);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
-            return select.toString();
-        } catch (JSQLParserException e) {
-            throw new SecurityException("SQL解析失败，已拒绝执行", e);
+        SqlValidationResult result = analyze(sql);
+        recentResults.put(sql, result);
+        if (result.isAllowed()) {
+            // 规范化后的SQL再次校验得到相同结果，执行前的校验直接命中
+            recentResults.put(result.sanitizedSql(), result);
         }
+        return result;
+    }
+
+    /**
+     * 校验并返回可执行的SQL，未通过时抛出SecurityException
+     */
+    public String sanitizeSql(String sql) {
+        return validate(sql).requireSanitizedSql();
+    }
+
+    /**
+     * 是否为安全的只读查询，不检查白名单和结构限制
+     */
+    public boolean isSafe(String sql) {
+        return validate(sql).safe();
     }
 
     public List<String> getAllowedColumns(String tableName) {
@@ -101,55 +140,90 @@ public class SqlValidationService {
         return MAX_LIMIT;
     }
 
-    private List<String> enforceColumnWhitelist(PlainSelect plainSelect, Map<String, String> aliasToTable, List<String> tables) {
-        Set<Column> referencedColumns = new HashSet<>();
+    /**
+     * 数据库结构变更后丢弃允许列和校验结果缓存
+     */
+    @EventListener(SchemaChangedEvent.class)
+    public void onSchemaChanged() {
+        allowedColumnsCache.clear();
+        recentResults.invalidateAll();
+    }
 
-        plainSelect.getSelectItems().forEach(item -> item.accept(new SelectItemVisitorAdapter() {
-            @Override
-            public void visit(SelectExpressionItem selectExpressionItem) {
-                collectColumns(selectExpressionItem.getExpression(), referencedColumns);
-            }
+    private SqlValidationResult analyze(String sql) {
+        // 注释不进入语法树，只能在解析前检查
+        if (containsComment(sql)) {
+            return SqlValidationResult.unsafe("SQL中包含注释，已拒绝执行");
+        }
 
-            @Override
-            public void visit(AllColumns allColumns) {
-                throw new SecurityException("不允许使用通配符选择列");
-            }
+        Statement statement;
+        try {
+            // 多条语句无法作为单条语句解析，同样在这里被拒绝
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException e) {
+            return SqlValidationResult.unsafe("SQL解析失败，已拒绝执行");
+        }
 
-            @Override
-            public void visit(AllTableColumns allTableColumns) {
-                throw new SecurityException("请显式列出需要的字段，禁止使用表级通配符");
-            }
-        }));
+        if (!(statement instanceof Select)) {
+            return SqlValidationResult.unsafe("只允许执行SELECT语句");
+        }
 
-        if (plainSelect.getWhere() != null) {
-            collectColumns(plainSelect.getWhere(), referencedColumns);
+        // 安全性检查覆盖集合操作的每个分支和所有子查询，之后才按结构限制拒绝
+        SafetyScan safetyScan = new SafetyScan();
+        safetyScan.scanSelect((Select) statement);
+        if (safetyScan.violation != null) {
+            return SqlValidationResult.unsafe(safetyScan.violation);
         }
 
-        if (plainSelect.getHaving() != null) {
-            collectColumns(plainSelect.getHaving(), referencedColumns);
+        if (!(statement instanceof PlainSelect plainSelect)) {
+            return SqlValidationResult.rejected("仅允许简单的SELECT查询，禁止子查询或集合操作");
         }
 
-        if (plainSelect.getGroupBy() != null && plainSelect.getGroupBy().getGroupByExpressions() != null) {
-            for (Expression expression : plainSelect.getGroupBy().getGroupByExpressions()) {
-                collectColumns(expression, referencedColumns);
-            }
+        AstScan scan = new AstScan();
+        scan.scan(plainSelect);
+
+        if (plainSelect.getWithItemsList() != null && !plainSelect.getWithItemsList().isEmpty()) {
+            return SqlValidationResult.rejected("禁止使用CTE子句");
+        }
+        if (scan.derivedTable) {
+            return SqlValidationResult.rejected("禁止使用子查询作为数据源");
+        }
+        if (scan.subquery) {
+            return SqlValidationResult.rejected("检测到子查询，已被拒绝");
+        }
+        if (scan.wildcard != null) {
+            return SqlValidationResult.rejected(scan.wildcard);
         }
 
-        if (plainSelect.getOrderByElements() != null) {
-            for (OrderByElement orderByElement : plainSelect.getOrderByElements()) {
-                collectColumns(orderByElement.getExpression(), referencedColumns);
+        for (String table : scan.tables) {
+            if (!TABLE_WHITELIST.contains(table)) {
+                return SqlValidationResult.rejected("表不在白名单中: " + table);
             }
         }
 
-        for (Column column : referencedColumns) {
-            String tableName = resolveTableName(column.getTable(), aliasToTable, tables);
+        String columnViolation = findColumnViolation(scan);
+        if (columnViolation != null) {
+            return SqlValidationResult.rejected(columnViolation);
+        }
+
+        enforceLimit(plainSelect);
+        return SqlValidationResult.allowed(plainSelect, scan.tables);
+    }
+
+    private String findColumnViolation(AstScan scan) {
+        for (Column column : scan.columns) {
+            String tableName = resolveTableName(column.getTable(), scan.aliasToTable, scan.tables);
+            if (tableName == null) {
+                return "无法确定列所属的表，拒绝执行";
+            }
             Set<String> allowedColumns = new HashSet<>(getAllowedColumns(tableName));
-            if (!allowedColumns.contains(column.getColumnName().toLowerCase())) {
-                throw new SecurityException("列不在白名单中: " + column.getColumnName());
+            if (allowedColumns.isEmpty()) {
+                return "表缺少允许的列配置: " + tableName;
+            }
+            if (!allowedColumns.contains(unquote(column.getColumnName()))) {
+                return "列不在白名单中: " + column.getColumnName();
             }
         }
-
-        return referencedColumns.stream().map(Column::getColumnName).collect(Collectors.toList());
+        return null;
     }
 
     private void enforceLimit(PlainSelect plainSelect) {
@@ -161,178 +235,301 @@ public class SqlValidationService {
             return;
         }
 
-        if (!(limit.getRowCount() instanceof LongValue)) {
+        if (!(limit.getRowCount() instanceof LongValue longValue)) {
             limit.setRowCount(new LongValue(DEFAULT_LIMIT));
             return;
         }
 
-        if (limit.getRowCount() instanceof LongValue longValue) {
-            long current = longValue.getValue();
-            if (current <= 0 || current > MAX_LIMIT) {
-                limit.setRowCount(new LongValue(MAX_LIMIT));
-            }
+        long current = longValue.getValue();
+        if (current <= 0 || current > MAX_LIMIT) {
+            limit.setRowCount(new LongValue(MAX_LIMIT));
         }
     }
 
-    private void rejectSubSelects(PlainSelect plainSelect) {
-        if (!(plainSelect.getFromItem() instanceof Table)) {
-            throw new SecurityException("禁止使用子查询作为数据源");
+    private String resolveTableName(Table table, Map<String, String> aliasToTable, List<String> tables) {
+        if (table != null && table.getName() != null) {
+            String provided = unquote(table.getName());
+            return aliasToTable.getOrDefault(provided, provided);
         }
 
-        if (plainSelect.getJoins() != null) {
-            for (Join join : plainSelect.getJoins()) {
-                if (!(join.getRightItem() instanceof Table)) {
-                    throw new SecurityException("禁止在JOIN中使用子查询");
-                }
-            }
+        if (tables.size() == 1) {
+            return tables.get(0);
         }
+        return null;
+    }
 
-        ExpressionVisitorAdapter visitor = new ExpressionVisitorAdapter() {
-            @Override
-            public void visit(SubSelect subSelect) {
-                throw new SecurityException("检测到子查询，已被拒绝");
+    /**
+     * 检查字符串字面量和带引号标识符之外是否出现注释标记，包括MySQL会执行的“/*!”注释
+     */
+    static boolean containsComment(String sql) {
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote != '`') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                continue;
             }
-        };
 
-        if (plainSelect.getWhere() != null) {
-            plainSelect.getWhere().accept(visitor);
-        }
-
-        if (plainSelect.getHaving() != null) {
-            plainSelect.getHaving().accept(visitor);
-        }
-
-        if (plainSelect.getSelectItems() != null) {
-            for (SelectItem item : plainSelect.getSelectItems()) {
-                item.accept(new SelectItemVisitorAdapter() {
-                    @Override
-                    public void visit(SelectExpressionItem selectExpressionItem) {
-                        if (selectExpressionItem.getExpression() != null) {
-                            selectExpressionItem.getExpression().accept(visitor);
-                        }
-                    }
-                });
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '#') {
+                return true;
+            } else if ((c == '-' || c == '/') && i + 1 < sql.length()) {
+                char next = sql.charAt(i + 1);
+                if ((c == '-' && next == '-') || (c == '/' && next == '*')) {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
-    private Map<String, String> buildAliasMapping(PlainSelect plainSelect) {
-        Map<String, String> aliasToTable = new HashMap<>();
-        if (plainSelect.getFromItem() instanceof Table table) {
-            registerAlias(aliasToTable, table);
+    private static String unquote(String identifier) {
+        String name = identifier.toLowerCase();
+        if (name.length() >= 2 && name.startsWith("`") && name.endsWith("`")) {
+            return name.substring(1, name.length() - 1);
         }
+        return name;
+    }
 
-        if (plainSelect.getJoins() != null) {
-            for (Join join : plainSelect.getJoins()) {
-                if (join.getRightItem() instanceof Table joinTable) {
-                    registerAlias(aliasToTable, joinTable);
+    private Set<String> loadAllowedColumns(String tableName) {
+        try {
+            Set<String> metadataColumns = new HashSet<>();
+            databaseMetadataService.getSchemaModel().table(tableName).ifPresent(table ->
+                    table.columns().forEach(column -> metadataColumns.add(column.name().toLowerCase())));
+
+            Set<String> staticAllowed = STATIC_ALLOWED_COLUMNS.getOrDefault(tableName, Set.of());
+            if (!staticAllowed.isEmpty()) {
+                if (!metadataColumns.isEmpty()) {
+                    metadataColumns.retainAll(staticAllowed);
+                    return metadataColumns.isEmpty() ? new HashSet<>(staticAllowed) : metadataColumns;
                 }
+                return new HashSet<>(staticAllowed);
             }
+
+            return metadataColumns;
+        } catch (Exception ex) {
+            log.warn("加载表{}的列信息失败: {}", tableName, ex.getMessage());
+            return STATIC_ALLOWED_COLUMNS.getOrDefault(tableName, Set.of());
         }
-        return aliasToTable;
     }
 
-    private List<String> extractTables(PlainSelect plainSelect, Map<String, String> aliasToTable) {
-        List<String> tables = new ArrayList<>();
-        if (plainSelect.getFromItem() instanceof Table table) {
-            String normalized = table.getName().toLowerCase();
-            validateTable(normalized);
-            tables.add(normalized);
-        }
+    /**
+     * 遍历语句中的每个SELECT主体，包括集合操作的各分支、CTE、派生表和表达式中的子查询，
+     * 查找SELECT INTO、加锁读取和危险函数；遇到无法检查的数据源时同样视为不安全
+     */
+    private static final class SafetyScan extends ExpressionVisitorAdapter {
+        private String violation;
 
-        if (plainSelect.getJoins() != null) {
-            for (Join join : plainSelect.getJoins()) {
-                if (join.getRightItem() instanceof Table joinTable) {
-                    String normalized = joinTable.getName().toLowerCase();
-                    validateTable(normalized);
-                    tables.add(normalized);
+        void scanSelect(Select select) {
+            if (violation != null || select == null) {
+                return;
+            }
+            if (select.getWithItemsList() != null) {
+                for (WithItem withItem : select.getWithItemsList()) {
+                    scanSelect(withItem.getSelect());
                 }
             }
-        }
-        return tables;
-    }
 
-    private void validateTable(String tableName) {
-        if (!TABLE_WHITELIST.contains(tableName)) {
-            throw new SecurityException("表不在白名单中: " + tableName);
+            if (select instanceof PlainSelect plainSelect) {
+                scanPlainSelect(plainSelect);
+            } else if (select instanceof SetOperationList setOperationList) {
+                setOperationList.getSelects().forEach(this::scanSelect);
+            } else if (select instanceof ParenthesedSelect parenthesedSelect) {
+                scanSelect(parenthesedSelect.getSelect());
+            } else {
+                violation = "无法检查的查询结构，已拒绝执行";
+                return;
+            }
+            scanOrderBy(select.getOrderByElements());
         }
-    }
 
-    private void registerAlias(Map<String, String> aliasToTable, Table table) {
-        Alias alias = table.getAlias();
-        if (alias != null && alias.getName() != null) {
-            aliasToTable.put(alias.getName().toLowerCase(), table.getName().toLowerCase());
-        }
-    }
+        private void scanPlainSelect(PlainSelect plainSelect) {
+            if (plainSelect.getIntoTables() != null || plainSelect.getIntoTempTable() != null) {
+                violation = "禁止使用SELECT INTO";
+                return;
+            }
+            if (plainSelect.getForMode() != null) {
+                violation = "禁止使用加锁读取";
+                return;
+            }
 
-    private String resolveTableName(Table table, Map<String, String> aliasToTable, List<String> tables) {
-        if (table != null && table.getName() != null) {
-            String provided = table.getName().toLowerCase();
-            return aliasToTable.getOrDefault(provided, provided);
+            scanFromItem(plainSelect.getFromItem());
+            scanJoins(plainSelect.getJoins());
+            for (SelectItem<?> item : plainSelect.getSelectItems()) {
+                accept(item.getExpression());
+            }
+            accept(plainSelect.getWhere());
+            if (plainSelect.getGroupBy() != null) {
+                accept(plainSelect.getGroupBy().getGroupByExpressionList());
+            }
+            accept(plainSelect.getHaving());
+            accept(plainSelect.getQualify());
         }
 
-        if (tables.size() == 1) {
-            return tables.get(0);
+        private void scanFromItem(FromItem fromItem) {
+            if (fromItem == null || fromItem instanceof Table) {
+                return;
+            }
+            if (fromItem instanceof ParenthesedSelect parenthesedSelect) {
+                scanSelect(parenthesedSelect);
+            } else if (fromItem instanceof ParenthesedFromItem parenthesedFromItem) {
+                scanFromItem(parenthesedFromItem.getFromItem());
+                scanJoins(parenthesedFromItem.getJoins());
+            } else if (violation == null) {
+                violation = "无法检查的数据源，已拒绝执行";
+            }
         }
 
-        throw new SecurityException("无法确定列所属的表，拒绝执行");
-    }
+        private void scanJoins(List<Join> joins) {
+            if (joins == null) {
+                return;
+            }
+            for (Join join : joins) {
+                scanFromItem(join.getRightItem());
+                join.getOnExpressions().forEach(this::accept);
+            }
+        }
 
-    private void collectColumns(Expression expression, Set<Column> columns) {
-        if (expression == null) {
-            return;
+        private void scanOrderBy(List<OrderByElement> orderByElements) {
+            if (orderByElements != null) {
+                orderByElements.forEach(orderByElement -> accept(orderByElement.getExpression()));
+            }
         }
 
-        if (expression instanceof ExpressionList expressionList && expressionList.getExpressions() != null) {
-            for (Expression expr : expressionList.getExpressions()) {
-                collectColumns(expr, columns);
+        private void accept(Expression expression) {
+            if (expression != null && violation == null) {
+                expression.accept(this);
             }
-            return;
         }
 
-        expression.accept(new ExpressionVisitorAdapter() {
-            @Override
-            public void visit(Column column) {
-                columns.add(column);
+        @Override
+        public void visit(Function function) {
+            if (violation == null && function.getName() != null
+                    && DANGEROUS_FUNCTIONS.contains(function.getName().toLowerCase())) {
+                violation = "禁止调用函数: " + function.getName();
             }
-        });
-    }
+            super.visit(function);
+        }
+
+        @Override
+        public void visit(Select select) {
+            scanSelect(select);
+        }
 
-    private void validateColumnsForTable(String tableName, List<String> allowedColumns) {
-        if (allowedColumns.isEmpty()) {
-            throw new SecurityException("表缺少允许的列配置: " + tableName);
+        @Override
+        public void visit(ParenthesedSelect parenthesedSelect) {
+            scanSelect(parenthesedSelect);
         }
     }
 
-    private Set<String> loadAllowedColumns(String tableName) {
-        try {
-            Map<String, Object> structure = databaseMetadataService.getTableStructure(tableName);
-            Object rawColumns = structure.get("columns");
-            Set<String> metadataColumns = new HashSet<>();
-            if (rawColumns instanceof List<?> columnList) {
-                for (Object colObj : columnList) {
-                    if (colObj instanceof Map<?, ?> column) {
-                        Object name = column.get("columnName");
-                        if (name instanceof String columnName) {
-                            metadataColumns.add(columnName.toLowerCase());
-                        }
+    /**
+     * 一次遍历查询的语法树，收集表、别名和列，同时记录子查询和通配符
+     */
+    private static final class AstScan extends ExpressionVisitorAdapter {
+        private final List<String> tables = new ArrayList<>();
+        private final Map<String, String> aliasToTable = new HashMap<>();
+        private final Set<String> selectAliases = new HashSet<>();
+        private final List<Column> columns = new ArrayList<>();
+        private boolean subquery;
+        private boolean derivedTable;
+        private String wildcard;
+        // ORDER BY、GROUP BY和HAVING中可以引用SELECT列的别名
+        private boolean selectAliasesVisible;
+
+        void scan(PlainSelect plainSelect) {
+            registerFromItem(plainSelect.getFromItem());
+            if (plainSelect.getJoins() != null) {
+                for (Join join : plainSelect.getJoins()) {
+                    registerFromItem(join.getRightItem());
+                    join.getOnExpressions().forEach(this::accept);
+                    if (join.getUsingColumns() != null) {
+                        columns.addAll(join.getUsingColumns());
                     }
                 }
             }
 
-            Set<String> staticAllowed = STATIC_ALLOWED_COLUMNS.getOrDefault(tableName, Set.of());
-            if (!staticAllowed.isEmpty()) {
-                if (!metadataColumns.isEmpty()) {
-                    metadataColumns.retainAll(staticAllowed);
-                    return metadataColumns.isEmpty() ? new HashSet<>(staticAllowed) : metadataColumns;
+            for (SelectItem<?> item : plainSelect.getSelectItems()) {
+                Expression expression = item.getExpression();
+                if (expression instanceof AllTableColumns) {
+                    wildcard = "请显式列出需要的字段，禁止使用表级通配符";
+                } else if (expression instanceof AllColumns) {
+                    wildcard = "不允许使用通配符选择列";
+                } else {
+                    accept(expression);
+                }
+                Alias alias = item.getAlias();
+                if (alias != null && alias.getName() != null) {
+                    selectAliases.add(unquote(alias.getName()));
                 }
-                return new HashSet<>(staticAllowed);
             }
 
-            return metadataColumns;
-        } catch (Exception ex) {
-            log.warn("加载表{}的列信息失败: {}", tableName, ex.getMessage());
-            return STATIC_ALLOWED_COLUMNS.getOrDefault(tableName, Set.of());
+            accept(plainSelect.getWhere());
+
+            selectAliasesVisible = true;
+            if (plainSelect.getGroupBy() != null) {
+                accept(plainSelect.getGroupBy().getGroupByExpressionList());
+            }
+            accept(plainSelect.getHaving());
+            if (plainSelect.getOrderByElements() != null) {
+                for (OrderByElement orderByElement : plainSelect.getOrderByElements()) {
+                    accept(orderByElement.getExpression());
+                }
+            }
+        }
+
+        private void accept(Expression expression) {
+            if (expression != null) {
+                expression.accept(this);
+            }
+        }
+
+        private void registerFromItem(FromItem fromItem) {
+            if (fromItem instanceof Table table) {
+                String tableName = unquote(table.getName());
+                if (!tables.contains(tableName)) {
+                    tables.add(tableName);
+                }
+                Alias alias = table.getAlias();
+                if (alias != null && alias.getName() != null) {
+                    aliasToTable.put(unquote(alias.getName()), tableName);
+                }
+            } else if (fromItem != null) {
+                derivedTable = true;
+            }
+        }
+
+        @Override
+        public void visit(Column column) {
+            boolean aliasReference = selectAliasesVisible && column.getTable() == null
+                    && selectAliases.contains(unquote(column.getColumnName()));
+            if (!aliasReference) {
+                columns.add(column);
+            }
+        }
+
+        @Override
+        public void visit(Select select) {
+            subquery = true;
+        }
+
+        @Override
+        public void visit(ParenthesedSelect parenthesedSelect) {
+            subquery = true;
+        }
+
+        @Override
+        public void visit(AllColumns allColumns) {
+            // COUNT(*)的参数，选择列中的通配符在scan中单独处理
+        }
+
+        @Override
+        public void visit(AllTableColumns allTableColumns) {
+            // 同上
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.entity.ApiMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiSearchIndexTest {
+
+    private static ApiMetadata api(String id, String url, String description, String... tags) {
+        ApiMetadata api = new ApiMetadata();
+        api.id = id;
+        api.url = url;
+        api.description = description;
+        api.tags = List.of(tags);
+        return api;
+    }
+
+    @Test
+    void testRanksTagAndUrlMatchesAboveDescriptionMatches() {
+        ApiSearchIndex index = new ApiSearchIndex(List.of(
+                api("get__reports_1", "/reports", "Report - get employee summary", "ReportController"),
+                api("get__employees_2", "/employees", "Employee - get all employees", "EmployeeController", "员工管理"),
+                api("post__alerts_3", "/alerts", "Alert - create alert", "AlertController", "告警管理")));
+
+        assertEquals(List.of("get__employees_2", "get__reports_1"),
+                index.search("employee").stream().map(api -> api.id).toList());
+        assertEquals(List.of("get__employees_2"), index.search("员工管理").stream().map(api -> api.id).toList());
+        assertEquals(List.of("post__alerts_3"), index.search("create alert").stream().map(api -> api.id).toList());
+    }
+
+    @Test
+    void testRequiresEveryTermAndPrefersExactId() {
+        ApiSearchIndex index = new ApiSearchIndex(List.of(
+                api("get__departments_statistics_1", "/departments/statistics", "Department - get statistics", "DepartmentController"),
+                api("get__departments_2", "/departments", "Department - get all departments", "DepartmentController")));
+
+        assertEquals(List.of("get__departments_statistics_1"),
+                index.search("department statistics").stream().map(api -> api.id).toList());
+        assertEquals("get__departments_2", index.search("get__departments_2").get(0).id);
+        assertTrue(index.search("department leave").isEmpty());
+        assertTrue(index.search("  ").isEmpty());
+    }
+
+    @Test
+    void testSplitsCamelCaseAndChineseBigrams() {
+        assertEquals(List.of("employee", "leave", "records"), List.copyOf(ApiSearchIndex.tokenize("EmployeeLeaveRecords")));
+        assertEquals(List.of("http", "status", "2"), List.copyOf(ApiSearchIndex.tokenize("HTTPStatus_2")));
+        assertEquals(List.of("员工", "工管", "管理"), List.copyOf(ApiSearchIndex.tokenize("员工管理")));
+    }
+
+    @Test
+    void testSearchesThousandsOfEndpoints() {
+        List<ApiMetadata> apis = generateApis(5000);
+        ApiSearchIndex index = new ApiSearchIndex(apis);
+        String exactId = apis.get(2831).id;
+
+        assertEquals(exactId, index.search(exactId).get(0).id);
+        assertFalse(index.search("employees12 statistics").isEmpty());
+        assertFalse(index.search("gate records export").isEmpty());
+        assertTrue(index.search("alerts3").stream().allMatch(api -> api.url.startsWith("/alerts3")));
+    }
+
+    /**
+     * 生成count个资源和操作组合的接口，检索测试和ApiSearchIndexBenchmark共用
+     */
+    static List<ApiMetadata> generateApis(int count) {
+        String[] resources = {"employees", "departments", "alerts", "reports", "gateRecords", "leaveRecords", "overtimeRecords"};
+        String[] actions = {"list", "get", "create", "update", "delete", "statistics", "export", "search"};
+        List<ApiMetadata> apis = new ArrayList<>();
+        for (int i = 0; apis.size() < count; i++) {
+            String resource = resources[i % resources.length] + (i / (resources.length * actions.length));
+            String action = actions[(i / resources.length) % actions.length];
+            apis.add(api("get__" + resource + "_" + action + "_" + i, "/" + resource + "/" + action,
+                    resource + " - " + action + " " + resource, resource + "Controller"));
+        }
+        return apis;
+    }
+}
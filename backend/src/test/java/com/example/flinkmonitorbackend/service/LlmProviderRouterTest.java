@@ -0,0 +1,177 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.example.flinkmonitorbackend.utils.ConcurrencyLimiter;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 大模型路由测试，使用本地桩HTTP服务模拟Ollama接口
+ */
+class LlmProviderRouterTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private LlmProviderRouter router;
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        servers.forEach(server -> {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdownNow();
+        });
+    }
+
+    @Test
+    void testRoutesToFastestProvider() {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("slow", stubModel(300, 200, "SELECT 'slow'"));
+        models.put("fast", stubModel(10, 200, "SELECT 'fast'"));
+        router = new LlmProviderRouter(models, 0);
+
+        // 各调用一次以采集延迟
+        router.generate("slow", "查询");
+        router.generate("fast", "查询");
+
+        assertEquals("fast", router.rankProviders().get(0));
+        assertEquals("SELECT 'fast'", router.generate("查询"));
+    }
+
+    @Test
+    void testHedgesWhenPrimaryExceedsLatencyBudget() {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("primary", stubModel(2000, 200, "SELECT 'primary'"));
+        models.put("secondary", stubModel(10, 200, "SELECT 'secondary'"));
+        router = new LlmProviderRouter(models, 100);
+
+        long start = System.currentTimeMillis();
+        String result = router.generate("查询");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("SELECT 'secondary'", result);
+        assertTrue(elapsed < 1500, "对冲请求应在首选提供商返回前完成，实际耗时" + elapsed + "ms");
+    }
+
+    @Test
+    void testSkipsHedgeWithoutFreePermit() {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("primary", stubModel(500, 200, "SELECT 'primary'"));
+        models.put("secondary", stubModel(10, 200, "SELECT 'secondary'"));
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("大模型服务", 1, 0, 0);
+        router = new LlmProviderRouter(models, 100, limiter);
+
+        // 唯一的许可由本次请求持有，不能再发起对冲请求
+        String result = limiter.execute(() -> router.generate("查询"));
+
+        assertEquals("SELECT 'primary'", result);
+        assertEquals(1, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void testHedgeReturnsItsPermit() {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("primary", stubModel(2000, 200, "SELECT 'primary'"));
+        models.put("secondary", stubModel(10, 200, "SELECT 'secondary'"));
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("大模型服务", 2, 0, 0);
+        router = new LlmProviderRouter(models, 100, limiter);
+
+        assertEquals("SELECT 'secondary'", limiter.execute(() -> router.generate("查询")));
+        assertEquals(2, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void testLosingHedgeHoldsPermitUntilCallReturns() throws InterruptedException {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("primary", stubModel(300, 200, "SELECT 'primary'"));
+        models.put("secondary", stubModel(1500, 200, "SELECT 'secondary'"));
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("大模型服务", 2, 0, 0);
+        router = new LlmProviderRouter(models, 100, limiter);
+
+        assertEquals("SELECT 'primary'", limiter.execute(() -> router.generate("查询")));
+        // 落败的对冲请求被取消后HTTP调用仍在进行，许可在调用真正返回后才归还
+        assertEquals(1, limiter.getAvailablePermits());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (limiter.getAvailablePermits() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, limiter.getAvailablePermits());
+    }
+
+    @Test
+    void testFallsBackAndMarksFailingProviderUnhealthy() {
+        Map<String, ChatLanguageModel> models = new LinkedHashMap<>();
+        models.put("broken", stubModel(0, 500, "{}"));
+        models.put("healthy", stubModel(10, 200, "SELECT 'healthy'"));
+        router = new LlmProviderRouter(models, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("SELECT 'healthy'", router.generate("查询"));
+        }
+
+        assertEquals(List.of("healthy", "broken"), router.rankProviders());
+        LlmProviderRouter.ProviderSnapshot broken = router.getStats().get(0);
+        assertEquals("broken", broken.provider());
+        assertFalse(broken.healthy());
+        assertEquals(1.0, broken.errorRate());
+    }
+
+    private ChatLanguageModel stubModel(long delayMillis, int status, String content) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/api/chat", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                sleep(delayMillis);
+                String body = status == 200
+                        ? "{\"model\":\"stub\",\"message\":{\"role\":\"assistant\",\"content\":\"" + content
+                        + "\"},\"done\":true,\"prompt_eval_count\":1,\"eval_count\":1}"
+                        : "{\"error\":\"stub failure\"}";
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            });
+            // 对冲测试中慢请求不能阻塞其他请求
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            servers.add(server);
+
+            return OllamaChatModel.builder()
+                    .baseUrl("http://localhost:" + server.getAddress().getPort())
+                    .modelName("stub")
+                    .timeout(Duration.ofSeconds(5))
+                    .maxRetries(1)
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.utils.ResultSummarizer;
+import com.example.flinkmonitorbackend.utils.ServiceOverloadedException;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import dev.langchain4j.model.ollama.OllamaStreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式评估的并发限制测试，使用本地桩HTTP服务模拟Ollama的流式接口
+ */
+class LlmServiceTest {
+
+    private HttpServer server;
+    private LlmService llmService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/chat", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            sleep(300);
+            // 客户端按每次读取到的内容逐条解析，两条消息分开发送
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{\"model\":\"stub\",\"message\":{\"role\":\"assistant\",\"content\":\"OK\"},\"done\":false}"
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                sleep(50);
+                out.write("{\"model\":\"stub\",\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true}"
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (llmService != null) {
+            llmService.shutdown();
+        }
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    void testEvaluationsBeyondConcurrencyWaitInQueue() throws Exception {
+        llmService = newService(2, 8);
+
+        // 第三个评估排队等待前两个完成，而不是直接失败
+        List<CompletableFuture<String>> evaluations = List.of(evaluate(), evaluate(), evaluate());
+        for (CompletableFuture<String> evaluation : evaluations) {
+            assertEquals("OK", evaluation.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testEvaluationFailsWhenQueueIsFull() throws Exception {
+        llmService = newService(1, 0);
+
+        CompletableFuture<String> first = evaluate();
+        Thread.sleep(100);
+        CompletableFuture<String> second = evaluate();
+
+        assertEquals("OK", first.get(10, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceOverloadedException.class, error.getCause());
+    }
+
+    private CompletableFuture<String> evaluate() {
+        CompletableFuture<String> evaluation = new CompletableFuture<>();
+        StringBuilder text = new StringBuilder();
+        llmService.evaluateSqlResultsStreaming("统计部门人数", "SELECT id FROM organizations LIMIT 10", List.of(),
+                new StreamingResponseHandler<>() {
+                    @Override
+                    public void onNext(String token) {
+                        text.append(token);
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                        evaluation.complete(text.toString());
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        evaluation.completeExceptionally(error);
+                    }
+                });
+        return evaluation;
+    }
+
+    private LlmService newService(int maxConcurrent, int maxQueueDepth) {
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+        DatabaseMetadataService metadataService = (DatabaseMetadataService) Proxy.newProxyInstance(
+                DatabaseMetadataService.class.getClassLoader(), new Class<?>[]{DatabaseMetadataService.class},
+                (proxy, method, args) -> {
+                    throw new IllegalStateException("测试中不访问数据库");
+                });
+        return new LlmService(new ResultSummarizer(1200, 5), new SqlValidationService(metadataService),
+                OllamaChatModel.builder().baseUrl(baseUrl).modelName("stub").timeout(Duration.ofSeconds(5)).build(),
+                OllamaStreamingChatModel.builder().baseUrl(baseUrl).modelName("stub").timeout(Duration.ofSeconds(5)).build(),
+                OpenAiChatModel.builder().baseUrl(baseUrl).apiKey("test").modelName("stub").build(),
+                maxConcurrent, maxQueueDepth, 5000, List.of("ollama"), 0, false);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
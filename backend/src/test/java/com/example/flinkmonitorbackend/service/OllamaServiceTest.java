@@ -1,7 +1,7 @@
 package com.example.flinkmonitorbackend.service;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -9,13 +9,9 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 class OllamaServiceTest {
 
+    @Autowired
     private OllamaService ollamaService;
 
-    @BeforeEach
-    void setUp() {
-        ollamaService = new OllamaService();
-    }
-
     @Test
     void testGenerateSql() {
         // 测试用例1：简单查询
@@ -0,0 +1,65 @@
+package com.example.flinkmonitorbackend.service;
+
+import com.example.flinkmonitorbackend.mapper.QueryHistoryMapper;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SchemaPromptCache;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryExampleStoreTest {
+
+    private static final String QUERY = "统计研发中心下属各个部门本月所有员工的加班小时数总和并且按照加班小时数从高到低排序只显示部门名称和部门编码";
+    private static final String SQL = "SELECT org_name, org_code FROM organizations LIMIT 10";
+
+    private static QueryExampleStore newStore() {
+        // 不连接数据库：历史为空，写库直接成功，关键词索引只使用静态映射
+        QueryHistoryMapper mapper = (QueryHistoryMapper) Proxy.newProxyInstance(
+                QueryHistoryMapper.class.getClassLoader(), new Class<?>[]{QueryHistoryMapper.class},
+                (proxy, method, args) -> method.getName().equals("findRecentSuccessful") ? List.of() : 1);
+        DatabaseMetadataService metadataService = (DatabaseMetadataService) Proxy.newProxyInstance(
+                DatabaseMetadataService.class.getClassLoader(), new Class<?>[]{DatabaseMetadataService.class},
+                (proxy, method, args) -> {
+                    throw new IllegalStateException("测试中不访问数据库");
+                });
+        return new QueryExampleStore(mapper, new SchemaKeywordIndex(new SchemaPromptCache(metadataService)),
+                100, 3, 0.9, 0.3);
+    }
+
+    @Test
+    void testReusesNearDuplicateWithSameTimeAndStatusWords() {
+        QueryExampleStore store = newStore();
+        store.recordSuccess(QUERY, SQL);
+
+        assertEquals(Optional.of(SQL), store.findNearDuplicate(QUERY.replace("并且", "而且")));
+    }
+
+    @Test
+    void testDoesNotReuseAcrossDifferentTimeOrStatusWords() {
+        QueryExampleStore store = newStore();
+        store.recordSuccess(QUERY, SQL);
+        store.recordSuccess(QUERY.replace("所有员工", "待处理员工"), SQL);
+
+        assertTrue(store.findNearDuplicate(QUERY.replace("本月", "上月")).isEmpty());
+        assertTrue(store.findNearDuplicate(QUERY.replace("本月", "下月")).isEmpty());
+        assertTrue(store.findNearDuplicate(QUERY.replace("所有员工", "已处理员工")).isEmpty());
+        // 同义的写法视为相同
+        assertEquals(Optional.of(SQL), store.findNearDuplicate(QUERY.replace("本月", "当月")));
+    }
+
+    @Test
+    void testSchemaChangeDropsExamples() {
+        QueryExampleStore store = newStore();
+        store.recordSuccess(QUERY, SQL);
+
+        store.invalidateAll();
+
+        assertEquals(0, store.size());
+        assertTrue(store.findNearDuplicate(QUERY).isEmpty());
+        assertTrue(store.findSimilarExamples(QUERY).isEmpty());
+    }
+}
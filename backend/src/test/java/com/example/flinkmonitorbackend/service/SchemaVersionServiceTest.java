@@ -0,0 +1,133 @@
+package com.example.flinkmonitorbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 数据库结构版本检测测试，指纹查询和结构模型加载都由动态代理模拟
+ */
+class SchemaVersionServiceTest {
+
+    // 指纹查询每一段都返回该值，为null时模拟数据库不可用
+    private final AtomicReference<String> fingerprint = new AtomicReference<>("3:100");
+    private final AtomicReference<SchemaModel> model = new AtomicReference<>(newModel());
+    private boolean reloadFails;
+    private final List<Object> events = new ArrayList<>();
+
+    private final SchemaVersionService service = new SchemaVersionService(dataSource(), metadataService(), events::add);
+
+    @Test
+    void testFirstCheckOnlyRecordsFingerprint() {
+        service.checkForChanges();
+        service.checkForChanges();
+
+        assertTrue(events.isEmpty());
+        assertEquals(0, service.currentVersion());
+    }
+
+    @Test
+    void testOneEventPerChange() {
+        service.checkForChanges();
+
+        fingerprint.set("4:200");
+        service.checkForChanges();
+        // 指纹不再变化时不重复发布
+        service.checkForChanges();
+
+        assertEquals(List.of(new SchemaChangedEvent(1, "4:200/4:200/4:200")), events);
+        assertEquals(1, service.currentVersion());
+
+        fingerprint.set("5:300");
+        service.checkForChanges();
+        service.checkForChanges();
+
+        assertEquals(2, events.size());
+        assertEquals(new SchemaChangedEvent(2, "5:300/5:300/5:300"), events.get(1));
+    }
+
+    @Test
+    void testFailedReloadIsRetriedOnNextCheck() {
+        service.checkForChanges();
+
+        fingerprint.set("4:200");
+        reloadFails = true;
+        service.checkForChanges();
+        assertTrue(events.isEmpty());
+
+        // 旧指纹保留，下次检查仍然识别为变更
+        reloadFails = false;
+        service.checkForChanges();
+        assertEquals(List.of(new SchemaChangedEvent(1, "4:200/4:200/4:200")), events);
+    }
+
+    @Test
+    void testRefreshWithoutFingerprintPublishesNothing() {
+        fingerprint.set(null);
+
+        service.refresh();
+
+        assertTrue(events.isEmpty());
+        assertEquals(0, service.currentVersion());
+
+        // 指纹可用后手动刷新不论是否变化都发布
+        fingerprint.set("3:100");
+        service.refresh();
+        assertEquals(List.of(new SchemaChangedEvent(1, "3:100/3:100/3:100")), events);
+    }
+
+    private DatabaseMetadataService metadataService() {
+        return proxy(DatabaseMetadataService.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getSchemaModel" -> model.get();
+            case "refreshSchemaModel" -> {
+                // 加载失败时返回旧模型
+                if (!reloadFails) {
+                    model.set(newModel());
+                }
+                yield model.get();
+            }
+            default -> throw new IllegalStateException("测试中不访问数据库");
+        });
+    }
+
+    private DataSource dataSource() {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            if (!method.getName().equals("getConnection")) {
+                return null;
+            }
+            String current = fingerprint.get();
+            if (current == null) {
+                throw new SQLException("数据库不可用");
+            }
+            ResultSet resultSet = proxy(ResultSet.class, (rs, rsMethod, rsArgs) -> switch (rsMethod.getName()) {
+                case "next" -> true;
+                case "getString" -> current;
+                default -> null;
+            });
+            PreparedStatement statement = proxy(PreparedStatement.class, (stmt, stmtMethod, stmtArgs) ->
+                    stmtMethod.getName().equals("executeQuery") ? resultSet : null);
+            return proxy(Connection.class, (conn, connMethod, connArgs) ->
+                    connMethod.getName().equals("prepareStatement") ? statement : null);
+        });
+    }
+
+    private static SchemaModel newModel() {
+        return new SchemaModel(List.of(), System.nanoTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.flinkmonitorbackend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调用器的参数绑定与Spring MVC注解规则一致的测试
+ */
+class ApiInvokerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static class DemoController {
+        public String employee(@PathVariable("id") Long id, @RequestParam(defaultValue = "10") int size,
+                               @RequestParam(required = false) String keyword, HttpServletRequest request) {
+            return id + ":" + size + ":" + keyword + ":" + request;
+        }
+
+        public Map<String, Object> create(@RequestBody Map<String, Object> body) {
+            return body;
+        }
+
+        public String page(int page, String sort) {
+            return page + ":" + sort;
+        }
+    }
+
+    private ApiInvoker invoker(String methodName) throws IllegalAccessException {
+        for (Method method : DemoController.class.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return ApiInvoker.create(new DemoController(), method, objectMapper);
+            }
+        }
+        throw new IllegalArgumentException(methodName);
+    }
+
+    @Test
+    void testBindsPathAndQueryParametersWithDefaults() throws Exception {
+        ApiInvoker invoker = invoker("employee");
+
+        List<ApiInvoker.ParameterSpec> parameters = invoker.parameters();
+        assertEquals(List.of(ApiInvoker.Source.PATH, ApiInvoker.Source.QUERY, ApiInvoker.Source.QUERY, ApiInvoker.Source.NONE),
+                parameters.stream().map(ApiInvoker.ParameterSpec::source).toList());
+        assertFalse(parameters.get(1).required());
+        assertEquals("10", parameters.get(1).defaultValue());
+
+        // 字符串按参数类型转换，未提供的查询参数使用默认值，容器注入的对象传null
+        assertEquals("42:10:null:null", invoker.invoke(Map.of("id", "42")));
+        assertEquals("42:20:张三:null", invoker.invoke(Map.of("id", 42, "size", "20", "keyword", "张三")));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> invoker.invoke(Map.of("size", 5)));
+        assertEquals("缺少参数: id", error.getMessage());
+    }
+
+    @Test
+    void testBindsWholeParameterMapAsRequestBody() throws Exception {
+        ApiInvoker invoker = invoker("create");
+        assertEquals(ApiInvoker.Source.BODY, invoker.parameters().get(0).source());
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", "研发部");
+        params.put("managerId", 7);
+        assertEquals(params, invoker.invoke(params));
+        // 必填的请求体在没有参数时绑定为空映射
+        assertEquals(Map.of(), invoker.invoke(null));
+    }
+
+    @Test
+    void testUnannotatedSimpleTypesAreOptionalQueryParameters() throws Exception {
+        ApiInvoker invoker = invoker("page");
+        assertEquals(List.of("page", "sort"), invoker.parameters().stream().map(ApiInvoker.ParameterSpec::name).toList());
+        assertTrue(invoker.parameters().stream().allMatch(spec -> spec.source() == ApiInvoker.Source.QUERY && !spec.required()));
+
+        assertEquals("3:null", invoker.invoke(Map.of("page", "3")));
+        // 基本类型无法传null，缺少时同样报错
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> invoker.invoke(Map.of("sort", "name")));
+        assertEquals("缺少参数: page", error.getMessage());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.flinkmonitorbackend.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 后台刷新API元数据快照的测试，请求映射由可阻塞的映射表提供
+ */
+class ApiMetadataServiceImplTest {
+
+    private final ApiMetadataServiceImpl service = new ApiMetadataServiceImpl();
+
+    public static class DemoController {
+        public String ping() {
+            return "pong";
+        }
+
+        public String status() {
+            return "ok";
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testReadersSeeOldSnapshotWhileRebuilding() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Map<RequestMappingInfo, HandlerMethod>> mappings = new AtomicReference<>(mappings("ping"));
+        AtomicReference<Boolean> blocking = new AtomicReference<>(false);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "requestMappingHandlerMapping", new RequestMappingHandlerMapping() {
+            @Override
+            public Map<RequestMappingInfo, HandlerMethod> getHandlerMethods() {
+                if (blocking.get()) {
+                    building.countDown();
+                    try {
+                        assertTrue(release.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return mappings.get();
+            }
+        });
+
+        service.refreshApiMetadata();
+        assertEquals(1, service.getAllApis().size());
+
+        // 结构变更事件只提交后台刷新，构建阻塞时事件线程也不等待
+        mappings.set(mappings("ping", "status"));
+        blocking.set(true);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), service::onSchemaChanged);
+        assertTrue(building.await(5, TimeUnit.SECONDS));
+
+        // 构建期间读取方不加锁，拿到的是旧快照
+        assertEquals(1, assertTimeoutPreemptively(Duration.ofSeconds(2), () -> service.getAllApis().size()));
+        assertEquals(1, service.searchApis("ping").size());
+
+        release.countDown();
+        service.scheduleRefresh().get(5, TimeUnit.SECONDS);
+        assertEquals(2, service.getAllApis().size());
+    }
+
+    private static Map<RequestMappingInfo, HandlerMethod> mappings(String... methodNames) throws NoSuchMethodException {
+        Map<RequestMappingInfo, HandlerMethod> mappings = new LinkedHashMap<>();
+        DemoController controller = new DemoController();
+        for (String methodName : methodNames) {
+            mappings.put(RequestMappingInfo.paths("/api/demo/" + methodName).methods(RequestMethod.GET).build(),
+                    new HandlerMethod(controller, DemoController.class.getMethod(methodName)));
+        }
+        return mappings;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.flinkmonitorbackend.service.strategy;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.strategy.impl.MetadataSqlStrategy;
+import com.example.flinkmonitorbackend.utils.SchemaKeywordIndex;
+import com.example.flinkmonitorbackend.utils.SchemaPromptCache;
+import com.example.flinkmonitorbackend.utils.SqlValidationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 策略管理器按运行统计调整尝试顺序的测试
+ */
+class SqlGenerationStrategyManagerTest {
+
+    private static final String VALID_SQL = "SELECT id, org_name FROM organizations LIMIT 10";
+
+    // 不连接数据库，允许列退回到静态白名单
+    private static SqlValidationService validationService() {
+        DatabaseMetadataService metadataService = (DatabaseMetadataService) Proxy.newProxyInstance(
+                DatabaseMetadataService.class.getClassLoader(),
+                new Class<?>[]{DatabaseMetadataService.class},
+                (proxy, method, args) -> {
+                    throw new IllegalStateException("测试中不访问数据库");
+                });
+        return new SqlValidationService(metadataService);
+    }
+
+    private static SqlGenerationStrategy strategy(String name, int priority, boolean fallback, AtomicInteger calls, int failEvery) {
+        return new SqlGenerationStrategy() {
+            @Override
+            public String generateSql(String naturalLanguageQuery) {
+                // 每failEvery次调用生成一次无法通过校验的SQL
+                return failEvery > 0 && calls.incrementAndGet() % failEvery == 0 ? "DELETE FROM organizations" : VALID_SQL;
+            }
+
+            @Override
+            public String getStrategyName() {
+                return name;
+            }
+
+            @Override
+            public boolean isApplicable(String naturalLanguageQuery) {
+                return true;
+            }
+
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+
+            @Override
+            public boolean isFallback() {
+                return fallback;
+            }
+        };
+    }
+
+    @Test
+    void testReordersByExpectedCostButKeepsCatchAllLast() {
+        // 兜底策略优先级最高且总能成功，但不能因为成功率高被排到规则策略前面
+        SqlGenerationStrategy catchAll = strategy("catch-all", 5, true, new AtomicInteger(), 0);
+        SqlGenerationStrategy unreliable = strategy("unreliable", 10, false, new AtomicInteger(), 2);
+        SqlGenerationStrategy reliable = strategy("reliable", 20, false, new AtomicInteger(), 0);
+        SqlGenerationStrategyManager manager = new SqlGenerationStrategyManager(
+                List.of(reliable, catchAll, unreliable), validationService());
+
+        assertEquals(List.of(unreliable, reliable, catchAll), manager.getAllStrategies());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VALID_SQL, manager.generateSql("查询部门"));
+        }
+
+        // 统计充足后成功率更高的reliable排到unreliable前面，兜底策略始终在最后
+        assertEquals(List.of(reliable, unreliable, catchAll), manager.getAllStrategies());
+    }
+
+    @Test
+    void testMetadataStrategyIsFallback() {
+        assertTrue(new MetadataSqlStrategy().isFallback());
+        // 兜底策略的结果不作为查询示例
+        assertFalse(new MetadataSqlStrategy().isExampleSource());
+    }
+
+    @Test
+    void testMetadataStrategySkipsQueriesWithoutKnownTable() {
+        // 只有getAllTables可用，关键词索引退回到静态映射
+        DatabaseMetadataService metadataService = (DatabaseMetadataService) Proxy.newProxyInstance(
+                DatabaseMetadataService.class.getClassLoader(),
+                new Class<?>[]{DatabaseMetadataService.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getAllTables")) {
+                        return List.of(Map.of("tableName", "organizations"));
+                    }
+                    throw new IllegalStateException("测试中不访问数据库");
+                });
+        MetadataSqlStrategy strategy = new MetadataSqlStrategy();
+        ReflectionTestUtils.setField(strategy, "databaseMetadataService", metadataService);
+        ReflectionTestUtils.setField(strategy, "schemaKeywordIndex", new SchemaKeywordIndex(new SchemaPromptCache(metadataService)));
+        ReflectionTestUtils.setField(strategy, "sqlValidationService", validationService());
+
+        assertFalse(strategy.isApplicable("今天天气怎么样"));
+        assertNull(strategy.generateSql("今天天气怎么样"));
+
+        assertTrue(strategy.isApplicable("查询部门"));
+        assertTrue(strategy.generateSql("查询部门").matches("SELECT .+ FROM organizations ORDER BY org_name DESC LIMIT 10"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存键计算的JMH基准：原先每次请求新建MessageDigest、拼接字符串并Base64编码，
+ * 对比线程内复用MessageDigest、以两个long作为键的CacheKey，同时比较作为ConcurrentHashMap键的查找开销。
+ * 多线程运行模拟高并发下的每请求开销
+ *
+ * 运行：mvn test-compile 后执行本类的main方法，或
+ * java -cp target/test-classes:target/classes:<测试classpath> org.openjdk.jmh.Main CacheKeyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class CacheKeyBenchmark {
+
+    @Param({"统计各部门本月的加班小时数", "查询最近30天内连续工作超过6天并且请假次数大于2次的员工姓名、部门和工号，按部门排序"})
+    private String query;
+
+    private final String clientKey = "192.168.1.20";
+    private final ConcurrentHashMap<String, Boolean> stringKeys = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<CacheKey, Boolean> cacheKeys = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setUp() {
+        stringKeys.put(legacyKey(clientKey, "execute", query), Boolean.TRUE);
+        cacheKeys.put(CacheKey.of(clientKey, "execute", query), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public String legacyDigest() {
+        return legacyKey(clientKey, "execute", query);
+    }
+
+    @Benchmark
+    public CacheKey threadLocalDigest() {
+        return CacheKey.of(clientKey, "execute", query);
+    }
+
+    @Benchmark
+    public Boolean legacyLookup() {
+        return stringKeys.get(legacyKey(clientKey, "execute", query));
+    }
+
+    @Benchmark
+    public Boolean cacheKeyLookup() {
+        return cacheKeys.get(CacheKey.of(clientKey, "execute", query));
+    }
+
+    // 原先RequestGuardService.buildCacheKey的实现
+    private static String legacyKey(String clientKey, String operation, String payload) {
+        String seed = clientKey + ":" + operation + ":" + payload;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(seed.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("无法初始化摘要算法", e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheKeyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
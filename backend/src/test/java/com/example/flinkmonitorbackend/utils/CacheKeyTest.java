@@ -0,0 +1,22 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheKeyTest {
+
+    @Test
+    void testFieldBoundariesAreSignificant() {
+        // 拼接后相同的SQL和原始问题不能得到相同的键
+        assertNotEquals(CacheKey.of("client", "execute-sql", "SELECT id FROM organizations", " LIMIT 1查询部门"),
+                CacheKey.of("client", "execute-sql", "SELECT id FROM organizations LIMIT 1", "查询部门"));
+        assertNotEquals(CacheKey.of("client", "execute-sql", "SELECT 1", null),
+                CacheKey.of("client", "execute-sql", "SELECT 1", ""));
+
+        assertEquals(CacheKey.of("client", "execute-sql", " SELECT 1 ", "查询部门"),
+                CacheKey.of("client", "execute-sql", "SELECT 1", "查询部门 "));
+        assertEquals(CacheKey.of("client", "execute", "查询部门"),
+                CacheKey.of("client", "execute", new String[]{"查询部门"}));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellableRequestExecutorTest {
+
+    private final CancellableRequestExecutor executor = new CancellableRequestExecutor(4, 4, 60_000);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 阻塞到放行为止的任务，记录执行次数和是否被中断
+     */
+    private static final class BlockingTask implements Supplier<String> {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger executions = new AtomicInteger();
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+
+        @Override
+        public String get() {
+            executions.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw new QueryCancelledException("等待时被中断");
+            }
+            return "rows";
+        }
+    }
+
+    @Test
+    void testLeaderCancellationDoesNotCancelFollowers() throws Exception {
+        BlockingTask task = new BlockingTask();
+        List<CancellableRequestExecutor.Waiter<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            waiters.add(executor.join("query", task, () -> "busy"));
+        }
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+
+        // 发起执行的请求断开，其余9个请求仍在等待
+        waiters.get(0).leave("客户端断开连接");
+        task.release.countDown();
+
+        for (CancellableRequestExecutor.Waiter<String> follower : waiters.subList(1, waiters.size())) {
+            assertEquals("rows", follower.result().get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, task.executions.get());
+        assertFalse(task.interrupted.get());
+    }
+
+    @Test
+    void testCancelsOnlyAfterEveryWaiterLeaves() throws Exception {
+        BlockingTask task = new BlockingTask();
+        List<CancellableRequestExecutor.Waiter<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            waiters.add(executor.join("query", task, () -> "busy"));
+        }
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 9; i++) {
+            waiters.get(i).leave("请求超时");
+            // 重复退出不会多计
+            waiters.get(i).leave("请求超时");
+        }
+        assertFalse(waiters.get(9).result().isDone());
+
+        waiters.get(9).leave("请求超时");
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> waiters.get(9).result().get(5, TimeUnit.SECONDS));
+        assertInstanceOf(QueryCancelledException.class, error.getCause());
+
+        // 被取消的执行不再被复用，新的请求重新执行
+        BlockingTask retry = new BlockingTask();
+        retry.release.countDown();
+        assertEquals("rows", executor.join("query", retry, () -> "busy").result().get(5, TimeUnit.SECONDS));
+        assertEquals(1, retry.executions.get());
+    }
+
+    @Test
+    void testErrorIsPassedToEveryWaiter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> task = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new QueryCancelledException("等待时被中断");
+            }
+            throw new OutOfMemoryError("模拟的严重错误");
+        };
+        List<CancellableRequestExecutor.Waiter<String>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiters.add(executor.join("query", task, () -> "busy"));
+        }
+        release.countDown();
+
+        for (CancellableRequestExecutor.Waiter<String> waiter : waiters) {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> waiter.result().get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, error.getCause());
+        }
+
+        // 失败的执行已移除，相同键的新请求重新执行
+        BlockingTask retry = new BlockingTask();
+        retry.release.countDown();
+        assertEquals("rows", executor.join("query", retry, () -> "busy").result().get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTokenTest {
+
+    @Test
+    void testCancelRunsCallbacksOnce() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger calls = new AtomicInteger();
+        token.onCancel(calls::incrementAndGet);
+        token.onCancel(() -> {
+            throw new IllegalStateException("回调失败");
+        });
+        token.onCancel(calls::incrementAndGet);
+
+        token.cancel("客户端断开连接");
+        // 重复取消不会再次执行回调
+        token.cancel("请求超时");
+
+        assertTrue(token.isCancelled());
+        assertEquals(2, calls.get());
+        QueryCancelledException error = assertThrows(QueryCancelledException.class, token::throwIfCancelled);
+        assertTrue(error.getMessage().contains("客户端断开连接"));
+    }
+
+    @Test
+    void testClosedRegistrationIsNotCalled() {
+        CancellationToken token = new CancellationToken();
+        AtomicInteger calls = new AtomicInteger();
+        try (CancellationToken.Registration ignored = token.onCancel(calls::incrementAndGet)) {
+            token.throwIfCancelled();
+        }
+
+        token.cancel("请求超时");
+        assertEquals(0, calls.get());
+
+        // 已取消的令牌立即执行新注册的回调
+        token.onCancel(calls::incrementAndGet);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testBindRestoresPreviousToken() {
+        CancellationToken outer = new CancellationToken();
+        CancellationToken inner = new CancellationToken();
+        CancellationToken none = CancellationToken.current();
+
+        try (CancellationToken.Scope ignored = outer.bind()) {
+            try (CancellationToken.Scope nested = inner.bind()) {
+                assertSame(inner, CancellationToken.current());
+            }
+            assertSame(outer, CancellationToken.current());
+        }
+        assertSame(none, CancellationToken.current());
+
+        // 未绑定时的令牌永不取消
+        none.cancel("请求超时");
+        assertFalse(CancellationToken.current().isCancelled());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringLruCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsedByWeight() {
+        // 以字符串长度作为权重，总权重上限10
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(100, 10, 0, String::length);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        // 访问a后b成为最久未访问的条目
+        assertEquals(Optional.of("1234"), cache.get("a"));
+
+        cache.put("c", "1234");
+        assertEquals(Optional.empty(), cache.get("b"));
+        assertTrue(cache.get("a").isPresent());
+        assertTrue(cache.get("c").isPresent());
+        assertEquals(8, cache.weight());
+        assertEquals(1, cache.evictionCount());
+
+        // 覆盖已有条目时按新权重计算
+        cache.put("a", "12");
+        assertEquals(6, cache.weight());
+
+        // 超过总容量的单个条目不缓存，也不挤出其他条目
+        cache.put("d", "12345678901");
+        assertEquals(Optional.empty(), cache.get("d"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testRemoveExpired() throws InterruptedException {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(100, 100, 50, String::length);
+        cache.put("a", "1234");
+        cache.put("b", "12");
+        Thread.sleep(100);
+        cache.put("c", "123");
+
+        assertEquals(2, cache.removeExpired());
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.weight());
+        assertEquals(2, cache.expiredCount());
+        assertTrue(cache.get("c").isPresent());
+
+        // 不大于0的存活时间表示不过期
+        ExpiringLruCache<String, String> permanent = new ExpiringLruCache<>(100, 100, 0, String::length);
+        permanent.put("a", "1234");
+        assertEquals(0, permanent.removeExpired());
+        assertEquals(1, permanent.size());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+
+    @Test
+    void testFindsOverlappingKeywordsInOnePass() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("加班", "overtime_records")
+                .add("加班小时数", "overtime_hours")
+                .add("小时", "hours")
+                .add("部门", "organizations")
+                .build();
+
+        List<KeywordMatcher.Match<String>> matches = matcher.findAll("各部门加班小时数统计");
+
+        assertEquals(List.of("organizations", "overtime_records", "hours", "overtime_hours"),
+                matches.stream().map(KeywordMatcher.Match::value).toList());
+        KeywordMatcher.Match<String> longest = matches.get(3);
+        assertEquals(3, longest.start());
+        assertEquals(8, longest.end());
+    }
+
+    @Test
+    void testMatchesCaseInsensitively() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("Organizations", "organizations")
+                .build();
+
+        assertTrue(matcher.containsAny("select from ORGANIZATIONS"));
+        assertEquals("organizations", matcher.findAll("查询organizations表").get(0).keyword());
+    }
+
+    @Test
+    void testNoMatch() {
+        KeywordMatcher<String> matcher = KeywordMatcher.<String>builder()
+                .add("门禁", "hrbp_gate_record")
+                .build();
+
+        assertTrue(matcher.findAll("查询请假记录").isEmpty());
+        assertFalse(matcher.containsAny(null));
+    }
+}
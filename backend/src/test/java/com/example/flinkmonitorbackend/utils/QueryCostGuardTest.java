@@ -0,0 +1,140 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaModel;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询代价守卫测试，EXPLAIN的结果行由动态代理模拟的JDBC对象返回
+ */
+class QueryCostGuardTest {
+
+    // 排序后读到LIMIT行不能停止，需要扫描整张表
+    private static final String FULL_SCAN_SQL = "SELECT emp_id, event_time FROM hrbp_gate_record ORDER BY emp_id";
+
+    // 门禁记录表以event_time开头的索引可用于补充日期条件
+    private final DatabaseMetadataService metadataService = proxy(DatabaseMetadataService.class, (proxy, method, args) -> {
+        if (method.getName().equals("getSchemaModel")) {
+            return new SchemaModel(List.of(new SchemaModel.TableInfo("hrbp_gate_record", "门禁记录", List.of(
+                    new SchemaModel.ColumnInfo("id", Types.BIGINT, "BIGINT", "bigint", 19, 0, false, null, null),
+                    new SchemaModel.ColumnInfo("emp_id", Types.BIGINT, "BIGINT", "bigint", 19, 0, false, null, null),
+                    new SchemaModel.ColumnInfo("event_time", Types.TIMESTAMP, "DATETIME", "datetime", 19, 0, false, null, null)),
+                    List.of("id"), Set.of("id", "event_time"))), 0L);
+        }
+        throw new IllegalStateException("测试中不访问数据库");
+    });
+    private final SqlValidationService validationService = new SqlValidationService(metadataService);
+    private final List<String> explained = new ArrayList<>();
+
+    @Test
+    void testCheapQueryPassesUnchanged() {
+        QueryCostGuard guard = newGuard(true);
+        SqlValidationResult validation = validationService.validate("SELECT emp_id, event_time FROM hrbp_gate_record WHERE emp_id = 1");
+
+        QueryCostGuard.CheckResult result = guard.check(connection(sql -> List.of(planRow("ref", 20, 100))), validation);
+
+        assertEquals(validation.sanitizedSql(), result.sql());
+        assertFalse(result.rewritten());
+        assertEquals(List.of("EXPLAIN " + validation.sanitizedSql()), explained);
+    }
+
+    @Test
+    void testFullScanIsRewrittenWithDatePredicate() {
+        QueryCostGuard guard = newGuard(true);
+        SqlValidationResult validation = validationService.validate(FULL_SCAN_SQL);
+        // 补充日期条件后走event_time索引的范围扫描
+        Connection connection = connection(sql -> sql.contains("event_time >=")
+                ? List.of(planRow("range", 20_000, 100))
+                : List.of(planRow("ALL", 5_000_000, 10)));
+
+        QueryCostGuard.CheckResult result = guard.check(connection, validation);
+
+        assertTrue(result.rewritten());
+        assertTrue(result.sql().contains("hrbp_gate_record.event_time >= CURRENT_DATE - INTERVAL 30 DAY"), result.sql());
+        assertTrue(result.rewriteMessage().contains("30天"));
+        // 执行的是通过校验的改写结果，代价也按它重新评估
+        assertEquals(validationService.sanitizeSql(result.sql()), result.sql());
+        assertEquals("EXPLAIN " + result.sql(), explained.get(explained.size() - 1));
+    }
+
+    @Test
+    void testExpensiveQueryIsRejectedWhenRewriteDoesNotHelp() {
+        SqlValidationResult validation = validationService.validate(FULL_SCAN_SQL);
+        Connection connection = connection(sql -> List.of(planRow("ALL", 5_000_000, 10)));
+
+        QueryTooExpensiveException error = assertThrows(QueryTooExpensiveException.class,
+                () -> newGuard(true).check(connection, validation));
+        assertTrue(error.getMessage().contains("hrbp_gate_record"), error.getMessage());
+
+        // 不允许改写时同样拒绝，且只评估原始SQL
+        explained.clear();
+        assertThrows(QueryTooExpensiveException.class, () -> newGuard(false).check(connection, validation));
+        assertEquals(1, explained.size());
+    }
+
+    private QueryCostGuard newGuard(boolean rewriteEnabled) {
+        return new QueryCostGuard(validationService, metadataService, true, 1_000_000, 100_000, rewriteEnabled, 30);
+    }
+
+    private static Map<String, String> planRow(String type, long rows, double filtered) {
+        return Map.of("table", "hrbp_gate_record", "type", type, "rows", String.valueOf(rows),
+                "filtered", String.valueOf(filtered), "Extra", "");
+    }
+
+    /**
+     * 模拟连接，EXPLAIN返回的结果行由被解释的SQL决定
+     */
+    private Connection connection(Function<String, List<Map<String, String>>> plans) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            if (!method.getName().equals("prepareStatement")) {
+                return null;
+            }
+            String sql = (String) args[0];
+            explained.add(sql);
+            List<Map<String, String>> rows = plans.apply(sql.substring("EXPLAIN ".length()));
+            return proxy(PreparedStatement.class, (statement, statementMethod, statementArgs) ->
+                    statementMethod.getName().equals("executeQuery") ? resultSet(rows) : null);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResultSet resultSet(List<Map<String, String>> rows) {
+        List<String> labels = List.of("id", "select_type", "table", "type", "rows", "filtered", "Extra");
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getColumnCount" -> labels.size();
+            case "getColumnLabel" -> labels.get((Integer) args[0] - 1);
+            default -> null;
+        });
+        Iterator<Map<String, String>> iterator = rows.iterator();
+        Map<String, String>[] current = new Map[1];
+        return proxy(ResultSet.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getMetaData" -> metaData;
+            case "next" -> {
+                current[0] = iterator.hasNext() ? iterator.next() : null;
+                yield current[0] != null;
+            }
+            case "getString" -> current[0].get((String) args[0]);
+            default -> null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.flinkmonitorbackend.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按客户端和接口限流的测试，时钟手动推进，结果与运行速度无关
+ */
+class RequestGuardServiceTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    // 默认容量3、每秒补充1个；translate接口单独配置容量1、每秒补充2个
+    private final RequestGuardService guard = new RequestGuardService(new MockEnvironment()
+            .withProperty("nlq.rate-limit.capacity", "3")
+            .withProperty("nlq.rate-limit.refill-per-second", "1")
+            .withProperty("nlq.rate-limit.endpoints.translate.capacity", "1")
+            .withProperty("nlq.rate-limit.endpoints.translate.refill-per-second", "2"),
+            new SimpleMeterRegistry(), clock::get);
+
+    @Test
+    void testBurstUpToCapacityThenReject() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(guard.tryAcquire("client", "query"), "第" + (i + 1) + "个突发请求应放行");
+        }
+        assertFalse(guard.tryAcquire("client", "query"));
+    }
+
+    @Test
+    void testRefillsAtConfiguredRate() {
+        for (int i = 0; i < 3; i++) {
+            guard.tryAcquire("client", "query");
+        }
+
+        advanceMillis(500);
+        assertFalse(guard.tryAcquire("client", "query"));
+
+        // 每秒补充一个令牌
+        advanceMillis(500);
+        assertTrue(guard.tryAcquire("client", "query"));
+        assertFalse(guard.tryAcquire("client", "query"));
+
+        // 空闲足够久也只补满到容量
+        advanceMillis(10_000);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(guard.tryAcquire("client", "query"));
+        }
+        assertFalse(guard.tryAcquire("client", "query"));
+    }
+
+    @Test
+    void testEndpointsAndClientsAreIsolated() {
+        assertTrue(guard.tryAcquire("client", "translate"));
+        assertFalse(guard.tryAcquire("client", "translate"));
+
+        // 同一客户端的其他接口和其他客户端的同一接口不受影响
+        assertTrue(guard.tryAcquire("client", "query"));
+        assertTrue(guard.tryAcquire("other", "translate"));
+
+        // translate接口每秒补充两个令牌
+        advanceMillis(500);
+        assertTrue(guard.tryAcquire("client", "translate"));
+    }
+
+    @Test
+    void testSweepEvictsOnlyFullBuckets() {
+        for (int i = 0; i < 3; i++) {
+            guard.tryAcquire("busy", "query");
+        }
+        guard.tryAcquire("idle", "query");
+        assertEquals(2, guard.trackedClients());
+
+        // idle的一个令牌已补回，busy还差两个
+        advanceMillis(1000);
+        guard.evictIdleClients();
+        assertEquals(1, guard.trackedClients());
+
+        advanceMillis(2000);
+        guard.evictIdleClients();
+        assertEquals(0, guard.trackedClients());
+
+        // 移除满桶不影响限流结果，仍可突发到容量
+        for (int i = 0; i < 3; i++) {
+            assertTrue(guard.tryAcquire("busy", "query"));
+        }
+        assertFalse(guard.tryAcquire("busy", "query"));
+    }
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询结果摘要测试，覆盖空结果、超出token预算的宽表、空值和数值列的统计以及样例行选取
+ */
+class ResultSummarizerTest {
+
+    @Test
+    void testEmptyResults() {
+        ResultSummarizer summarizer = new ResultSummarizer(1200, 5);
+
+        assertEquals("查询结果为空", summarizer.summarize(null));
+        assertEquals("查询结果为空（0行）", summarizer.summarize(List.of()));
+    }
+
+    @Test
+    void testNullAndNumericColumnStats() {
+        ResultSummarizer summarizer = new ResultSummarizer(1200, 5);
+        List<Map<String, Object>> rows = List.of(
+                row("dept", "研发", "amount", 3),
+                row("dept", "研发", "amount", 10L),
+                row("dept", null, "amount", 2.5),
+                // 缺少的列按空值计
+                row("dept", "销售"));
+
+        String summary = summarizer.summarize(rows);
+
+        assertTrue(summary.startsWith("共4行，2列。\n"), summary);
+        // 整数和小数混合时按数值比较范围
+        assertTrue(summary.contains("- amount：非空3，空值率25.0%，不同值3，最小值2.5，最大值10\n"), summary);
+        assertTrue(summary.contains("- dept：非空3，空值率25.0%，不同值2，最小值研发，最大值销售，高频值：研发(2)、销售(1)\n"), summary);
+    }
+
+    @Test
+    void testSampleRowsSpreadAcrossResults() {
+        ResultSummarizer summarizer = new ResultSummarizer(1200, 5);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            rows.add(row("id", i));
+        }
+
+        String summary = summarizer.summarize(rows);
+
+        // 首行、末行和均匀分布的中间行
+        String samples = summary.substring(summary.indexOf("样例数据"));
+        assertEquals("样例数据（展示5行）：\n- {id=0}\n- {id=25}\n- {id=50}\n- {id=75}\n- {id=100}\n", samples);
+    }
+
+    @Test
+    void testWideRowsStayWithinTokenBudget() {
+        int tokenBudget = 60;
+        ResultSummarizer summarizer = new ResultSummarizer(tokenBudget, 5);
+        Map<String, Object> wideRow = new LinkedHashMap<>();
+        for (int i = 0; i < 30; i++) {
+            wideRow.put("column_" + i, "value_" + i);
+        }
+
+        String summary = summarizer.summarize(List.of(wideRow, wideRow));
+
+        assertTrue(summary.contains("- column_0："), summary);
+        assertFalse(summary.contains("- column_29："), summary);
+        assertTrue(summary.contains("列因长度限制省略"), summary);
+        // 预算已用完，不再附带样例行
+        assertFalse(summary.contains("样例数据"), summary);
+        String budgeted = summary.substring(0, summary.indexOf("（另有"));
+        assertTrue(ResultSummarizer.estimateTokens(budgeted) <= tokenBudget, summary);
+    }
+
+    @Test
+    void testNonTabularResultIsTruncated() {
+        ResultSummarizer summarizer = new ResultSummarizer(10, 5);
+
+        String summary = summarizer.summarize("x".repeat(200));
+
+        assertEquals("x".repeat(40) + "...（结果过长已截断）", summary);
+    }
+
+    private static Map<String, Object> row(Object... keyValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return row;
+    }
+}
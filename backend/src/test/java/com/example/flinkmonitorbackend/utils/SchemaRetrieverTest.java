@@ -0,0 +1,92 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import com.example.flinkmonitorbackend.service.SchemaModel;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 数据库结构检索测试，表结构由小型的结构模型提供
+ */
+class SchemaRetrieverTest {
+
+    private static final SchemaModel MODEL = new SchemaModel(List.of(
+            table("employee", "员工", "id", "emp_name", "org_id"),
+            table("exceptional_hours_indicators", "异常工时指标", "id", "indicator_name", "threshold"),
+            table("exceptional_hours_records", "异常工时记录", "id", "emp_id", "org_id", "indicator_id", "actual_value"),
+            table("organizations", "组织", "id", "org_name", "parent_id"),
+            table("overtime_records", "加班记录", "id", "emp_id", "work_date", "overtime_hours"),
+            table("hrbp_trip_record", "出差记录", "id", "emp_id", "trip_city")), 0L);
+
+    private final SchemaPromptCache schemaPromptCache = new SchemaPromptCache(metadataService());
+    private final SchemaRetriever retriever = new SchemaRetriever(schemaPromptCache,
+            new SchemaKeywordIndex(schemaPromptCache), 1);
+
+    @Test
+    void testJoinedTablesInferredFromColumnNames() {
+        Map<String, Set<String>> joinedTables = schemaPromptCache.getSnapshot().joinedTables();
+
+        assertEquals(Set.of("employee", "organizations", "exceptional_hours_indicators"),
+                joinedTables.get("exceptional_hours_records"));
+        assertEquals(Set.of("organizations"), joinedTables.get("employee"));
+        // parent_id没有对应的表，不推断关联
+        assertNull(joinedTables.get("organizations"));
+    }
+
+    @Test
+    void testPruningKeepsTopTablesAndTheirJoins() {
+        String query = "统计各部门异常工时的实际值";
+        assertEquals(List.of("exceptional_hours_records"), retriever.rankTables(query, schemaPromptCache.getSnapshot()));
+
+        String prompt = retriever.getRelevantSchemaPrompt(query);
+
+        for (String table : List.of("exceptional_hours_records", "employee", "organizations", "exceptional_hours_indicators")) {
+            assertTrue(prompt.contains("表名：" + table + "\n"), table);
+        }
+        // 与查询无关、也不被关联的表被裁剪掉
+        assertFalse(prompt.contains("表名：overtime_records\n"), prompt);
+        assertFalse(prompt.contains("表名：hrbp_trip_record\n"), prompt);
+    }
+
+    @Test
+    void testIrrelevantQueryFallsBackToFullSchema() {
+        assertEquals(schemaPromptCache.getPromptFragment(), retriever.getRelevantSchemaPrompt("今天天气怎么样"));
+    }
+
+    private static DatabaseMetadataService metadataService() {
+        return (DatabaseMetadataService) Proxy.newProxyInstance(DatabaseMetadataService.class.getClassLoader(),
+                new Class<?>[]{DatabaseMetadataService.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getSchemaModel" -> MODEL;
+                    case "getTableRelationships" -> "表之间的关系：\n";
+                    case "getAllTables" -> MODEL.tables().stream()
+                            .map(table -> Map.<String, Object>of("tableName", table.name(), "remarks", table.remarks()))
+                            .toList();
+                    case "getTableDescriptions" -> {
+                        Map<String, String> descriptions = new LinkedHashMap<>();
+                        for (SchemaModel.TableInfo table : MODEL.tables()) {
+                            StringBuilder description = new StringBuilder("1. 表名：").append(table.name()).append("\n")
+                                    .append("   描述：").append(table.remarks()).append("\n");
+                            table.columns().forEach(column -> description.append("     - ").append(column.name()).append("\n"));
+                            descriptions.put(table.name(), description.append("\n").toString());
+                        }
+                        yield descriptions;
+                    }
+                    default -> throw new IllegalStateException("测试中不访问数据库");
+                });
+    }
+
+    private static SchemaModel.TableInfo table(String name, String remarks, String... columns) {
+        return new SchemaModel.TableInfo(name, remarks, Arrays.stream(columns)
+                .map(column -> new SchemaModel.ColumnInfo(column, Types.BIGINT, "BIGINT", "bigint", 19, 0, false, null, null))
+                .toList(), List.of("id"), Set.of("id"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> singleFlight.execute("schema", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "tables";
+            })));
+        }
+        waitUntilInFlight();
+        // 等其余调用方都进入等待后再放行
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("tables", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void testFollowerRetriesWhenLeaderIsCancelled() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch cancelLeader = new CountDownLatch(1);
+        AtomicInteger followerLoads = new AtomicInteger();
+
+        Future<String> leader = pool.submit(() -> singleFlight.execute("schema", () -> {
+            leaderStarted.countDown();
+            await(cancelLeader);
+            throw new QueryCancelledException("请求已取消: 客户端断开连接");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        Future<String> follower = pool.submit(() -> singleFlight.execute("schema", () -> {
+            followerLoads.incrementAndGet();
+            return "tables";
+        }));
+        Thread.sleep(100);
+        cancelLeader.countDown();
+
+        // 取消只作用于执行加载的调用方，等待的调用方重新加载并得到结果
+        Exception error = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(QueryCancelledException.class, error.getCause());
+        assertEquals("tables", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, followerLoads.get());
+    }
+
+    private void waitUntilInFlight() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (singleFlight.inFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("等待时被中断");
+        }
+    }
+}
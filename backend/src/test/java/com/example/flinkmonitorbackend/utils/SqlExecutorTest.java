@@ -0,0 +1,81 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求取消时中止正在执行的SQL的测试，JDBC对象用动态代理模拟
+ */
+class SqlExecutorTest {
+
+    @Test
+    void testCancellationCancelsRunningStatement() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicBoolean statementCancelled = new AtomicBoolean();
+
+        // executeQuery阻塞到Statement.cancel()被调用，然后像驱动一样抛出SQLException
+        PreparedStatement statement = proxy(PreparedStatement.class, (proxy, method, args) -> switch (method.getName()) {
+            case "executeQuery" -> {
+                executing.countDown();
+                assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+                throw new SQLException("Query execution was interrupted");
+            }
+            case "cancel" -> {
+                statementCancelled.set(true);
+                cancelled.countDown();
+                yield null;
+            }
+            default -> null;
+        });
+        Connection connection = proxy(Connection.class, (proxy, method, args) ->
+                "prepareStatement".equals(method.getName()) ? statement : null);
+        DataSource dataSource = proxy(DataSource.class, (proxy, method, args) ->
+                "getConnection".equals(method.getName()) ? connection : null);
+
+        DatabaseMetadataService metadataService = proxy(DatabaseMetadataService.class, (proxy, method, args) -> {
+            throw new IllegalStateException("测试中不访问数据库");
+        });
+        SqlValidationService validationService = new SqlValidationService(metadataService);
+        SqlExecutor sqlExecutor = new SqlExecutor();
+        ReflectionTestUtils.setField(sqlExecutor, "dataSource", dataSource);
+        ReflectionTestUtils.setField(sqlExecutor, "sqlValidationService", validationService);
+        ReflectionTestUtils.setField(sqlExecutor, "queryCostGuard",
+                new QueryCostGuard(validationService, metadataService, false, 1_000_000, 100_000, true, 30));
+
+        CancellationToken token = new CancellationToken();
+        CompletableFuture<QueryResult> execution = CompletableFuture.supplyAsync(() -> {
+            try (CancellationToken.Scope ignored = token.bind()) {
+                return sqlExecutor.executeQuery("SELECT id, org_name FROM organizations LIMIT 10");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(executing.await(5, TimeUnit.SECONDS));
+
+        token.cancel("客户端断开连接");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> execution.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(QueryCancelledException.class, error.getCause());
+        assertTrue(statementCancelled.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
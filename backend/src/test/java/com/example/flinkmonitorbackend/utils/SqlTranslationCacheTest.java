@@ -0,0 +1,35 @@
+package com.example.flinkmonitorbackend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlTranslationCacheTest {
+
+    @Test
+    void testIgnoresWhitespaceAndSentencePunctuation() {
+        assertEquals(SqlTranslationCache.normalize("统计各部门本月的加班小时数"),
+                SqlTranslationCache.normalize(" 统计各部门，本月的加班小时数？ "));
+        assertEquals(SqlTranslationCache.normalize("查询部门名称"), SqlTranslationCache.normalize("查询部门名称。"));
+        assertEquals(SqlTranslationCache.normalize("查询部门名称"), SqlTranslationCache.normalize("查询部门名称."));
+        assertEquals(SqlTranslationCache.normalize("Query Departments!"), SqlTranslationCache.normalize("query departments"));
+    }
+
+    @Test
+    void testKeepsDateTimeAndDecimalSeparators() {
+        assertNotEquals(SqlTranslationCache.normalize("2024-1-11的门禁记录"), SqlTranslationCache.normalize("2024-11-1的门禁记录"));
+        assertNotEquals(SqlTranslationCache.normalize("2024/1/11的门禁记录"), SqlTranslationCache.normalize("2024/11/1的门禁记录"));
+        assertNotEquals(SqlTranslationCache.normalize("加班超过1.5小时的员工"), SqlTranslationCache.normalize("加班超过15小时的员工"));
+        assertNotEquals(SqlTranslationCache.normalize("1:30之后的门禁记录"), SqlTranslationCache.normalize("13:0之后的门禁记录"));
+        assertEquals("加班超过1.5小时的员工", SqlTranslationCache.normalize("加班超过１．５小时的员工。"));
+    }
+
+    @Test
+    void testCacheDoesNotShareTranslationsAcrossDifferentDates() {
+        SqlTranslationCache cache = new SqlTranslationCache(10, 600);
+        cache.put("2024-1-11的门禁记录", "SELECT 1");
+
+        assertTrue(cache.get("2024-1-11 的门禁记录？").isPresent());
+        assertTrue(cache.get("2024-11-1的门禁记录").isEmpty());
+    }
+}
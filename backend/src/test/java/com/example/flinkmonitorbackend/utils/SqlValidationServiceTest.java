@@ -0,0 +1,46 @@
+package com.example.flinkmonitorbackend.utils;
+
+import com.example.flinkmonitorbackend.service.DatabaseMetadataService;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 集合操作和子查询中的危险写法必须判为不安全，而不只是因结构限制被拒绝
+ */
+class SqlValidationServiceTest {
+
+    // 不连接数据库，允许列退回到静态白名单
+    private final SqlValidationService validationService = new SqlValidationService(
+            (DatabaseMetadataService) Proxy.newProxyInstance(
+                    DatabaseMetadataService.class.getClassLoader(),
+                    new Class<?>[]{DatabaseMetadataService.class},
+                    (proxy, method, args) -> {
+                        throw new IllegalStateException("测试中不访问数据库");
+                    }));
+
+    @Test
+    void testDangerousFunctionInSetOperationIsUnsafe() {
+        assertFalse(validationService.isSafe("SELECT 1 UNION SELECT SLEEP(100)"));
+        assertFalse(validationService.isSafe("SELECT id FROM organizations UNION ALL (SELECT BENCHMARK(1000000, MD5('a')))"));
+    }
+
+    @Test
+    void testDangerousFunctionInSubqueryIsUnsafe() {
+        assertFalse(validationService.isSafe("SELECT id FROM organizations WHERE id IN (SELECT SLEEP(5))"));
+        assertFalse(validationService.isSafe("SELECT t.id FROM (SELECT id FROM organizations WHERE SLEEP(5) = 0) t"));
+        assertFalse(validationService.isSafe("WITH t AS (SELECT LOAD_FILE('/etc/passwd') AS f) SELECT f FROM t"));
+        assertFalse(validationService.isSafe("SELECT id FROM organizations WHERE EXISTS (SELECT 1 FROM organizations FOR UPDATE)"));
+    }
+
+    @Test
+    void testSafeSetOperationIsOnlyRejected() {
+        SqlValidationResult result = validationService.validate("SELECT id FROM organizations UNION SELECT id FROM organizations");
+        assertTrue(result.safe());
+        assertFalse(result.isAllowed());
+
+        assertTrue(validationService.validate("SELECT id, org_name FROM organizations LIMIT 10").isAllowed());
+    }
+}
@@ -266,6 +266,42 @@ export const executeNaturalLanguageQuery = async (query) => {
   }
 };
 
+// 查询结果立即返回，评估通过evaluationId异步获取
+export const executeNaturalLanguageQueryAsync = async (query) => {
+  try {
+    const response = await axiosInstance.post('/natural-language-query/execute-async', { query });
+    return response.data;
+  } catch (error) {
+    console.error('Error executing natural language query asynchronously:', error);
+    throw error;
+  }
+};
+
+export const fetchQueryEvaluation = async (evaluationId) => {
+  try {
+    const response = await axiosInstance.get(`/natural-language-query/evaluation/${evaluationId}`);
+    return response.data;
+  } catch (error) {
+    console.error('Error fetching query evaluation:', error);
+    throw error;
+  }
+};
+
+// 订阅评估流：onToken逐段接收内容，onComplete接收完整评估，返回值用于取消订阅
+export const subscribeQueryEvaluation = (evaluationId, { onToken, onComplete, onError } = {}) => {
+  const source = new EventSource(`${axiosInstance.defaults.baseURL}/natural-language-query/evaluation/${evaluationId}/stream`);
+  source.addEventListener('token', (event) => onToken && onToken(event.data));
+  source.addEventListener('complete', (event) => {
+    source.close();
+    onComplete && onComplete(event.data);
+  });
+  source.addEventListener('error', (event) => {
+    source.close();
+    onError && onError(event.data);
+  });
+  return () => source.close();
+};
+
 export const translateToSql = async (query) => {
   try {
     const response = await axiosInstance.post('/natural-language-query/translate-to-sql', { query });
@@ -301,6 +301,23 @@ CREATE TABLE exceptional_hours_records (
     KEY idx_org_id (org_id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- =========================================
+-- 10. 自然语言查询历史表 nl_query_history
+--     （保存通过校验的查询与SQL，作为大模型的参考示例）
+-- =========================================
+CREATE TABLE IF NOT EXISTS nl_query_history (
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY,
+    query_text       VARCHAR(500) NOT NULL,            -- 原始自然语言查询
+    normalized_query VARCHAR(255) NOT NULL,            -- 规范化后的查询文本
+    sql_text         TEXT NOT NULL,                    -- 通过校验的SQL
+    success          BOOLEAN NOT NULL DEFAULT TRUE,    -- SQL是否执行成功
+    hit_count        INT NOT NULL DEFAULT 1,           -- 被翻译的次数
+    created_at       TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at       TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY idx_normalized_query (normalized_query),
+    KEY idx_success_updated (success, updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- ========== 初始化组织数据 ==========
 INSERT INTO organizations (org_name, org_code, parent_id, description)
 VALUES